@@ -0,0 +1,82 @@
+/*
+ * AsyncTODO - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The Class defines a Database transaction to be enqueued
+ * for the AsyncUpdateThreadClass of GPSApplication.
+ */
+class AsyncTODO {
+    int taskType;                   // One of the GPSApplication.TASK_ constants
+    LocationExtended location;      // The location, for TASK_ADDLOCATION, TASK_ADDPLACEMARK, and TASK_UPDATEFIX
+    long[] trackIDs;                // The IDs of the tracks, for TASK_DELETETRACKS
+    long journalSequence;           // The sequence into the FixJournal, for TASK_ADDLOCATION (-1 if not journaled)
+    long journalEpoch;              // The recording epoch of the FixJournal, for TASK_ADDLOCATION and TASK_NEWTRACK
+
+    /**
+     * The AsyncTODOs already executed, ready to be reused.
+     * It avoids an allocation for each fix on the ingestion path.
+     * All the methods are thread safe.
+     */
+    static class Pool {
+
+        private final BlockingQueue<AsyncTODO> recycled;
+
+        /**
+         * @param size the maximum number of AsyncTODOs kept for reuse
+         */
+        Pool(int size) {
+            recycled = new ArrayBlockingQueue<>(size);
+        }
+
+        /**
+         * Returns an AsyncTODO with the given content.
+         * It is taken from the recycled ones, if available; otherwise a new one is created.
+         *
+         * @param taskType the type of the task (one of the GPSApplication.TASK_ constants)
+         * @param location the location of the task, or null
+         * @param trackIDs the IDs of the tracks of the task, or null
+         */
+        AsyncTODO obtain(int taskType, LocationExtended location, long[] trackIDs) {
+            AsyncTODO ast = recycled.poll();
+            if (ast == null) ast = new AsyncTODO();
+            ast.taskType = taskType;
+            ast.location = location;
+            ast.trackIDs = trackIDs;
+            ast.journalSequence = -1;
+            ast.journalEpoch = 0;
+            return ast;
+        }
+
+        /**
+         * Gives back an executed AsyncTODO to the pool (if not full).
+         */
+        void recycle(AsyncTODO ast) {
+            ast.location = null;
+            ast.trackIDs = null;
+            recycled.offer(ast);
+        }
+    }
+}
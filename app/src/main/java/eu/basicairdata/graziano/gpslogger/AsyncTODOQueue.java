@@ -0,0 +1,204 @@
+/*
+ * AsyncTODOQueue - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import java.util.ArrayDeque;
+
+/**
+ * The FIFO of the AsyncTODOs of GPSApplication, implemented as a ring buffer with a fixed capacity.
+ * <br>
+ * The TASK_UPDATEFIX are used only to refresh the UI, so they are not stored into the ring buffer,
+ * but into a single slot: a new UPDATEFIX replaces the pending one (the latest fix wins).
+ * The pending UPDATEFIX is taken after all the tasks enqueued before it,
+ * so the UI never goes back to a fix older than the last recorded one.
+ * <br>
+ * All the other tasks (TASK_ADDLOCATION included) are never discarded, and the producer never waits
+ * (the producers run on the main thread): when the ring buffer is full, the tasks are spilled
+ * into an unbounded overflow list, and they are moved into the ring buffer as the consumer frees it.
+ * <br>
+ * The queue keeps some metrics about its depth, about the time that the tasks
+ * wait before being taken (latency), and about the overflow.
+ */
+class AsyncTODOQueue {
+
+    private final AsyncTODO[] items;
+    private final long[] enqueueTimes;                      // The time (System.nanoTime) when the items have been enqueued
+    private int head = 0;                                   // The index of the first item
+    private int count = 0;                                  // The number of items into the ring buffer
+    private long takenItems = 0;                            // The number of items taken from the ring buffer
+    private final ArrayDeque<AsyncTODO> overflow = new ArrayDeque<>();         // The items added when the ring buffer is full
+    private final ArrayDeque<Long> overflowEnqueueTimes = new ArrayDeque<>();  // The time (System.nanoTime) when the overflow items have been enqueued
+
+    private AsyncTODO updateFix = null;                     // The pending UPDATEFIX, or null
+    private long updateFixEnqueueTime;                      // The time (System.nanoTime) when the pending UPDATEFIX has been enqueued
+    private long updateFixPosition;                         // The pending UPDATEFIX is taken when takenItems reaches this value
+
+    // Metrics
+    private int maxDepth = 0;                               // The maximum number of tasks reached
+    private long lastLatency = 0;                           // The waiting time (ms) of the last task taken
+    private long maxLatency = 0;                            // The maximum waiting time (ms) of a task
+    private long coalescedUpdateFixes = 0;                  // The number of UPDATEFIX replaced by a newer one
+    private long overflowedAdds = 0;                        // The number of tasks spilled into the overflow list
+    private int maxOverflow = 0;                            // The maximum size reached by the overflow list (high-water mark)
+
+    /**
+     * @param capacity the number of tasks stored into the ring buffer, before spilling into the overflow list
+     */
+    AsyncTODOQueue(int capacity) {
+        items = new AsyncTODO[capacity];
+        enqueueTimes = new long[capacity];
+    }
+
+    /**
+     * Adds a task at the end of the queue. It never waits:
+     * if the ring buffer is full, the task is spilled into the overflow list.
+     *
+     * @param ast the task to add
+     * @return the UPDATEFIX replaced by the task, that the caller can reuse, or null
+     */
+    synchronized AsyncTODO add(AsyncTODO ast) {
+        if (ast.taskType == GPSApplication.TASK_UPDATEFIX) {
+            AsyncTODO replaced = updateFix;
+            if (replaced != null) coalescedUpdateFixes++;
+            updateFix = ast;
+            updateFixEnqueueTime = System.nanoTime();
+            updateFixPosition = takenItems + count + overflow.size();      // After all the tasks already enqueued
+            updateMaxDepth();
+            notifyAll();
+            return replaced;
+        }
+
+        if ((count == items.length) || !overflow.isEmpty()) {         // Full: the FIFO order continues into the overflow list
+            overflow.addLast(ast);
+            overflowEnqueueTimes.addLast(System.nanoTime());
+            overflowedAdds++;
+            if (overflow.size() > maxOverflow) maxOverflow = overflow.size();
+            updateMaxDepth();
+            notifyAll();
+            return null;
+        }
+        int tail = (head + count) % items.length;
+        items[tail] = ast;
+        enqueueTimes[tail] = System.nanoTime();
+        count++;
+        updateMaxDepth();
+        notifyAll();
+        return null;
+    }
+
+    /**
+     * Retrieves and removes the first task, waiting if the queue is empty.
+     */
+    synchronized AsyncTODO take() throws InterruptedException {
+        while ((count == 0) && (updateFix == null)) wait();
+        return removeFirst();
+    }
+
+    /**
+     * Retrieves and removes the first task, waiting up to the specified time if the queue is empty.
+     *
+     * @param timeout the maximum time to wait, in milliseconds
+     * @return the first task, or null if the timeout elapsed
+     */
+    synchronized AsyncTODO poll(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() / 1000000 + timeout;
+        while ((count == 0) && (updateFix == null)) {
+            long remaining = deadline - System.nanoTime() / 1000000;
+            if (remaining <= 0) return null;
+            wait(remaining);
+        }
+        return removeFirst();
+    }
+
+    private AsyncTODO removeFirst() {
+        AsyncTODO ast;
+        long enqueueTime;
+        if ((updateFix != null) && (updateFixPosition == takenItems)) {
+            ast = updateFix;
+            enqueueTime = updateFixEnqueueTime;
+            updateFix = null;
+        } else {
+            ast = items[head];
+            enqueueTime = enqueueTimes[head];
+            items[head] = null;
+            head = (head + 1) % items.length;
+            count--;
+            takenItems++;
+            if (!overflow.isEmpty()) {                      // Moves the first overflow item into the freed place
+                int tail = (head + count) % items.length;
+                items[tail] = overflow.removeFirst();
+                enqueueTimes[tail] = overflowEnqueueTimes.removeFirst();
+                count++;
+            }
+        }
+        lastLatency = (System.nanoTime() - enqueueTime) / 1000000;
+        if (lastLatency > maxLatency) maxLatency = lastLatency;
+        return ast;
+    }
+
+    private void updateMaxDepth() {
+        final int depth = count + overflow.size() + (updateFix != null ? 1 : 0);
+        if (depth > maxDepth) maxDepth = depth;
+    }
+
+    /**
+     * @return the number of tasks into the queue, the overflow list and the pending UPDATEFIX included
+     */
+    synchronized int getDepth() {
+        return count + overflow.size() + (updateFix != null ? 1 : 0);
+    }
+
+    synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    synchronized long getLastLatency() {
+        return lastLatency;
+    }
+
+    synchronized long getMaxLatency() {
+        return maxLatency;
+    }
+
+    synchronized long getCoalescedUpdateFixes() {
+        return coalescedUpdateFixes;
+    }
+
+    synchronized long getOverflowedAdds() {
+        return overflowedAdds;
+    }
+
+    /**
+     * @return the maximum size reached by the overflow list
+     */
+    synchronized int getMaxOverflow() {
+        return maxOverflow;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "depth = " + getDepth() + " (max " + maxDepth + ", capacity " + items.length + ")"
+                + ", latency = " + lastLatency + " ms (max " + maxLatency + " ms)"
+                + ", UPDATEFIX coalesced = " + coalescedUpdateFixes
+                + ", overflowed adds = " + overflowedAdds + " (max overflow " + maxOverflow + ")";
+    }
+}
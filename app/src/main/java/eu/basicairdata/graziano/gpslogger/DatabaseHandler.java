@@ -26,6 +26,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.location.Location;
 import android.util.Log;
 
@@ -33,8 +34,10 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 
 import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
@@ -57,11 +60,14 @@ class DatabaseHandler extends SQLiteOpenHelper {
     // Database Version
     // Updated to 2 in v2.1.3 (version code 14)
     // Updated to 3 in v3.0.0 (version code 38)
-    private static final int DATABASE_VERSION = 3;
+    // Updated to 4 in v3.1.4 (version code 45)
+    private static final int DATABASE_VERSION = 4;
 
     private static final int LOCATION_TYPE_LOCATION = 1;
     private static final int LOCATION_TYPE_PLACEMARK = 2;
 
+    private static final int DELETE_TRACKS_GROUP_SIZE = 500;    // The max number of IDs of a DELETE (SQLite allows up to 999 arguments)
+
     // Database Name
     private static final String DATABASE_NAME = "GPSLogger";
 
@@ -70,6 +76,10 @@ class DatabaseHandler extends SQLiteOpenHelper {
     private static final String TABLE_TRACKS = "tracks";
     private static final String TABLE_PLACEMARKS = "placemarks";
 
+    // ------------------------------------------------------------------------------- Index names
+    private static final String INDEX_LOCATIONS_TRACK_NUMBER = "locations_track_id_nr";
+    private static final String INDEX_PLACEMARKS_TRACK_NUMBER = "placemarks_track_id_nr";
+
     // ----------------------------------------------------------------------- Common Columns names
     private static final String KEY_ID = "id";
     private static final String KEY_TRACK_ID = "track_id";
@@ -233,8 +243,19 @@ class DatabaseHandler extends SQLiteOpenHelper {
                 + KEY_LOCATION_NAME + " TEXT,"                                  // 12
                 + KEY_LOCATION_NUMBEROFSATELLITESUSEDINFIX + " INTEGER" + ")";  // 13
         db.execSQL(CREATE_PLACEMARKS_TABLE);
+
+        db.execSQL(DATABASE_CREATE_INDEX_LOCATIONS_TRACK_NUMBER);
+        db.execSQL(DATABASE_CREATE_INDEX_PLACEMARKS_TRACK_NUMBER);
     }
 
+    // The indexes used to read the locations and the placemarks of a Track in order
+    // (WHERE track_id = X AND nr BETWEEN A AND B ORDER BY nr), and to delete them,
+    // without scanning the whole tables.
+    private static final String DATABASE_CREATE_INDEX_LOCATIONS_TRACK_NUMBER = "CREATE INDEX IF NOT EXISTS "
+            + INDEX_LOCATIONS_TRACK_NUMBER + " ON " + TABLE_LOCATIONS + " (" + KEY_TRACK_ID + ", " + KEY_LOCATION_NUMBER + ");";
+    private static final String DATABASE_CREATE_INDEX_PLACEMARKS_TRACK_NUMBER = "CREATE INDEX IF NOT EXISTS "
+            + INDEX_PLACEMARKS_TRACK_NUMBER + " ON " + TABLE_PLACEMARKS + " (" + KEY_TRACK_ID + ", " + KEY_LOCATION_NUMBER + ");";
+
     private static final String DATABASE_ALTER_TABLE_LOCATIONS_TO_V2 = "ALTER TABLE "
             + TABLE_LOCATIONS + " ADD COLUMN " + KEY_LOCATION_NUMBEROFSATELLITESUSEDINFIX + " INTEGER DEFAULT " +  NOT_AVAILABLE + ";";
     private static final String DATABASE_ALTER_TABLE_PLACEMARKS_TO_V2 = "ALTER TABLE "
@@ -269,6 +290,11 @@ class DatabaseHandler extends SQLiteOpenHelper {
                 //upgrade from version 2 to 3
                 //Log.w("myApp", "[#] DatabaseHandler.java - onUpgrade: from version 2 to 3 ...");
                 db.execSQL(DATABASE_ALTER_TABLE_TRACKS_TO_V3);
+            case 3:
+                //upgrade from version 3 to 4
+                //Log.w("myApp", "[#] DatabaseHandler.java - onUpgrade: from version 3 to 4 ...");
+                db.execSQL(DATABASE_CREATE_INDEX_LOCATIONS_TRACK_NUMBER);
+                db.execSQL(DATABASE_CREATE_INDEX_PLACEMARKS_TRACK_NUMBER);
 
                 //and so on.. do not add breaks so that switch will
                 //start at oldVersion, and run straight through to the latest
@@ -276,177 +302,398 @@ class DatabaseHandler extends SQLiteOpenHelper {
         //Log.w("myApp", "[#] DatabaseHandler.java - onUpgrade: DB upgraded to version " + newVersion);
     }
 
-// ----------------------------------------------------------------------- LOCATIONS AND PLACEMARKS
+// ------------------------------------------------------------------------ PRE-COMPILED STATEMENTS
+
+    // The SQL statements used for each recorded location are compiled once and kept
+    // for the whole lifetime of the writable DB, binding the values directly.
+    private SQLiteDatabase compiledStatementsDB = null;     // The DB the compiled statements belong to
+    private SQLiteStatement insertLocationStatement;
+    private SQLiteStatement insertPlacemarkStatement;
+    private SQLiteStatement updateTrackStatement;
+    private SQLiteStatement updateTrackStatisticsStatement;
+
+    private static final String SQL_INSERT_LOCATION = "INSERT INTO " + TABLE_LOCATIONS + " ("
+            + KEY_TRACK_ID + ","                                // 1
+            + KEY_LOCATION_NUMBER + ","                         // 2
+            + KEY_LOCATION_LATITUDE + ","                       // 3
+            + KEY_LOCATION_LONGITUDE + ","                      // 4
+            + KEY_LOCATION_ALTITUDE + ","                       // 5
+            + KEY_LOCATION_SPEED + ","                          // 6
+            + KEY_LOCATION_ACCURACY + ","                       // 7
+            + KEY_LOCATION_BEARING + ","                        // 8
+            + KEY_LOCATION_TIME + ","                           // 9
+            + KEY_LOCATION_NUMBEROFSATELLITES + ","             // 10
+            + KEY_LOCATION_TYPE + ","                           // 11
+            + KEY_LOCATION_NUMBEROFSATELLITESUSEDINFIX          // 12
+            + ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    private static final String SQL_INSERT_PLACEMARK = "INSERT INTO " + TABLE_PLACEMARKS + " ("
+            + KEY_TRACK_ID + ","                                // 1
+            + KEY_LOCATION_NUMBER + ","                         // 2
+            + KEY_LOCATION_LATITUDE + ","                       // 3
+            + KEY_LOCATION_LONGITUDE + ","                      // 4
+            + KEY_LOCATION_ALTITUDE + ","                       // 5
+            + KEY_LOCATION_SPEED + ","                          // 6
+            + KEY_LOCATION_ACCURACY + ","                       // 7
+            + KEY_LOCATION_BEARING + ","                        // 8
+            + KEY_LOCATION_TIME + ","                           // 9
+            + KEY_LOCATION_NUMBEROFSATELLITES + ","             // 10
+            + KEY_LOCATION_TYPE + ","                           // 11
+            + KEY_LOCATION_NUMBEROFSATELLITESUSEDINFIX + ","    // 12
+            + KEY_LOCATION_NAME                                 // 13
+            + ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    private static final String SQL_UPDATE_TRACK = "UPDATE " + TABLE_TRACKS + " SET "
+            + KEY_TRACK_NAME + " = ?,"                          // 1
+            + KEY_TRACK_FROM + " = ?,"                          // 2
+            + KEY_TRACK_TO + " = ?,"                            // 3
+            + KEY_TRACK_START_LATITUDE + " = ?,"                // 4
+            + KEY_TRACK_START_LONGITUDE + " = ?,"               // 5
+            + KEY_TRACK_START_ALTITUDE + " = ?,"                // 6
+            + KEY_TRACK_START_ACCURACY + " = ?,"                // 7
+            + KEY_TRACK_START_SPEED + " = ?,"                   // 8
+            + KEY_TRACK_START_TIME + " = ?,"                    // 9
+            + KEY_TRACK_LASTFIX_TIME + " = ?,"                  // 10
+            + KEY_TRACK_END_LATITUDE + " = ?,"                  // 11
+            + KEY_TRACK_END_LONGITUDE + " = ?,"                 // 12
+            + KEY_TRACK_END_ALTITUDE + " = ?,"                  // 13
+            + KEY_TRACK_END_ACCURACY + " = ?,"                  // 14
+            + KEY_TRACK_END_SPEED + " = ?,"                     // 15
+            + KEY_TRACK_END_TIME + " = ?,"                      // 16
+            + KEY_TRACK_LASTSTEPDST_LATITUDE + " = ?,"          // 17
+            + KEY_TRACK_LASTSTEPDST_LONGITUDE + " = ?,"         // 18
+            + KEY_TRACK_LASTSTEPDST_ACCURACY + " = ?,"          // 19
+            + KEY_TRACK_LASTSTEPALT_ALTITUDE + " = ?,"          // 20
+            + KEY_TRACK_LASTSTEPALT_ACCURACY + " = ?,"          // 21
+            + KEY_TRACK_MIN_LATITUDE + " = ?,"                  // 22
+            + KEY_TRACK_MIN_LONGITUDE + " = ?,"                 // 23
+            + KEY_TRACK_MAX_LATITUDE + " = ?,"                  // 24
+            + KEY_TRACK_MAX_LONGITUDE + " = ?,"                 // 25
+            + KEY_TRACK_DURATION + " = ?,"                      // 26
+            + KEY_TRACK_DURATION_MOVING + " = ?,"               // 27
+            + KEY_TRACK_DISTANCE + " = ?,"                      // 28
+            + KEY_TRACK_DISTANCE_INPROGRESS + " = ?,"           // 29
+            + KEY_TRACK_DISTANCE_LASTALTITUDE + " = ?,"         // 30
+            + KEY_TRACK_ALTITUDE_UP + " = ?,"                   // 31
+            + KEY_TRACK_ALTITUDE_DOWN + " = ?,"                 // 32
+            + KEY_TRACK_ALTITUDE_INPROGRESS + " = ?,"           // 33
+            + KEY_TRACK_SPEED_MAX + " = ?,"                     // 34
+            + KEY_TRACK_SPEED_AVERAGE + " = ?,"                 // 35
+            + KEY_TRACK_SPEED_AVERAGEMOVING + " = ?,"           // 36
+            + KEY_TRACK_NUMBEROFLOCATIONS + " = ?,"             // 37
+            + KEY_TRACK_NUMBEROFPLACEMARKS + " = ?,"            // 38
+            + KEY_TRACK_VALIDMAP + " = ?,"                      // 39
+            + KEY_TRACK_TYPE + " = ?,"                          // 40
+            + KEY_TRACK_DESCRIPTION + " = ?"                    // 41
+            + " WHERE " + KEY_ID + " = ?";                      // 42
+
+    // The update of the statistics only (Track.DIRTY_STATISTICS),
+    // that are the columns changed by each new location.
+    private static final String SQL_UPDATE_TRACK_STATISTICS = "UPDATE " + TABLE_TRACKS + " SET "
+            + KEY_TRACK_LASTFIX_TIME + " = ?,"                  // 1
+            + KEY_TRACK_END_LATITUDE + " = ?,"                  // 2
+            + KEY_TRACK_END_LONGITUDE + " = ?,"                 // 3
+            + KEY_TRACK_END_ALTITUDE + " = ?,"                  // 4
+            + KEY_TRACK_END_ACCURACY + " = ?,"                  // 5
+            + KEY_TRACK_END_SPEED + " = ?,"                     // 6
+            + KEY_TRACK_END_TIME + " = ?,"                      // 7
+            + KEY_TRACK_LASTSTEPDST_LATITUDE + " = ?,"          // 8
+            + KEY_TRACK_LASTSTEPDST_LONGITUDE + " = ?,"         // 9
+            + KEY_TRACK_LASTSTEPDST_ACCURACY + " = ?,"          // 10
+            + KEY_TRACK_LASTSTEPALT_ALTITUDE + " = ?,"          // 11
+            + KEY_TRACK_LASTSTEPALT_ACCURACY + " = ?,"          // 12
+            + KEY_TRACK_MIN_LATITUDE + " = ?,"                  // 13
+            + KEY_TRACK_MIN_LONGITUDE + " = ?,"                 // 14
+            + KEY_TRACK_MAX_LATITUDE + " = ?,"                  // 15
+            + KEY_TRACK_MAX_LONGITUDE + " = ?,"                 // 16
+            + KEY_TRACK_DURATION + " = ?,"                      // 17
+            + KEY_TRACK_DURATION_MOVING + " = ?,"               // 18
+            + KEY_TRACK_DISTANCE + " = ?,"                      // 19
+            + KEY_TRACK_DISTANCE_INPROGRESS + " = ?,"           // 20
+            + KEY_TRACK_DISTANCE_LASTALTITUDE + " = ?,"         // 21
+            + KEY_TRACK_ALTITUDE_UP + " = ?,"                   // 22
+            + KEY_TRACK_ALTITUDE_DOWN + " = ?,"                 // 23
+            + KEY_TRACK_ALTITUDE_INPROGRESS + " = ?,"           // 24
+            + KEY_TRACK_SPEED_MAX + " = ?,"                     // 25
+            + KEY_TRACK_SPEED_AVERAGE + " = ?,"                 // 26
+            + KEY_TRACK_SPEED_AVERAGEMOVING + " = ?,"           // 27
+            + KEY_TRACK_NUMBEROFLOCATIONS + " = ?,"             // 28
+            + KEY_TRACK_NUMBEROFPLACEMARKS + " = ?"             // 29
+            + " WHERE " + KEY_ID + " = ?";                      // 30
 
     /**
-     * Updates a track record using the given Track data.
+     * Returns the writable DB, compiling the statements of the write path
+     * if they have not been compiled yet for it.
      *
-     * @param track the Track containing the new values to store
+     * @return the writable DB
      */
-    public void updateTrack(Track track) {
+    private SQLiteDatabase getWritableDatabaseWithStatements() {
         SQLiteDatabase db = this.getWritableDatabase();
+        if (db != compiledStatementsDB) {
+            closeStatements();
+            insertLocationStatement = db.compileStatement(SQL_INSERT_LOCATION);
+            insertPlacemarkStatement = db.compileStatement(SQL_INSERT_PLACEMARK);
+            updateTrackStatement = db.compileStatement(SQL_UPDATE_TRACK);
+            updateTrackStatisticsStatement = db.compileStatement(SQL_UPDATE_TRACK_STATISTICS);
+            compiledStatementsDB = db;
+        }
+        return db;
+    }
 
-        ContentValues trkvalues = new ContentValues();
-        trkvalues.put(KEY_TRACK_NAME, track.getName());
+    /**
+     * Releases the compiled statements.
+     */
+    private void closeStatements() {
+        if (insertLocationStatement != null) insertLocationStatement.close();
+        if (insertPlacemarkStatement != null) insertPlacemarkStatement.close();
+        if (updateTrackStatement != null) updateTrackStatement.close();
+        if (updateTrackStatisticsStatement != null) updateTrackStatisticsStatement.close();
+        insertLocationStatement = null;
+        insertPlacemarkStatement = null;
+        updateTrackStatement = null;
+        updateTrackStatisticsStatement = null;
+        compiledStatementsDB = null;
+    }
 
-        trkvalues.put(KEY_TRACK_FROM, "");
-        trkvalues.put(KEY_TRACK_TO, "");
+    /**
+     * Closes the compiled statements and the DB.
+     */
+    @Override
+    public synchronized void close() {
+        closeStatements();
+        super.close();
+    }
 
-        trkvalues.put(KEY_TRACK_START_LATITUDE, track.getLatitudeStart());
-        trkvalues.put(KEY_TRACK_START_LONGITUDE, track.getLongitudeStart());
-        trkvalues.put(KEY_TRACK_START_ALTITUDE, track.getAltitudeStart());
-        trkvalues.put(KEY_TRACK_START_ACCURACY, track.getAccuracyStart());
-        trkvalues.put(KEY_TRACK_START_SPEED, track.getSpeedStart());
-        trkvalues.put(KEY_TRACK_START_TIME, track.getTimeStart());
+    /**
+     * Binds a String to a compiled statement, managing the null values.
+     */
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value != null) statement.bindString(index, value);
+        else statement.bindNull(index);
+    }
 
-        trkvalues.put(KEY_TRACK_LASTFIX_TIME, track.getTimeLastFix());
+    /**
+     * Binds the values of a location (or placemark) to the first 12 parameters
+     * of a compiled insert statement.
+     *
+     * @param statement the compiled statement
+     * @param location the location to store
+     * @param trackID the ID of the Track that owns the location
+     * @param number the progressive number of the location into the Track
+     * @param type the type of location (LOCATION_TYPE_LOCATION or LOCATION_TYPE_PLACEMARK)
+     */
+    private static void bindLocation(SQLiteStatement statement, LocationExtended location, long trackID, long number, int type) {
+        Location loc = location.getLocation();
 
-        trkvalues.put(KEY_TRACK_END_LATITUDE, track.getLatitudeEnd());
-        trkvalues.put(KEY_TRACK_END_LONGITUDE, track.getLongitudeEnd());
-        trkvalues.put(KEY_TRACK_END_ALTITUDE, track.getAltitudeEnd());
-        trkvalues.put(KEY_TRACK_END_ACCURACY, track.getAccuracyEnd());
-        trkvalues.put(KEY_TRACK_END_SPEED, track.getSpeedEnd());
-        trkvalues.put(KEY_TRACK_END_TIME, track.getTimeEnd());
+        statement.bindLong(1, trackID);
+        statement.bindLong(2, number);
+        statement.bindDouble(3, loc.getLatitude());
+        statement.bindDouble(4, loc.getLongitude());
+        statement.bindDouble(5, loc.hasAltitude() ? loc.getAltitude() : NOT_AVAILABLE);
+        statement.bindDouble(6, loc.hasSpeed() ? loc.getSpeed() : NOT_AVAILABLE);
+        statement.bindDouble(7, loc.hasAccuracy() ? loc.getAccuracy() : NOT_AVAILABLE);
+        statement.bindDouble(8, loc.hasBearing() ? loc.getBearing() : NOT_AVAILABLE);
+        statement.bindLong(9, loc.getTime());
+        statement.bindLong(10, location.getNumberOfSatellites());
+        statement.bindLong(11, type);
+        statement.bindLong(12, location.getNumberOfSatellitesUsedInFix());
+    }
 
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_LATITUDE, track.getLatitudeLastStepDistance());
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_LONGITUDE, track.getLongitudeLastStepDistance());
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_ACCURACY, track.getAccuracyLastStepDistance());
+    /**
+     * Binds the values of a Track to the compiled update statement of the tracks table.
+     *
+     * @param statement the compiled statement
+     * @param track the Track containing the values to store
+     */
+    private static void bindTrack(SQLiteStatement statement, Track track) {
+        bindStringOrNull(statement, 1, track.getName());
 
-        trkvalues.put(KEY_TRACK_LASTSTEPALT_ALTITUDE, track.getAltitudeLastStepAltitude());
-        trkvalues.put(KEY_TRACK_LASTSTEPALT_ACCURACY, track.getAccuracyLastStepAltitude());
+        statement.bindString(2, "");
+        statement.bindString(3, "");
 
-        trkvalues.put(KEY_TRACK_MIN_LATITUDE, track.getLatitudeMin());
-        trkvalues.put(KEY_TRACK_MIN_LONGITUDE, track.getLongitudeMin());
+        statement.bindDouble(4, track.getLatitudeStart());
+        statement.bindDouble(5, track.getLongitudeStart());
+        statement.bindDouble(6, track.getAltitudeStart());
+        statement.bindDouble(7, track.getAccuracyStart());
+        statement.bindDouble(8, track.getSpeedStart());
+        statement.bindLong(9, track.getTimeStart());
 
-        trkvalues.put(KEY_TRACK_MAX_LATITUDE, track.getLatitudeMax());
-        trkvalues.put(KEY_TRACK_MAX_LONGITUDE, track.getLongitudeMax());
+        statement.bindLong(10, track.getTimeLastFix());
 
-        trkvalues.put(KEY_TRACK_DURATION, track.getDuration());
-        trkvalues.put(KEY_TRACK_DURATION_MOVING, track.getDurationMoving());
+        statement.bindDouble(11, track.getLatitudeEnd());
+        statement.bindDouble(12, track.getLongitudeEnd());
+        statement.bindDouble(13, track.getAltitudeEnd());
+        statement.bindDouble(14, track.getAccuracyEnd());
+        statement.bindDouble(15, track.getSpeedEnd());
+        statement.bindLong(16, track.getTimeEnd());
 
-        trkvalues.put(KEY_TRACK_DISTANCE, track.getDistance());
-        trkvalues.put(KEY_TRACK_DISTANCE_INPROGRESS, track.getDistanceInProgress());
-        trkvalues.put(KEY_TRACK_DISTANCE_LASTALTITUDE, track.getDistanceLastAltitude());
+        statement.bindDouble(17, track.getLatitudeLastStepDistance());
+        statement.bindDouble(18, track.getLongitudeLastStepDistance());
+        statement.bindDouble(19, track.getAccuracyLastStepDistance());
 
-        trkvalues.put(KEY_TRACK_ALTITUDE_UP, track.getAltitudeUp());
-        trkvalues.put(KEY_TRACK_ALTITUDE_DOWN, track.getAltitudeDown());
-        trkvalues.put(KEY_TRACK_ALTITUDE_INPROGRESS, track.getAltitudeInProgress());
+        statement.bindDouble(20, track.getAltitudeLastStepAltitude());
+        statement.bindDouble(21, track.getAccuracyLastStepAltitude());
 
-        trkvalues.put(KEY_TRACK_SPEED_MAX, track.getSpeedMax());
-        trkvalues.put(KEY_TRACK_SPEED_AVERAGE, track.getSpeedAverage());
-        trkvalues.put(KEY_TRACK_SPEED_AVERAGEMOVING, track.getSpeedAverageMoving());
+        statement.bindDouble(22, track.getLatitudeMin());
+        statement.bindDouble(23, track.getLongitudeMin());
 
-        trkvalues.put(KEY_TRACK_NUMBEROFLOCATIONS, track.getNumberOfLocations());
-        trkvalues.put(KEY_TRACK_NUMBEROFPLACEMARKS, track.getNumberOfPlacemarks());
-        trkvalues.put(KEY_TRACK_TYPE, track.getType());
+        statement.bindDouble(24, track.getLatitudeMax());
+        statement.bindDouble(25, track.getLongitudeMax());
 
-        trkvalues.put(KEY_TRACK_VALIDMAP, track.getValidMap());
-        trkvalues.put(KEY_TRACK_DESCRIPTION, track.getDescription());
+        statement.bindLong(26, track.getDuration());
+        statement.bindLong(27, track.getDurationMoving());
 
-        try {
-            db.beginTransaction();
-            db.update(TABLE_TRACKS, trkvalues, KEY_ID + " = ?",
-                    new String[] { String.valueOf(track.getId()) });    // Update the corresponding Track
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
-        }
-        //Log.w("myApp", "[#] DatabaseHandler.java - addLocation: Location " + track.getNumberOfLocations() + " added into track " + track.getID());
+        statement.bindDouble(28, track.getDistance());
+        statement.bindDouble(29, track.getDistanceInProgress());
+        statement.bindLong(30, track.getDistanceLastAltitude());
+
+        statement.bindDouble(31, track.getAltitudeUp());
+        statement.bindDouble(32, track.getAltitudeDown());
+        statement.bindDouble(33, track.getAltitudeInProgress());
+
+        statement.bindDouble(34, track.getSpeedMax());
+        statement.bindDouble(35, track.getSpeedAverage());
+        statement.bindDouble(36, track.getSpeedAverageMoving());
+
+        statement.bindLong(37, track.getNumberOfLocations());
+        statement.bindLong(38, track.getNumberOfPlacemarks());
+        statement.bindLong(39, track.getValidMap());
+        statement.bindLong(40, track.getType());
+
+        bindStringOrNull(statement, 41, track.getDescription());
+
+        statement.bindLong(42, track.getId());
     }
 
     /**
-     * Adds a new Location to a Track and update the corresponding Track table.
-     * The two operations will be done in a single transaction, to avoid any data loss or corruption.
+     * Binds the statistics of a Track to the compiled statement that updates
+     * only the statistics columns of the tracks table.
      *
-     * @param location the location to add
-     * @param track the Track that receives the location
+     * @param statement the compiled statement
+     * @param track the Track containing the values to store
      */
-    public void addLocationToTrack(LocationExtended location, Track track) {
-        SQLiteDatabase db = this.getWritableDatabase();
+    private static void bindTrackStatistics(SQLiteStatement statement, Track track) {
+        statement.bindLong(1, track.getTimeLastFix());
 
-        Location loc = location.getLocation();
+        statement.bindDouble(2, track.getLatitudeEnd());
+        statement.bindDouble(3, track.getLongitudeEnd());
+        statement.bindDouble(4, track.getAltitudeEnd());
+        statement.bindDouble(5, track.getAccuracyEnd());
+        statement.bindDouble(6, track.getSpeedEnd());
+        statement.bindLong(7, track.getTimeEnd());
 
-        ContentValues locvalues = new ContentValues();
-        locvalues.put(KEY_TRACK_ID, track.getId());
-        locvalues.put(KEY_LOCATION_NUMBER, track.getNumberOfLocations());
-        locvalues.put(KEY_LOCATION_LATITUDE, loc.getLatitude());
-        locvalues.put(KEY_LOCATION_LONGITUDE, loc.getLongitude());
-        locvalues.put(KEY_LOCATION_ALTITUDE, loc.hasAltitude() ? loc.getAltitude() : NOT_AVAILABLE);
-        locvalues.put(KEY_LOCATION_SPEED, loc.hasSpeed() ? loc.getSpeed() : NOT_AVAILABLE);
-        locvalues.put(KEY_LOCATION_ACCURACY, loc.hasAccuracy() ? loc.getAccuracy() : NOT_AVAILABLE);
-        locvalues.put(KEY_LOCATION_BEARING, loc.hasBearing() ? loc.getBearing() : NOT_AVAILABLE);
-        locvalues.put(KEY_LOCATION_TIME, loc.getTime());
-        locvalues.put(KEY_LOCATION_NUMBEROFSATELLITES, location.getNumberOfSatellites());
-        locvalues.put(KEY_LOCATION_TYPE, LOCATION_TYPE_LOCATION);
-        locvalues.put(KEY_LOCATION_NUMBEROFSATELLITESUSEDINFIX, location.getNumberOfSatellitesUsedInFix());
+        statement.bindDouble(8, track.getLatitudeLastStepDistance());
+        statement.bindDouble(9, track.getLongitudeLastStepDistance());
+        statement.bindDouble(10, track.getAccuracyLastStepDistance());
 
-        ContentValues trkvalues = new ContentValues();
-        trkvalues.put(KEY_TRACK_NAME, track.getName());
+        statement.bindDouble(11, track.getAltitudeLastStepAltitude());
+        statement.bindDouble(12, track.getAccuracyLastStepAltitude());
 
-        trkvalues.put(KEY_TRACK_FROM, "");
-        trkvalues.put(KEY_TRACK_TO, "");
+        statement.bindDouble(13, track.getLatitudeMin());
+        statement.bindDouble(14, track.getLongitudeMin());
 
-        trkvalues.put(KEY_TRACK_START_LATITUDE, track.getLatitudeStart());
-        trkvalues.put(KEY_TRACK_START_LONGITUDE, track.getLongitudeStart());
-        trkvalues.put(KEY_TRACK_START_ALTITUDE, track.getAltitudeStart());
-        trkvalues.put(KEY_TRACK_START_ACCURACY, track.getAccuracyStart());
-        trkvalues.put(KEY_TRACK_START_SPEED, track.getSpeedStart());
-        trkvalues.put(KEY_TRACK_START_TIME, track.getTimeStart());
+        statement.bindDouble(15, track.getLatitudeMax());
+        statement.bindDouble(16, track.getLongitudeMax());
 
-        trkvalues.put(KEY_TRACK_LASTFIX_TIME, track.getTimeLastFix());
+        statement.bindLong(17, track.getDuration());
+        statement.bindLong(18, track.getDurationMoving());
 
-        trkvalues.put(KEY_TRACK_END_LATITUDE, track.getLatitudeEnd());
-        trkvalues.put(KEY_TRACK_END_LONGITUDE, track.getLongitudeEnd());
-        trkvalues.put(KEY_TRACK_END_ALTITUDE, track.getAltitudeEnd());
-        trkvalues.put(KEY_TRACK_END_ACCURACY, track.getAccuracyEnd());
-        trkvalues.put(KEY_TRACK_END_SPEED, track.getSpeedEnd());
-        trkvalues.put(KEY_TRACK_END_TIME, track.getTimeEnd());
+        statement.bindDouble(19, track.getDistance());
+        statement.bindDouble(20, track.getDistanceInProgress());
+        statement.bindLong(21, track.getDistanceLastAltitude());
 
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_LATITUDE, track.getLatitudeLastStepDistance());
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_LONGITUDE, track.getLongitudeLastStepDistance());
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_ACCURACY, track.getAccuracyLastStepDistance());
+        statement.bindDouble(22, track.getAltitudeUp());
+        statement.bindDouble(23, track.getAltitudeDown());
+        statement.bindDouble(24, track.getAltitudeInProgress());
 
-        trkvalues.put(KEY_TRACK_LASTSTEPALT_ALTITUDE, track.getAltitudeLastStepAltitude());
-        trkvalues.put(KEY_TRACK_LASTSTEPALT_ACCURACY, track.getAccuracyLastStepAltitude());
+        statement.bindDouble(25, track.getSpeedMax());
+        statement.bindDouble(26, track.getSpeedAverage());
+        statement.bindDouble(27, track.getSpeedAverageMoving());
 
-        trkvalues.put(KEY_TRACK_MIN_LATITUDE, track.getLatitudeMin());
-        trkvalues.put(KEY_TRACK_MIN_LONGITUDE, track.getLongitudeMin());
+        statement.bindLong(28, track.getNumberOfLocations());
+        statement.bindLong(29, track.getNumberOfPlacemarks());
 
-        trkvalues.put(KEY_TRACK_MAX_LATITUDE, track.getLatitudeMax());
-        trkvalues.put(KEY_TRACK_MAX_LONGITUDE, track.getLongitudeMax());
+        statement.bindLong(30, track.getId());
+    }
 
-        trkvalues.put(KEY_TRACK_DURATION, track.getDuration());
-        trkvalues.put(KEY_TRACK_DURATION_MOVING, track.getDurationMoving());
+    /**
+     * Writes into the tracks table the summary of the given Track,
+     * updating only the groups of columns changed since the last write.
+     * It must be called inside a transaction.
+     *
+     * @param track the Track containing the values to store
+     */
+    private void writeTrackSummary(Track track) {
+        final int dirtyFields = track.getDirtyFields();
+        if ((dirtyFields & Track.DIRTY_DESCRIPTIVE) != 0) {
+            bindTrack(updateTrackStatement, track);
+            updateTrackStatement.executeUpdateDelete();             // Update all the columns of the Track
+        } else if ((dirtyFields & Track.DIRTY_STATISTICS) != 0) {
+            bindTrackStatistics(updateTrackStatisticsStatement, track);
+            updateTrackStatisticsStatement.executeUpdateDelete();   // Update the statistics of the Track
+        }
+        track.clearDirtyFields(dirtyFields);
+    }
 
-        trkvalues.put(KEY_TRACK_DISTANCE, track.getDistance());
-        trkvalues.put(KEY_TRACK_DISTANCE_INPROGRESS, track.getDistanceInProgress());
-        trkvalues.put(KEY_TRACK_DISTANCE_LASTALTITUDE, track.getDistanceLastAltitude());
+// ----------------------------------------------------------------------- LOCATIONS AND PLACEMARKS
 
-        trkvalues.put(KEY_TRACK_ALTITUDE_UP, track.getAltitudeUp());
-        trkvalues.put(KEY_TRACK_ALTITUDE_DOWN, track.getAltitudeDown());
-        trkvalues.put(KEY_TRACK_ALTITUDE_INPROGRESS, track.getAltitudeInProgress());
+    /**
+     * Updates a track record using the given Track data.
+     *
+     * @param track the Track containing the new values to store
+     */
+    public synchronized void updateTrack(Track track) {
+        SQLiteDatabase db = getWritableDatabaseWithStatements();
 
-        trkvalues.put(KEY_TRACK_SPEED_MAX, track.getSpeedMax());
-        trkvalues.put(KEY_TRACK_SPEED_AVERAGE, track.getSpeedAverage());
-        trkvalues.put(KEY_TRACK_SPEED_AVERAGEMOVING, track.getSpeedAverageMoving());
+        // Only the changes made before the binding are written: the ones made meanwhile
+        // by another thread remain pending for the next write
+        final int dirtyFields = track.getDirtyFields();
+        try {
+            db.beginTransaction();
+            bindTrack(updateTrackStatement, track);
+            updateTrackStatement.executeUpdateDelete();             // Update the corresponding Track
+            track.clearDirtyFields(dirtyFields);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        //Log.w("myApp", "[#] DatabaseHandler.java - addLocation: Location " + track.getNumberOfLocations() + " added into track " + track.getID());
+    }
 
-        trkvalues.put(KEY_TRACK_NUMBEROFLOCATIONS, track.getNumberOfLocations());
-        trkvalues.put(KEY_TRACK_NUMBEROFPLACEMARKS, track.getNumberOfPlacemarks());
-        trkvalues.put(KEY_TRACK_TYPE, track.getType());
+    /**
+     * Adds a group of Locations to a Track and, if requested, updates the corresponding Track table once.
+     * All the operations will be done in a single transaction (group commit),
+     * to avoid any data loss or corruption and to save a DB commit for each location.
+     * <br>
+     * The locations must be already added to the Track (using Track.add), in the same order;
+     * they are numbered backwards starting from the current number of locations of the Track.
+     * <br>
+     * When the summary is not updated, the Track keeps track of the changed columns,
+     * that will be written with the next update. In case of crash, the summary
+     * can be rebuilt from the locations, see {@link #rebuildTrack(Track)}.
+     *
+     * @param locations the list of the locations to add, in chronological order
+     * @param track the Track that receives the locations
+     * @param updateSummary true to write also the changed columns of the Track summary
+     */
+    public synchronized void addLocationsToTrack(List<LocationExtended> locations, Track track, boolean updateSummary) {
+        if (locations.isEmpty() && !updateSummary) return;
+        SQLiteDatabase db = getWritableDatabaseWithStatements();
 
-        trkvalues.put(KEY_TRACK_VALIDMAP, track.getValidMap());
-        trkvalues.put(KEY_TRACK_DESCRIPTION, track.getDescription());
+        long number = track.getNumberOfLocations() - locations.size() + 1;    // The number of the first location of the group
 
         try {
             db.beginTransaction();
-            db.insert(TABLE_LOCATIONS, null, locvalues);              // Insert the new Location
-            db.update(TABLE_TRACKS, trkvalues, KEY_ID + " = ?",
-                    new String[] { String.valueOf(track.getId()) });                // Update the corresponding Track
+            for (LocationExtended location : locations) {
+                bindLocation(insertLocationStatement, location, track.getId(), number++, LOCATION_TYPE_LOCATION);
+                insertLocationStatement.executeInsert();            // Insert the new Location
+            }
+            if (updateSummary) writeTrackSummary(track);            // Update the corresponding Track
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
-        //Log.w("myApp", "[#] DatabaseHandler.java - addLocation: Location " + track.getNumberOfLocations() + " added into track " + track.getID());
+        //Log.w("myApp", "[#] DatabaseHandler.java - addLocations: " + locations.size() + " Locations added into track " + track.getId());
     }
 
     /**
@@ -456,87 +703,15 @@ class DatabaseHandler extends SQLiteOpenHelper {
      * @param placemark the placemark to add
      * @param track the Track that receives the placemark
      */
-    public void addPlacemarkToTrack(LocationExtended placemark, Track track) {
-        SQLiteDatabase db = this.getWritableDatabase();
-
-        Location loc = placemark.getLocation();
-
-        ContentValues locvalues = new ContentValues();
-        locvalues.put(KEY_TRACK_ID, track.getId());
-        locvalues.put(KEY_LOCATION_NUMBER, track.getNumberOfPlacemarks());
-        locvalues.put(KEY_LOCATION_LATITUDE, loc.getLatitude());
-        locvalues.put(KEY_LOCATION_LONGITUDE, loc.getLongitude());
-        locvalues.put(KEY_LOCATION_ALTITUDE, loc.hasAltitude() ? loc.getAltitude() : NOT_AVAILABLE);
-        locvalues.put(KEY_LOCATION_SPEED, loc.hasSpeed() ? loc.getSpeed() : NOT_AVAILABLE);
-        locvalues.put(KEY_LOCATION_ACCURACY, loc.hasAccuracy() ? loc.getAccuracy() : NOT_AVAILABLE);
-        locvalues.put(KEY_LOCATION_BEARING, loc.hasBearing() ? loc.getBearing() : NOT_AVAILABLE);
-        locvalues.put(KEY_LOCATION_TIME, loc.getTime());
-        locvalues.put(KEY_LOCATION_NUMBEROFSATELLITES, placemark.getNumberOfSatellites());
-        locvalues.put(KEY_LOCATION_TYPE, LOCATION_TYPE_PLACEMARK);
-        locvalues.put(KEY_LOCATION_NAME, placemark.getDescription());
-        locvalues.put(KEY_LOCATION_NUMBEROFSATELLITESUSEDINFIX, placemark.getNumberOfSatellitesUsedInFix());
-
-        ContentValues trkvalues = new ContentValues();
-        trkvalues.put(KEY_TRACK_NAME, track.getName());
-        trkvalues.put(KEY_TRACK_FROM, "");
-        trkvalues.put(KEY_TRACK_TO, "");
-
-        trkvalues.put(KEY_TRACK_START_LATITUDE, track.getLatitudeStart());
-        trkvalues.put(KEY_TRACK_START_LONGITUDE, track.getLongitudeStart());
-        trkvalues.put(KEY_TRACK_START_ALTITUDE, track.getAltitudeStart());
-        trkvalues.put(KEY_TRACK_START_ACCURACY, track.getAccuracyStart());
-        trkvalues.put(KEY_TRACK_START_SPEED, track.getSpeedStart());
-        trkvalues.put(KEY_TRACK_START_TIME, track.getTimeStart());
-
-        trkvalues.put(KEY_TRACK_LASTFIX_TIME, track.getTimeLastFix());
-
-        trkvalues.put(KEY_TRACK_END_LATITUDE, track.getLatitudeEnd());
-        trkvalues.put(KEY_TRACK_END_LONGITUDE, track.getLongitudeEnd());
-        trkvalues.put(KEY_TRACK_END_ALTITUDE, track.getAltitudeEnd());
-        trkvalues.put(KEY_TRACK_END_ACCURACY, track.getAccuracyEnd());
-        trkvalues.put(KEY_TRACK_END_SPEED, track.getSpeedEnd());
-        trkvalues.put(KEY_TRACK_END_TIME, track.getTimeEnd());
-
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_LATITUDE, track.getLatitudeLastStepDistance());
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_LONGITUDE, track.getLongitudeLastStepDistance());
-        trkvalues.put(KEY_TRACK_LASTSTEPDST_ACCURACY, track.getAccuracyLastStepDistance());
-
-        trkvalues.put(KEY_TRACK_LASTSTEPALT_ALTITUDE, track.getAltitudeLastStepAltitude());
-        trkvalues.put(KEY_TRACK_LASTSTEPALT_ACCURACY, track.getAccuracyLastStepAltitude());
-
-        trkvalues.put(KEY_TRACK_MIN_LATITUDE, track.getLatitudeMin());
-        trkvalues.put(KEY_TRACK_MIN_LONGITUDE, track.getLongitudeMin());
-
-        trkvalues.put(KEY_TRACK_MAX_LATITUDE, track.getLatitudeMax());
-        trkvalues.put(KEY_TRACK_MAX_LONGITUDE, track.getLongitudeMax());
-
-        trkvalues.put(KEY_TRACK_DURATION, track.getDuration());
-        trkvalues.put(KEY_TRACK_DURATION_MOVING, track.getDurationMoving());
-
-        trkvalues.put(KEY_TRACK_DISTANCE, track.getDistance());
-        trkvalues.put(KEY_TRACK_DISTANCE_INPROGRESS, track.getDistanceInProgress());
-        trkvalues.put(KEY_TRACK_DISTANCE_LASTALTITUDE, track.getDistanceLastAltitude());
-
-        trkvalues.put(KEY_TRACK_ALTITUDE_UP, track.getAltitudeUp());
-        trkvalues.put(KEY_TRACK_ALTITUDE_DOWN, track.getAltitudeDown());
-        trkvalues.put(KEY_TRACK_ALTITUDE_INPROGRESS, track.getAltitudeInProgress());
-
-        trkvalues.put(KEY_TRACK_SPEED_MAX, track.getSpeedMax());
-        trkvalues.put(KEY_TRACK_SPEED_AVERAGE, track.getSpeedAverage());
-        trkvalues.put(KEY_TRACK_SPEED_AVERAGEMOVING, track.getSpeedAverageMoving());
-
-        trkvalues.put(KEY_TRACK_NUMBEROFLOCATIONS, track.getNumberOfLocations());
-        trkvalues.put(KEY_TRACK_NUMBEROFPLACEMARKS, track.getNumberOfPlacemarks());
-        trkvalues.put(KEY_TRACK_TYPE, track.getType());
-
-        trkvalues.put(KEY_TRACK_VALIDMAP, track.getValidMap());
-        trkvalues.put(KEY_TRACK_DESCRIPTION, track.getDescription());
+    public synchronized void addPlacemarkToTrack(LocationExtended placemark, Track track) {
+        SQLiteDatabase db = getWritableDatabaseWithStatements();
 
         try {
             db.beginTransaction();
-            db.insert(TABLE_PLACEMARKS, null, locvalues);         // Insert the new Placemark
-            db.update(TABLE_TRACKS, trkvalues, KEY_ID + " = ?",
-                    new String[] { String.valueOf(track.getId()) });            // Update the corresponding Track
+            bindLocation(insertPlacemarkStatement, placemark, track.getId(), track.getNumberOfPlacemarks(), LOCATION_TYPE_PLACEMARK);
+            bindStringOrNull(insertPlacemarkStatement, 13, placemark.getDescription());
+            insertPlacemarkStatement.executeInsert();               // Insert the new Placemark
+            writeTrackSummary(track);                               // Update the corresponding Track
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
@@ -545,7 +720,6 @@ class DatabaseHandler extends SQLiteOpenHelper {
         //Log.w("myApp", "[#] DatabaseHandler.java - addLocation: Location " + track.getNumberOfLocations() + " added into track " + track.getID());
     }
 
-
     // NOT USED, Commented out
     // Get single Location
 //    public LocationExtended getLocation(long id) {
@@ -601,6 +775,66 @@ class DatabaseHandler extends SQLiteOpenHelper {
 //    }
 
 
+    // The queries used by the TrackPointCursor to read a page of locations / placemarks.
+    // The columns are selected in the order defined by the TrackPointCursor.COLUMN_ constants.
+    private static final String SQL_SELECT_POINTS_COLUMNS = "SELECT "
+            + KEY_LOCATION_NUMBER + ","                         // 0
+            + KEY_LOCATION_LATITUDE + ","                       // 1
+            + KEY_LOCATION_LONGITUDE + ","                      // 2
+            + KEY_LOCATION_ALTITUDE + ","                       // 3
+            + KEY_LOCATION_SPEED + ","                          // 4
+            + KEY_LOCATION_ACCURACY + ","                       // 5
+            + KEY_LOCATION_BEARING + ","                        // 6
+            + KEY_LOCATION_TIME + ","                           // 7
+            + KEY_LOCATION_NUMBEROFSATELLITES + ","             // 8
+            + KEY_LOCATION_NUMBEROFSATELLITESUSEDINFIX;         // 9
+    private static final String SQL_SELECT_POINTS_PAGE_CONDITIONS = " WHERE "
+            + KEY_TRACK_ID + " = ? AND " + KEY_LOCATION_NUMBER + " > ?"
+            + " ORDER BY " + KEY_LOCATION_NUMBER + " LIMIT " + TrackPointCursor.PAGE_SIZE;
+    private static final String SQL_SELECT_LOCATIONS_PAGE = SQL_SELECT_POINTS_COLUMNS
+            + " FROM " + TABLE_LOCATIONS + SQL_SELECT_POINTS_PAGE_CONDITIONS;
+    private static final String SQL_SELECT_PLACEMARKS_PAGE = SQL_SELECT_POINTS_COLUMNS
+            + "," + KEY_LOCATION_NAME                           // 10
+            + " FROM " + TABLE_PLACEMARKS + SQL_SELECT_POINTS_PAGE_CONDITIONS;
+
+    /**
+     * Returns a forward cursor that streams all the Locations of a specified Track,
+     * ordered by number. The cursor must be closed after use.
+     *
+     * @param trackID the ID of the Track
+     *
+     * @return the cursor on the Locations of the Track
+     */
+    public TrackPointCursor getLocationsCursor(long trackID) {
+        return new TrackPointCursor(this.getWritableDatabase(), SQL_SELECT_LOCATIONS_PAGE, trackID, false);
+    }
+
+    /**
+     * Returns a forward cursor that streams the Locations of a specified Track
+     * with number greater than afterNumber, ordered by number.
+     * It is used to resume an exportation. The cursor must be closed after use.
+     *
+     * @param trackID the ID of the Track
+     * @param afterNumber the number of the last Location already read
+     *
+     * @return the cursor on the Locations of the Track
+     */
+    public TrackPointCursor getLocationsCursor(long trackID, long afterNumber) {
+        return new TrackPointCursor(this.getWritableDatabase(), SQL_SELECT_LOCATIONS_PAGE, trackID, false, afterNumber);
+    }
+
+    /**
+     * Returns a forward cursor that streams all the Annotations (Placemarks) of a specified Track,
+     * ordered by number. The cursor must be closed after use.
+     *
+     * @param trackID the ID of the Track
+     *
+     * @return the cursor on the Placemarks of the Track
+     */
+    public TrackPointCursor getPlacemarksCursor(long trackID) {
+        return new TrackPointCursor(this.getWritableDatabase(), SQL_SELECT_PLACEMARKS_PAGE, trackID, true);
+    }
+
     /**
      * Returns a list of Locations associated to a specified Track,
      * with Location ID from startNumber to endNumber.
@@ -731,51 +965,6 @@ class DatabaseHandler extends SQLiteOpenHelper {
         return placemarkList;
     }
 
-    /**
-     * Returns a list of LatLng (a subset of Location data that contains only Latitude and Longitude)
-     * associated to a specified Track, with Location ID from startNumber to endNumber.
-     * Both limits are included.
-     * <p>
-     * This method is used to obtain the data for drawing the thumbnail of a track.
-     *
-     * @param trackID the ID of the Track
-     * @param startNumber the start number of the corresponding location (included)
-     * @param endNumber the end number of the corresponding location (included)
-     *
-     * @return the list of LatLng
-     */
-    public List<LatLng> getLatLngList(long trackID, long startNumber, long endNumber) {
-
-        List<LatLng> latlngList = new ArrayList<>();
-
-        String selectQuery = "SELECT " + KEY_TRACK_ID + "," + KEY_LOCATION_LATITUDE + "," + KEY_LOCATION_LONGITUDE + "," + KEY_LOCATION_NUMBER
-                + " FROM " + TABLE_LOCATIONS + " WHERE "
-                + KEY_TRACK_ID + " = " + trackID + " AND "
-                + KEY_LOCATION_NUMBER + " BETWEEN " + startNumber + " AND " + endNumber
-                + " ORDER BY " + KEY_LOCATION_NUMBER;
-
-        //Log.w("myApp", "[#] DatabaseHandler.java - getLocationList(" + trackID + ", " + startNumber + ", " +endNumber + ") ==> " + selectQuery);
-
-        SQLiteDatabase db = this.getWritableDatabase();
-        Cursor cursor = db.rawQuery(selectQuery, null);
-
-        if (cursor != null) {
-            // looping through all rows and adding to list
-            if (cursor.moveToFirst()) {
-                do {
-                    LatLng latlng = new LatLng();
-                    latlng.latitude = cursor.getDouble(1);
-                    latlng.longitude = cursor.getDouble(2);
-
-                    latlngList.add(latlng); // Add Location to list
-                } while (cursor.moveToNext());
-            }
-            cursor.close();
-        }
-        return latlngList;
-    }
-
-
     // NOT USED, Commented out
     // Get the total amount of Locations stored in the DB
 //    public long getLocationsTotalCount() {
@@ -788,16 +977,57 @@ class DatabaseHandler extends SQLiteOpenHelper {
 //    }
 
 
-    // NOT USED, Commented out
-    // Get the number of Locations of a Track
-//    public long getLocationsCount(long TrackID) {
-//        String countQuery = "SELECT  * FROM " + TABLE_LOCATIONS + " WHERE " + KEY_TRACK_ID + " = " + TrackID;
-//        SQLiteDatabase db = this.getWritableDatabase();
-//        Cursor cursor = db.rawQuery(countQuery, null);
-//        long result = cursor.getCount();
-//        cursor.close();
-//        return result;
-//    }
+    /**
+     * Returns the number of Locations stored into the DB for a specified Track.
+     *
+     * @param trackID the ID of the Track
+     *
+     * @return the number of Locations
+     */
+    public long getLocationsCount(long trackID) {
+        String countQuery = "SELECT COUNT(*) FROM " + TABLE_LOCATIONS + " WHERE " + KEY_TRACK_ID + " = " + trackID;
+        SQLiteDatabase db = this.getWritableDatabase();
+        long result = 0;
+        Cursor cursor = db.rawQuery(countQuery, null);
+        if (cursor != null) {
+            if (cursor.moveToFirst()) result = cursor.getLong(0);
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * Rebuilds the summary of a Track using the Locations and the Placemarks stored into the DB,
+     * and writes it into the tracks table.
+     * It is used when the stored summary is not aligned with the locations table,
+     * for example after a crash that happened before a deferred update of the summary.
+     * The name, the description and the type of the Track are preserved.
+     *
+     * @param track the Track, as stored into the DB
+     *
+     * @return the rebuilt Track
+     */
+    public Track rebuildTrack(Track track) {
+        Track rebuiltTrack = new Track(track.getName());
+        rebuiltTrack.setId(track.getId());
+        rebuiltTrack.setDescription(track.getDescription());
+        rebuiltTrack.setType(track.getType());
+
+        TrackPointBuffer buffer = new TrackPointBuffer(TrackPointCursor.PAGE_SIZE);
+        TrackPointCursor trackPointCursor = getLocationsCursor(track.getId());
+        try {
+            while (buffer.fill(trackPointCursor, buffer.capacity) > 0) {
+                for (int i = 0; i < buffer.size; i++) rebuiltTrack.add(buffer, i);
+            }
+        } finally {
+            trackPointCursor.close();
+        }
+        for (LocationExtended placemark : getPlacemarksList(track.getId(), 0, track.getNumberOfPlacemarks())) {
+            rebuiltTrack.addPlacemark(placemark);
+        }
+        updateTrack(rebuiltTrack);
+        return rebuiltTrack;
+    }
 
 
     // NOT USED, Commented out
@@ -830,26 +1060,74 @@ class DatabaseHandler extends SQLiteOpenHelper {
 // ----------------------------------------------------------------------------------------- TRACKS
 
     /**
-     * Deletes the track with the specified ID.
-     * The method deletes also Placemarks and Locations associated to the specified track.
+     * Deletes the tracks with the specified IDs, with a single transaction.
+     * The method deletes also Placemarks and Locations associated to the specified tracks.
+     * The rows are deleted using "IN (...)" queries, each one with up to
+     * DELETE_TRACKS_GROUP_SIZE IDs.
      *
-     * @param trackID the ID of the Track
+     * @param trackIDs the IDs of the Tracks
      */
-    public void DeleteTrack(long trackID) {
+    public void DeleteTracks(long[] trackIDs) {
+        if (trackIDs.length == 0) return;
         SQLiteDatabase db = this.getWritableDatabase();
         try {
             db.beginTransaction();
-            db.delete(TABLE_PLACEMARKS, KEY_TRACK_ID + " = ?",
-                    new String[] { String.valueOf(trackID) });    // Delete track's Placemarks
-            db.delete(TABLE_LOCATIONS, KEY_TRACK_ID + " = ?",
-                    new String[] { String.valueOf(trackID) });    // Delete track's Locations
-            db.delete(TABLE_TRACKS, KEY_ID + " = ?",
-                    new String[] { String.valueOf(trackID) });    // Delete track
+            for (int from = 0; from < trackIDs.length; from += DELETE_TRACKS_GROUP_SIZE) {
+                int n = Math.min(DELETE_TRACKS_GROUP_SIZE, trackIDs.length - from);
+                StringBuilder in = new StringBuilder(" IN (?");
+                for (int i = 1; i < n; i++) in.append(",?");
+                in.append(")");
+                deleteByIDs(db, "DELETE FROM " + TABLE_PLACEMARKS + " WHERE " + KEY_TRACK_ID + in, trackIDs, from, n);   // Delete tracks' Placemarks
+                deleteByIDs(db, "DELETE FROM " + TABLE_LOCATIONS + " WHERE " + KEY_TRACK_ID + in, trackIDs, from, n);    // Delete tracks' Locations
+                deleteByIDs(db, "DELETE FROM " + TABLE_TRACKS + " WHERE " + KEY_ID + in, trackIDs, from, n);              // Delete tracks
+            }
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
-        //Log.w("myApp", "[#] DatabaseHandler.java - addLocation: Location " + track.getNumberOfLocations() + " added into track " + track.getID());
+        //Log.w("myApp", "[#] DatabaseHandler.java - DeleteTracks: " + trackIDs.length + " tracks deleted");
+    }
+
+    /**
+     * Executes a DELETE statement that has n arguments, binding them
+     * to the IDs ids[from] ... ids[from + n - 1].
+     */
+    private void deleteByIDs(SQLiteDatabase db, String sql, long[] ids, int from, int n) {
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            for (int i = 0; i < n; i++) statement.bindLong(i + 1, ids[from + i]);
+            statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns the names of the tracks with the specified IDs.
+     * The names are read using "IN (...)" queries, each one with up to
+     * DELETE_TRACKS_GROUP_SIZE IDs, so no Track is loaded.
+     *
+     * @param trackIDs the IDs of the Tracks
+     * @return the names of the Tracks, by ID; the Tracks not found into the DB are not included
+     */
+    public Map<Long, String> getTrackNames(long[] trackIDs) {
+        Map<Long, String> names = new LinkedHashMap<>(2 * trackIDs.length);
+        SQLiteDatabase db = this.getWritableDatabase();
+        for (int from = 0; from < trackIDs.length; from += DELETE_TRACKS_GROUP_SIZE) {
+            int n = Math.min(DELETE_TRACKS_GROUP_SIZE, trackIDs.length - from);
+            StringBuilder in = new StringBuilder(" IN (?");
+            for (int i = 1; i < n; i++) in.append(",?");
+            in.append(")");
+            String[] args = new String[n];
+            for (int i = 0; i < n; i++) args[i] = String.valueOf(trackIDs[from + i]);
+            Cursor cursor = db.rawQuery("SELECT " + KEY_ID + "," + KEY_TRACK_NAME + " FROM " + TABLE_TRACKS
+                    + " WHERE " + KEY_ID + in, args);
+            if (cursor != null) {
+                while (cursor.moveToNext()) names.put(cursor.getLong(0), cursor.getString(1));
+                cursor.close();
+            }
+        }
+        return names;
     }
 
     /**
@@ -1122,6 +1400,35 @@ class DatabaseHandler extends SQLiteOpenHelper {
     }
 
 
+    // Getting the list of the IDs of the Tracks, with number between startNumber and endNumber, the newest first.
+    // Please note that limits both are inclusive!
+    // Only the IDs are read, so the whole list can be loaded without reading the rows of the Tracks.
+    // If onlyWithMap is true, only the IDs of the Tracks whose map can be drawn are returned
+    // (more than 2 locations, distance of at least 15 m, and VALIDMAP != 0).
+    public List<Long> getTrackIDsList(long startNumber, long endNumber, boolean onlyWithMap) {
+
+        List<Long> idList = new ArrayList<>();
+
+        String selectQuery = "SELECT " + KEY_ID + " FROM " + TABLE_TRACKS + " WHERE "
+                + KEY_ID + " BETWEEN " + startNumber + " AND " + endNumber
+                + (onlyWithMap ? " AND " + KEY_TRACK_NUMBEROFLOCATIONS + " > 2"
+                        + " AND " + KEY_TRACK_DISTANCE + " >= 15"
+                        + " AND " + KEY_TRACK_VALIDMAP + " != 0" : "")
+                + " ORDER BY " + KEY_ID + " DESC";
+
+        //Log.w("myApp", "[#] DatabaseHandler.java - getTrackIDsList(" + startNumber + ", " +endNumber + ") ==> " + selectQuery);
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        Cursor cursor = db.rawQuery(selectQuery, null);
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) idList.add(cursor.getLong(0));
+            cursor.close();
+        }
+        return idList;
+    }
+
+
     public void CorrectGPSWeekRollover() {
         String CorrectLocationsQuery = "UPDATE " + TABLE_LOCATIONS + " SET " + KEY_LOCATION_TIME + " = " + KEY_LOCATION_TIME + " + 619315200000 WHERE "
                 + KEY_LOCATION_TIME + " <= 1388534400000 ";               // 01/01/2014 00:00:00.000
@@ -26,13 +26,17 @@ import android.util.Log;
 
 import org.greenrobot.eventbus.EventBus;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
 
 import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
 
@@ -40,8 +44,10 @@ import androidx.documentfile.provider.DocumentFile;
 
 /**
  * The Class that manage the EGM96 Altitude Correction.
- * It loads the geoid heights from the WW15MGH.DAC binary file into a 1440x721 array
+ * It loads the geoid heights from the WW15MGH.DAC binary file into a 1440x721 grid
  * and uses it to return the altitude correction basing on coordinates.
+ * The grid is stored into a flat array, row by row (one row for each latitude),
+ * with the same order of the file, so it can be loaded with bulk copies.
  */
 class EGM96 {
 
@@ -78,9 +84,13 @@ class EGM96 {
 
 
     private static final int BOUNDARY = 3; // The grid extensions (in each of the 4 sides) of the real 721 x 1440 grid
-    private final short[][] EGMGrid = new short[BOUNDARY + 1440 + BOUNDARY][BOUNDARY + 721 + BOUNDARY];
-    private boolean isEGMGridLoaded = false;
-    private boolean isEGMGridLoading = false;
+    private static final int GRID_WIDTH = BOUNDARY + 1440 + BOUNDARY;      // The number of columns (longitudes) of the grid
+    private static final int GRID_HEIGHT = BOUNDARY + 721 + BOUNDARY;      // The number of rows (latitudes) of the grid
+    private static final int GRID_FILE_LENGTH = 2076480;                    // The length of the WW15MGH.DAC file (721 x 1440 shorts)
+    private final short[] EGMGrid = new short[GRID_WIDTH * GRID_HEIGHT];
+    private volatile boolean isEGMGridLoaded = false;
+    private volatile boolean isEGMGridLoading = false;
+    private volatile CountDownLatch loadingLatch = new CountDownLatch(0);  // Released when the loading in progress ends
     DocumentFile sharedFolder;
     DocumentFile privateFolder;
 
@@ -108,6 +118,7 @@ class EGM96 {
             //Log.w("myApp", "[#] EGM96.java - Shared folder = " + sharedFolder.getUri().toString());
             //Log.w("myApp", "[#] EGM96.java - Private folder = " + privateFolder.getUri().toString());
 
+            loadingLatch = new CountDownLatch(1);
             new Thread(new LoadEGM96Grid()).start();
         } else {
             if (isEGMGridLoading) Log.w("myApp", "[#] EGM96.java - Grid is already loading, please wait");
@@ -154,6 +165,24 @@ class EGM96 {
         return isEGMGridLoading;
     }
 
+    /**
+     * Waits until the loading of the EGM Grid in progress (if any) ends.
+     * It returns immediately if the grid is not loading.
+     *
+     * @return true if the grid is loaded
+     */
+    public boolean awaitLoaded() throws InterruptedException {
+        loadingLatch.await();
+        return isEGMGridLoaded;
+    }
+
+    /**
+     * @return the index into the EGMGrid array of the specified cell
+     */
+    private static int gridIndex(int ilon, int ilat) {
+        return ilat * GRID_WIDTH + ilon;
+    }
+
     /**
      * Returns the Altitude Correction (in meters) for the specified coordinates.
      * You can calculate the Orthometric altitude (related to the sea level) using
@@ -176,27 +205,123 @@ class EGM96 {
             int ilon = (int) (Lon / 0.25) + BOUNDARY;
             int ilat = (int) (Lat / 0.25) + BOUNDARY;
 
-            try {
+            // The cells are checked explicitly: into the flat grid an invalid column
+            // would not throw any exception, but it would read the next row
+            if ((ilon < 0) || (ilon + 1 >= GRID_WIDTH) || (ilat < 0) || (ilat + 1 >= GRID_HEIGHT)) return EGM96_VALUE_INVALID;
+
+            // Creating points for interpolation
+            int i = gridIndex(ilon, ilat);
+            return interpolate(EGMGrid[i], EGMGrid[i + GRID_WIDTH], EGMGrid[i + 1], EGMGrid[i + GRID_WIDTH + 1], Lat, Lon);
+        }
+        else return EGM96_VALUE_INVALID;
+    }
+
+    /**
+     * Returns the Altitude Corrections (in meters) for a set of points, computed in a single pass.
+     * Each correction is the same returned by getEGMCorrection, but the heights of
+     * the grid cell are read only when the point falls into a different cell than
+     * the previous one (the common case for the consecutive points of a Track).
+     *
+     * @param latitudes the latitudes of the points
+     * @param longitudes the longitudes of the points
+     * @param corrections the array that receives the altitude corrections
+     *                    (EGM96_VALUE_INVALID if not available)
+     * @param count the number of points
+     */
+    public void getEGMCorrections(double[] latitudes, double[] longitudes, double[] corrections, int count) {
+        if (!isEGMGridLoaded) {
+            Arrays.fill(corrections, 0, count, EGM96_VALUE_INVALID);
+            return;
+        }
+        int lastCell = -1;
+        short hc11 = 0;
+        short hc12 = 0;
+        short hc21 = 0;
+        short hc22 = 0;
+        for (int p = 0; p < count; p++) {
+            double Lat = 90.0 - latitudes[p];
+            double Lon = longitudes[p];
+            if (Lon < 0) Lon += 360.0;
+
+            int ilon = (int) (Lon / 0.25) + BOUNDARY;
+            int ilat = (int) (Lat / 0.25) + BOUNDARY;
+
+            if ((ilon < 0) || (ilon + 1 >= GRID_WIDTH) || (ilat < 0) || (ilat + 1 >= GRID_HEIGHT)) {
+                corrections[p] = EGM96_VALUE_INVALID;
+                continue;
+            }
+
+            int i = gridIndex(ilon, ilat);
+            if (i != lastCell) {
                 // Creating points for interpolation
-                short hc11 = EGMGrid[ilon][ilat];
-                short hc12 = EGMGrid[ilon][ilat + 1];
-                short hc21 = EGMGrid[ilon + 1][ilat];
-                short hc22 = EGMGrid[ilon + 1][ilat + 1];
-
-                // Bilinear Interpolation:
-                // Latitude
-                double hc1 = hc11 + (hc12 - hc11) * (Lat % 0.25) / 0.25;
-                double hc2 = hc21 + (hc22 - hc21) * (Lat % 0.25) / 0.25;
-                // Longitude
-                //double hc = (hc1 + (hc2 - hc1) * (Lon % 0.25) / 0.25) / 100;
-                //Log.w("myApp", "[#] EGM96.java - getEGMCorrection(" + latitude + ", " + longitude + ") = " + hc);
-
-                return ((hc1 + (hc2 - hc1) * (Lon % 0.25) / 0.25) / 100);
-            } catch (ArrayIndexOutOfBoundsException e) {
-                return EGM96_VALUE_INVALID;
+                hc11 = EGMGrid[i];
+                hc12 = EGMGrid[i + GRID_WIDTH];
+                hc21 = EGMGrid[i + 1];
+                hc22 = EGMGrid[i + GRID_WIDTH + 1];
+                lastCell = i;
             }
+            corrections[p] = interpolate(hc11, hc12, hc21, hc22, Lat, Lon);
         }
-        else return EGM96_VALUE_INVALID;
+    }
+
+    /**
+     * The bilinear interpolation of the heights of a cell of the grid.
+     *
+     * @param Lat the colatitude (90 - latitude)
+     * @param Lon the longitude (0..360)
+     * @return the altitude correction in meters
+     */
+    private static double interpolate(short hc11, short hc12, short hc21, short hc22, double Lat, double Lon) {
+        // Bilinear Interpolation:
+        // Latitude
+        double hc1 = hc11 + (hc12 - hc11) * (Lat % 0.25) / 0.25;
+        double hc2 = hc21 + (hc22 - hc21) * (Lat % 0.25) / 0.25;
+        // Longitude
+        //double hc = (hc1 + (hc2 - hc1) * (Lon % 0.25) / 0.25) / 100;
+        //Log.w("myApp", "[#] EGM96.java - getEGMCorrection(" + Lat + ", " + Lon + ") = " + hc);
+
+        return ((hc1 + (hc2 - hc1) * (Lon % 0.25) / 0.25) / 100);
+    }
+
+    /**
+     * Loads the grid from the heights of a WW15MGH.DAC file (721 rows of 1440 shorts),
+     * fills its boundaries and makes it ready to work.
+     * It is package-private in order to load synthetic grids into the tests.
+     *
+     * @param gridFile the heights of the grid file
+     */
+    void setGrid(ShortBuffer gridFile) {
+        // The rows of the file (one for each latitude) are copied into the grid with bulk copies
+        for (int i_lat = BOUNDARY; i_lat < BOUNDARY + 721; i_lat++) {
+            gridFile.get(EGMGrid, gridIndex(BOUNDARY, i_lat), 1440);
+        }
+
+        if (BOUNDARY > 0) {
+            // Fill boundaries with correct data, in order to speed up retrieving for interpolation;
+            // fill left + right boundaries
+            //Log.w("myApp", "[#] EGM96.java - LR BOUNDARIES");
+            for (int ix = 0; (ix < BOUNDARY); ix++) {
+                for (int iy = BOUNDARY; (iy < BOUNDARY + 721); iy++) {
+                    EGMGrid[gridIndex(ix, iy)] = EGMGrid[gridIndex(ix + 1440, iy)];
+                    EGMGrid[gridIndex(BOUNDARY + ix + 1440, iy)] = EGMGrid[gridIndex(BOUNDARY + ix, iy)];
+                }
+            }
+            // fill top + bottom boundaries
+            //Log.w("myApp", "[#] EGM96.java - TOP DOWN BOUNDARIES");
+            for (int iy = 0; (iy < BOUNDARY); iy++) {
+                for (int ix = 0; (ix < BOUNDARY + 1440 + BOUNDARY); ix++) {
+                    if (ix > 720) {
+                        EGMGrid[gridIndex(ix, iy)] = EGMGrid[gridIndex(ix - 720, BOUNDARY + BOUNDARY - iy)];
+                        EGMGrid[gridIndex(ix, BOUNDARY + iy + 721)] = EGMGrid[gridIndex(ix - 720, BOUNDARY + 721-2 - iy)];
+                    }
+                    else {
+                        EGMGrid[gridIndex(ix, iy)] = EGMGrid[gridIndex(ix + 720, BOUNDARY + BOUNDARY - iy)];
+                        EGMGrid[gridIndex(ix, BOUNDARY + iy + 721)] = EGMGrid[gridIndex(ix + 720, BOUNDARY + 721-2 - iy)];
+                    }
+                }
+            }
+        }
+        isEGMGridLoaded = true;
     }
 
     /**
@@ -223,6 +348,18 @@ class EGM96 {
 
         @Override
         public void run() {
+            try {
+                load();
+            } finally {
+                loadingLatch.countDown();
+            }
+            EventBus.getDefault().post(EventBusMSG.UPDATE_FIX);
+            EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
+            EventBus.getDefault().post(EventBusMSG.UPDATE_TRACKLIST);
+            //listener.onEGMGridLoaded(isEGMGridLoaded);
+        }
+
+        private void load() {
             Log.w("myApp", "[#] EGM96.java - LoadEGM96Grid");
             Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
 
@@ -286,59 +423,35 @@ class EGM96 {
                     //e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
                     return;
                 }
-                BufferedInputStream bin = new BufferedInputStream(fin);
-                DataInputStream din = new DataInputStream(bin);
-                int i;
-                int i_lon = BOUNDARY;
-                int i_lat = BOUNDARY;
-                int count = (int) ((privateDocument.length() / 2));
-
-                for (i = 0; (i < count); i++) {
+                try {
+                    // The file is memory-mapped when possible, otherwise it is read with a single bulk read
+                    ShortBuffer gridFile;
+                    if (fin instanceof FileInputStream) {
+                        FileChannel channel = ((FileInputStream) fin).getChannel();
+                        gridFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, GRID_FILE_LENGTH).asShortBuffer();
+                    } else {
+                        byte[] bytes = new byte[GRID_FILE_LENGTH];
+                        int offset = 0;
+                        int read;
+                        while ((offset < GRID_FILE_LENGTH) && ((read = fin.read(bytes, offset, GRID_FILE_LENGTH - offset)) != -1)) offset += read;
+                        if (offset < GRID_FILE_LENGTH) throw new IOException("Unexpected end of file");
+                        gridFile = ByteBuffer.wrap(bytes).asShortBuffer();
+                    }
+                    setGrid(gridFile);
+                } catch (IOException e) {
+                    isEGMGridLoaded = false;
+                    isEGMGridLoading = false;
+                    Log.w("myApp", "[#] EGM96.java - IOException");
+                    return;
+                } finally {
                     try {
-                        EGMGrid[i_lon][i_lat] = din.readShort();
-                        i_lon++;
-                        if (i_lon >= (1440 + BOUNDARY)) {
-                            i_lat++;
-                            i_lon = BOUNDARY;
-                        }
+                        fin.close();
                     } catch (IOException e) {
-                        isEGMGridLoaded = false;
-                        isEGMGridLoading = false;
-                        Log.w("myApp", "[#] EGM96.java - IOException");
-                        return;
-                        //Toast.makeText(getApplicationContext(), "Oops", Toast.LENGTH_SHORT).show();
-                        //e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    }
-                }
-
-                if (BOUNDARY > 0) {
-                    // Fill boundaries with correct data, in order to speed up retrieving for interpolation;
-                    // fill left + right boundaries
-                    //Log.w("myApp", "[#] EGM96.java - LR BOUNDARIES");
-                    for (int ix = 0; (ix < BOUNDARY); ix++) {
-                        for (int iy = BOUNDARY; (iy < BOUNDARY + 721); iy++) {
-                            EGMGrid[ix][iy] = EGMGrid[ix + 1440][iy];
-                            EGMGrid[BOUNDARY + ix + 1440][iy] = EGMGrid[BOUNDARY + ix][iy];
-                        }
-                    }
-                    // fill top + bottom boundaries
-                    //Log.w("myApp", "[#] EGM96.java - TOP DOWN BOUNDARIES");
-                    for (int iy = 0; (iy < BOUNDARY); iy++) {
-                        for (int ix = 0; (ix < BOUNDARY + 1440 + BOUNDARY); ix++) {
-                            if (ix > 720) {
-                                EGMGrid[ix][iy] = EGMGrid[ix - 720][BOUNDARY + BOUNDARY - iy];
-                                EGMGrid[ix][BOUNDARY + iy + 721] = EGMGrid[ix - 720][BOUNDARY + 721-2 - iy];
-                            }
-                            else {
-                                EGMGrid[ix][iy] = EGMGrid[ix + 720][BOUNDARY + BOUNDARY - iy];
-                                EGMGrid[ix][BOUNDARY + iy + 721] = EGMGrid[ix + 720][BOUNDARY + 721-2 - iy];
-                            }
-                        }
+                        Log.w("myApp", "[#] EGM96.java - Unable to close the EGM file");
                     }
                 }
 
                 isEGMGridLoading = false;
-                isEGMGridLoaded = true;
                 Log.w("myApp", "[#] EGM96.java - Grid Successfully Loaded");
             } else {
                 isEGMGridLoading = false;
@@ -348,10 +461,6 @@ class EGM96 {
                 if ((privateDocument != null) && (privateDocument.length() != 2076480)) {Log.w("myApp", "[#] EGM96.java - File has invalid length: " + privateDocument.length());}
                 //Toast.makeText(getApplicationContext(), "EGM96 correction not available", Toast.LENGTH_SHORT).show();
             }
-            EventBus.getDefault().post(EventBusMSG.UPDATE_FIX);
-            EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
-            EventBus.getDefault().post(EventBusMSG.UPDATE_TRACKLIST);
-            //listener.onEGMGridLoaded(isEGMGridLoaded);
         }
     }
 }
@@ -0,0 +1,186 @@
+/*
+ * ExportCache - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The cache of the files exported to be viewed or shared (into the DIRECTORY_TEMP folder).
+ * <br>
+ * For each file it stores the parameters of the exportation (see ExportCheckpoint:
+ * the Track, its number of Trackpoints and Placemarks, and the preferences that change
+ * the content of the files) and the size of the file.
+ * When a Track is exported again with the same parameters the Exporter reuses the
+ * existing files, without reading the Track from the DB.
+ * <br>
+ * The files are evicted in LRU order when their total size exceeds MAX_SIZE.
+ * The index is saved into a small file of the folder, so the cache survives the
+ * restart of the app.
+ */
+class ExportCache {
+
+    static final long MAX_SIZE = 64 * 1024 * 1024;          // The maximum size of the cached files, in bytes
+
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "exportcache.idx";
+
+    private final File folder;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);    // By file name, in access order
+    private boolean isIndexLoaded = false;
+
+    /**
+     * A cached file.
+     */
+    private static class Entry {
+        final ExportCheckpoint parameters = new ExportCheckpoint();
+        long size;
+    }
+
+    /**
+     * Creates the cache of the files of a folder.
+     *
+     * @param folder the folder of the exported files
+     */
+    ExportCache(String folder) {
+        this.folder = new File(folder);
+    }
+
+    /**
+     * Checks if a file has been exported with the given parameters.
+     * The file becomes the most recently used one.
+     *
+     * @param parameters the parameters of the exportation
+     * @param file the exported file
+     * @return true if the file exists and can be reused
+     */
+    synchronized boolean contains(ExportCheckpoint parameters, File file) {
+        loadIndex();
+        Entry entry = entries.get(file.getName());
+        if ((entry == null) || !entry.parameters.hasSameContent(parameters)) return false;
+        if (!file.exists() || (file.length() != entry.size)) {
+            entries.remove(file.getName());
+            saveIndex();
+            return false;
+        }
+        saveIndex();
+        return true;
+    }
+
+    /**
+     * Removes a file from the cache (the file is not deleted).
+     * It must be called before to overwrite the file.
+     *
+     * @param file the exported file
+     */
+    synchronized void remove(File file) {
+        loadIndex();
+        if (entries.remove(file.getName()) != null) saveIndex();
+    }
+
+    /**
+     * Adds a file, just exported, to the cache, and evicts the least recently used
+     * files when the size of the cache exceeds MAX_SIZE.
+     *
+     * @param parameters the parameters of the exportation
+     * @param file the exported file
+     */
+    synchronized void put(ExportCheckpoint parameters, File file) {
+        loadIndex();
+        Entry entry = new Entry();
+        entry.parameters.setParameters(parameters);
+        entry.size = file.length();
+        entries.put(file.getName(), entry);
+
+        long totalSize = 0;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) totalSize += e.getValue().size;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while ((totalSize > MAX_SIZE) && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getValue() == entry) break;                  // The file just added is never evicted
+            File evictedFile = new File(folder, eldest.getKey());
+            if (evictedFile.exists() && !evictedFile.delete())
+                Log.w("myApp", "[#] ExportCache.java - Unable to delete " + evictedFile.getName());
+            //else Log.w("myApp", "[#] ExportCache.java - Evicted " + evictedFile.getName());
+            totalSize -= eldest.getValue().size;
+            iterator.remove();
+        }
+        saveIndex();
+    }
+
+    private void loadIndex() {
+        if (isIndexLoaded) return;
+        isIndexLoaded = true;
+        File indexFile = new File(folder, INDEX_FILE);
+        if (!indexFile.exists()) return;
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(indexFile));
+            try {
+                if (in.readInt() != VERSION) return;
+                int numberOfEntries = in.readInt();
+                for (int i = 0; i < numberOfEntries; i++) {
+                    String fileName = in.readUTF();
+                    Entry entry = new Entry();
+                    entry.parameters.readParameters(in);
+                    entry.size = in.readLong();
+                    entries.put(fileName, entry);           // Saved from the eldest one
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w("myApp", "[#] ExportCache.java - Unable to load the index: " + e);
+            entries.clear();
+        }
+    }
+
+    private void saveIndex() {
+        File indexFile = new File(folder, INDEX_FILE);
+        File tmpFile = new File(folder, INDEX_FILE + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    e.getValue().parameters.writeParameters(out);
+                    out.writeLong(e.getValue().size);
+                }
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(indexFile)) Log.w("myApp", "[#] ExportCache.java - Unable to save the index");
+        } catch (IOException e) {
+            Log.w("myApp", "[#] ExportCache.java - Unable to save the index: " + e);
+        }
+    }
+}
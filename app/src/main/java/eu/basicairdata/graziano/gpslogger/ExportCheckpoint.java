@@ -0,0 +1,211 @@
+/*
+ * ExportCheckpoint - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The checkpoint of an exportation, used to resume it after a cancellation,
+ * a failure, or the restart of the app.
+ * <br>
+ * It stores the parameters of the exportation (the Track, the destination, the formats and
+ * the preferences that change the content of the files), and the state of the writers:
+ * the number of Trackpoints written, the number of the last one, and the size of each file
+ * at that point. The files are resumed by truncating them to the stored sizes.
+ * <br>
+ * The checkpoint is saved into a small file, written on a temporary file and then renamed,
+ * so a checkpoint is never partially written.
+ * <br>
+ * The parameters are also used by the ExportCache, to identify the content of the exported files.
+ */
+class ExportCheckpoint {
+
+    static final int FORMAT_KML = 0;
+    static final int FORMAT_GPX = 1;
+    static final int FORMAT_TXT = 2;
+    static final int NUMBER_OF_FORMATS = 3;
+
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".chk";
+
+    // The parameters of the exportation
+    long trackID;
+    long numberOfLocations;
+    long numberOfPlacemarks;
+    String destination = "";                            // The folder and the name (without extension) of the files
+    boolean[] formats = new boolean[NUMBER_OF_FORMATS];
+    double altitudeManualCorrection;
+    boolean egmAltitudeCorrection;
+    int kmlAltitudeMode;
+    int gpxVersion;
+    int headsHash;                                      // The hash of the other data of the heads (description, units, app version)
+
+    // The state of the writers
+    long numberOfTrackpointsWritten = 0;
+    long lastNumber = -1;                               // The number of the last Trackpoint written
+    long[] positions = new long[NUMBER_OF_FORMATS];     // The size of each file after the last Trackpoint written
+
+    /**
+     * @return the file of the checkpoint of the given Track and destination
+     */
+    static File getFile(String folder, long trackID, String destination) {
+        return new File(folder, trackID + "_" + Integer.toHexString(destination.hashCode()) + EXTENSION);
+    }
+
+    /**
+     * @return true if the given checkpoint has the same parameters of this one
+     */
+    boolean hasSameParameters(ExportCheckpoint other) {
+        if (!hasSameContent(other)) return false;
+        for (int i = 0; i < NUMBER_OF_FORMATS; i++) {
+            if (formats[i] != other.formats[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the files exported with the given parameters have the same content
+     *         of the ones exported with this parameters, regardless of the set of formats
+     */
+    boolean hasSameContent(ExportCheckpoint other) {
+        return (trackID == other.trackID)
+                && (numberOfLocations == other.numberOfLocations)
+                && (numberOfPlacemarks == other.numberOfPlacemarks)
+                && (destination.equals(other.destination))
+                && (altitudeManualCorrection == other.altitudeManualCorrection)
+                && (egmAltitudeCorrection == other.egmAltitudeCorrection)
+                && (kmlAltitudeMode == other.kmlAltitudeMode)
+                && (gpxVersion == other.gpxVersion)
+                && (headsHash == other.headsHash);
+    }
+
+    /**
+     * Copies the parameters from another checkpoint.
+     */
+    void setParameters(ExportCheckpoint other) {
+        trackID = other.trackID;
+        numberOfLocations = other.numberOfLocations;
+        numberOfPlacemarks = other.numberOfPlacemarks;
+        destination = other.destination;
+        System.arraycopy(other.formats, 0, formats, 0, NUMBER_OF_FORMATS);
+        altitudeManualCorrection = other.altitudeManualCorrection;
+        egmAltitudeCorrection = other.egmAltitudeCorrection;
+        kmlAltitudeMode = other.kmlAltitudeMode;
+        gpxVersion = other.gpxVersion;
+        headsHash = other.headsHash;
+    }
+
+    void writeParameters(DataOutputStream out) throws IOException {
+        out.writeLong(trackID);
+        out.writeLong(numberOfLocations);
+        out.writeLong(numberOfPlacemarks);
+        out.writeUTF(destination);
+        for (int i = 0; i < NUMBER_OF_FORMATS; i++) out.writeBoolean(formats[i]);
+        out.writeDouble(altitudeManualCorrection);
+        out.writeBoolean(egmAltitudeCorrection);
+        out.writeInt(kmlAltitudeMode);
+        out.writeInt(gpxVersion);
+        out.writeInt(headsHash);
+    }
+
+    void readParameters(DataInputStream in) throws IOException {
+        trackID = in.readLong();
+        numberOfLocations = in.readLong();
+        numberOfPlacemarks = in.readLong();
+        destination = in.readUTF();
+        for (int i = 0; i < NUMBER_OF_FORMATS; i++) formats[i] = in.readBoolean();
+        altitudeManualCorrection = in.readDouble();
+        egmAltitudeCorrection = in.readBoolean();
+        kmlAltitudeMode = in.readInt();
+        gpxVersion = in.readInt();
+        headsHash = in.readInt();
+    }
+
+    /**
+     * Copies the state of the writers from another checkpoint.
+     */
+    void setState(long numberOfTrackpointsWritten, long lastNumber, long[] positions) {
+        this.numberOfTrackpointsWritten = numberOfTrackpointsWritten;
+        this.lastNumber = lastNumber;
+        System.arraycopy(positions, 0, this.positions, 0, NUMBER_OF_FORMATS);
+    }
+
+    /**
+     * Saves the checkpoint.
+     *
+     * @param file the file of the checkpoint
+     * @return true if the checkpoint has been saved
+     */
+    boolean save(File file) {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile));
+            try {
+                out.writeInt(VERSION);
+                writeParameters(out);
+                out.writeLong(numberOfTrackpointsWritten);
+                out.writeLong(lastNumber);
+                for (int i = 0; i < NUMBER_OF_FORMATS; i++) out.writeLong(positions[i]);
+            } finally {
+                out.close();
+            }
+            return tmpFile.renameTo(file);
+        } catch (IOException e) {
+            Log.w("myApp", "[#] ExportCheckpoint.java - Unable to save the checkpoint: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Loads a checkpoint.
+     *
+     * @param file the file of the checkpoint
+     * @return the checkpoint, or null if not available
+     */
+    static ExportCheckpoint load(File file) {
+        if (!file.exists()) return null;
+        ExportCheckpoint checkpoint = new ExportCheckpoint();
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != VERSION) return null;
+                checkpoint.readParameters(in);
+                checkpoint.numberOfTrackpointsWritten = in.readLong();
+                checkpoint.lastNumber = in.readLong();
+                for (int i = 0; i < NUMBER_OF_FORMATS; i++) checkpoint.positions[i] = in.readLong();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w("myApp", "[#] ExportCheckpoint.java - Unable to load the checkpoint: " + e);
+            return null;
+        }
+        return checkpoint;
+    }
+}
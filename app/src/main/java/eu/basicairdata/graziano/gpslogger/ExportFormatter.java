@@ -0,0 +1,213 @@
+/*
+ * ExportFormatter - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * A reusable char buffer where the Exporter builds the lines of the files.
+ * <br>
+ * It formats the numbers and the timestamps directly into the buffer, without allocations,
+ * with the same output of String.format(Locale.US, "%.Nf", value) and of the
+ * SimpleDateFormat used by the Exporter (UTC time zone).
+ * The rare values that cannot be formatted exactly on the fast path
+ * (rounding ties, very big values, dates out of range) are formatted with the
+ * standard Java formatters.
+ */
+class ExportFormatter {
+
+    static final int MAX_DECIMALS = 8;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8 };
+    private static final long[] LONG_POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L };
+    private static final String[] DECIMAL_FORMATS = {
+            "%.0f", "%.1f", "%.2f", "%.3f", "%.4f", "%.5f", "%.6f", "%.7f", "%.8f" };
+
+    private static final double MAX_FAST_VALUE = 1e15;             // The scaled values must be exact into a long
+    private static final long MAX_FAST_TIME = 253402300800000L;     // 10000-01-01 00:00:00 UTC
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    char[] buffer;
+    int length = 0;
+
+    /**
+     * Creates a void buffer.
+     *
+     * @param capacity the initial capacity of the buffer (it grows if needed)
+     */
+    ExportFormatter(int capacity) {
+        buffer = new char[capacity];
+    }
+
+    void clear() {
+        length = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    private void ensureCapacity(int additionalChars) {
+        if (length + additionalChars <= buffer.length) return;
+        char[] newBuffer = new char[Math.max(buffer.length * 2, length + additionalChars)];
+        System.arraycopy(buffer, 0, newBuffer, 0, length);
+        buffer = newBuffer;
+    }
+
+    ExportFormatter append(char c) {
+        ensureCapacity(1);
+        buffer[length++] = c;
+        return this;
+    }
+
+    ExportFormatter append(String str) {
+        final int strLength = str.length();
+        ensureCapacity(strLength);
+        str.getChars(0, strLength, buffer, length);
+        length += strLength;
+        return this;
+    }
+
+    /**
+     * Appends a long, with the same output of String.valueOf(value).
+     */
+    ExportFormatter append(long value) {
+        if (value == Long.MIN_VALUE) return append(String.valueOf(value));
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        ensureCapacity(19);
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) digits++;
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Appends a number with the specified number of decimals,
+     * with the same output of String.format(Locale.US, "%.<decimals>f", value).
+     * <p>
+     * Java rounds HALF_UP the shortest decimal representation of the value (the one of
+     * Double.toString), that differs from the exact binary value at most of half ulp.
+     * Far from the rounding ties the two values are rounded in the same way, so the
+     * fast path rounds the scaled binary value; near a tie it uses String.format.
+     *
+     * @param value the number to format
+     * @param decimals the number of decimals (0 to MAX_DECIMALS)
+     */
+    ExportFormatter appendDecimal(double value, int decimals) {
+        final double absValue = Math.abs(value);
+        final double scaled = absValue * POWERS_OF_TEN[decimals];     // Not finite values go on the slow path
+        if (!(scaled < MAX_FAST_VALUE)) return append(String.format(Locale.US, DECIMAL_FORMATS[decimals], value));
+
+        long integer = (long) scaled;
+        final double fraction = scaled - integer;                     // Exact
+        final double guard = 4 * Math.ulp(scaled) + Math.ulp(absValue) * POWERS_OF_TEN[decimals];
+        if (Math.abs(fraction - 0.5) <= guard) return append(String.format(Locale.US, DECIMAL_FORMATS[decimals], value));
+        if (fraction > 0.5) integer++;
+
+        if ((value < 0) || (Double.doubleToRawLongBits(value) == Long.MIN_VALUE)) append('-');     // Java keeps the sign of -0.0
+        append(integer / LONG_POWERS_OF_TEN[decimals]);
+        if (decimals > 0) {
+            ensureCapacity(decimals + 1);
+            buffer[length++] = '.';
+            long fractionalPart = integer % LONG_POWERS_OF_TEN[decimals];
+            for (int i = length + decimals - 1; i >= length; i--) {
+                buffer[i] = (char) ('0' + (fractionalPart % 10));
+                fractionalPart /= 10;
+            }
+            length += decimals;
+        }
+        return this;
+    }
+
+    /**
+     * Appends a UTC timestamp, with the same output of a SimpleDateFormat with the pattern
+     * "yyyy-MM-dd'<separator>'HH:mm:ss" (or "yyyy-MM-dd'<separator>'HH:mm:ss.SSS" with millis)
+     * and the GMT time zone.
+     *
+     * @param time the time, in milliseconds since the epoch
+     * @param separator the separator between the date and the time ('T' for ISO-8601)
+     * @param withMillis true to append the milliseconds
+     */
+    ExportFormatter appendDateTime(long time, char separator, boolean withMillis) {
+        if ((time < 0) || (time >= MAX_FAST_TIME)) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'" + separator + "'HH:mm:ss" + (withMillis ? ".SSS" : ""), Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return append(dateFormat.format(time));
+        }
+
+        // Civil date from the days since the epoch (proleptic Gregorian calendar)
+        // Based on http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        final long days = time / MILLIS_PER_DAY + 719468;
+        final long era = days / 146097;
+        final long dayOfEra = days - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long mp = (5 * dayOfYear + 2) / 153;
+        final int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        final int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        final int millisOfDay = (int) (time % MILLIS_PER_DAY);
+
+        ensureCapacity(23);
+        appendDigits(year, 4);
+        buffer[length++] = '-';
+        appendDigits(month, 2);
+        buffer[length++] = '-';
+        appendDigits(day, 2);
+        buffer[length++] = separator;
+        appendDigits(millisOfDay / 3600000, 2);
+        buffer[length++] = ':';
+        appendDigits((millisOfDay / 60000) % 60, 2);
+        buffer[length++] = ':';
+        appendDigits((millisOfDay / 1000) % 60, 2);
+        if (withMillis) {
+            buffer[length++] = '.';
+            appendDigits(millisOfDay % 1000, 3);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a positive int with the specified number of digits, padded with zeroes.
+     * The capacity must be already ensured.
+     */
+    private void appendDigits(int value, int digits) {
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        length += digits;
+    }
+}
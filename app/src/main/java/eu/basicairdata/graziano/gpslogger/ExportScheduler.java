@@ -0,0 +1,182 @@
+/*
+ * ExportScheduler - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The scheduler of the Exporters.
+ * <br>
+ * It runs the Exporters on a small pool of threads, sized on the number of cores
+ * and on the type of the destination storage.
+ * The pending Exporters are ordered by size (largest first), in order to
+ * minimize the total time of a job made of Tracks of different sizes.
+ * When an Exporter ends, the scheduler calls the callback specified on its creation,
+ * so the status of the job can be updated without polling.
+ */
+class ExportScheduler {
+
+    private static final int MAX_THREADS_FILES = 3;         // The maximum number of Exporters running simultaneously on plain files
+    private static final int MAX_THREADS_DOCUMENTS = 2;     // The maximum number on the Storage Access Framework, that serializes most of the writes
+    private static final int KEEP_ALIVE_TIME = 30;          // The idle threads are stopped after 30 seconds
+
+    private final AtomicLong sequenceNumber = new AtomicLong(0);
+    private final Set<ExportJob> runningJobs = Collections.synchronizedSet(new HashSet<ExportJob>());
+    private long cancellations = 0;                         // The number of calls of cancelAll (guarded by runningJobs)
+    private final Runnable onExportEnded;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates the scheduler.
+     *
+     * @param onExportEnded the callback to call (on the thread of the Exporter) when an Exporter ends
+     */
+    ExportScheduler(Runnable onExportEnded) {
+        this.onExportEnded = onExportEnded;
+        executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Exporter");
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sets the number of threads for the next Exporters:
+     * one for each core, up to the limit of the type of storage.
+     *
+     * @param toDocumentProvider true if the files are written using the Storage Access Framework
+     */
+    void setStorageType(boolean toDocumentProvider) {
+        int poolSize = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                toDocumentProvider ? MAX_THREADS_DOCUMENTS : MAX_THREADS_FILES));
+        if (poolSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(poolSize);
+            executor.setCorePoolSize(poolSize);
+        } else {
+            executor.setCorePoolSize(poolSize);
+            executor.setMaximumPoolSize(poolSize);
+        }
+        //Log.w("myApp", "[#] ExportScheduler.java - Pool size = " + poolSize);
+    }
+
+    /**
+     * Schedules an Exporter.
+     *
+     * @param exporter the Exporter
+     * @param exportingTask the ExportingTask of the Exporter, used to order the Exporters by size
+     */
+    void execute(Exporter exporter, ExportingTask exportingTask) {
+        final long cancellationsAtSchedule;
+        synchronized (runningJobs) {
+            cancellationsAtSchedule = cancellations;
+        }
+        executor.execute(new ExportJob(exporter, exportingTask, sequenceNumber.getAndIncrement(), cancellationsAtSchedule));
+    }
+
+    /**
+     * Removes all the Exporters not yet started.
+     */
+    void clearPending() {
+        executor.getQueue().clear();
+    }
+
+    /**
+     * Cancels all the Exporters.
+     * The Exporters not yet started are removed, and the running ones are cancelled
+     * (they save their checkpoints and end with ExportingTask.STATUS_CANCELLED).
+     * The Exporters already taken from the queue by a thread, but not yet running,
+     * are cancelled when they start.
+     */
+    void cancelAll() {
+        synchronized (runningJobs) {
+            cancellations++;
+            List<Runnable> pendingJobs = new ArrayList<>();
+            executor.getQueue().drainTo(pendingJobs);
+            for (Runnable job : pendingJobs) ((ExportJob) job).exportingTask.setStatus(ExportingTask.STATUS_CANCELLED);
+            for (ExportJob job : runningJobs) job.exporter.cancel();
+        }
+    }
+
+    /**
+     * An Exporter in the queue of the scheduler.
+     * The jobs are ordered by size (largest first) and then in order of scheduling.
+     */
+    private class ExportJob implements Runnable, Comparable<ExportJob> {
+        final Exporter exporter;
+        final ExportingTask exportingTask;
+        final long size;
+        final long sequence;
+        final long cancellationsAtSchedule;     // The value of cancellations when the job has been scheduled
+
+        ExportJob(Exporter exporter, ExportingTask exportingTask, long sequence, long cancellationsAtSchedule) {
+            this.exporter = exporter;
+            this.exportingTask = exportingTask;
+            this.size = exportingTask.getNumberOfPoints_Total();
+            this.sequence = sequence;
+            this.cancellationsAtSchedule = cancellationsAtSchedule;
+        }
+
+        @Override
+        public int compareTo(ExportJob other) {
+            if (size != other.size) return size > other.size ? -1 : 1;
+            if (sequence == other.sequence) return 0;
+            return sequence < other.sequence ? -1 : 1;
+        }
+
+        @Override
+        public void run() {
+            synchronized (runningJobs) {
+                if (cancellations != cancellationsAtSchedule) {     // Cancelled after leaving the queue
+                    exportingTask.setStatus(ExportingTask.STATUS_CANCELLED);
+                    return;
+                }
+                runningJobs.add(this);
+            }
+            try {
+                exporter.run();
+            } catch (RuntimeException e) {
+                exportingTask.setStatus(ExportingTask.STATUS_ENDED_FAILED);
+                Log.w("myApp", "[#] ExportScheduler.java - Exporter failed: " + e);
+            } finally {
+                runningJobs.remove(this);
+                onExportEnded.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * ExportWriter - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The writer of the exported files.
+ * <br>
+ * It encodes the text in UTF-8 directly into a large ByteBuffer (the exported text is
+ * almost all ASCII, that is encoded with a single byte per char), and writes the buffer
+ * to the output stream, or to the FileChannel when the target is a plain file,
+ * only when it is full.
+ * The output is the same of an OutputStreamWriter with the UTF-8 charset
+ * (the default one on Android), including the replacement of the malformed surrogates with '?'.
+ */
+class ExportWriter {
+
+    static final int BUFFER_SIZE = 128 * 1024;          // The size of the buffer, in bytes
+    private static final int CHUNK_SIZE = 1024;         // The Strings are encoded in chunks of this number of chars
+
+    private final OutputStream outputStream;
+    private final FileChannel fileChannel;
+    private final ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = byteBuffer.array();
+    private final char[] chunk = new char[CHUNK_SIZE];
+    private int position = 0;                           // The number of bytes into the buffer
+    private char highSurrogate = 0;                     // The high surrogate waiting for its low one (0 = none)
+    private long bytesWritten = 0;
+    private final long startPosition;                   // The size of the file when the writer has been created
+
+    /**
+     * Creates a writer on a generic output stream (for example, the one of a DocumentFile).
+     */
+    ExportWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.fileChannel = null;
+        this.startPosition = 0;
+    }
+
+    /**
+     * Creates a writer on the FileChannel of a plain file.
+     */
+    ExportWriter(FileChannel fileChannel) {
+        this.outputStream = null;
+        this.fileChannel = fileChannel;
+        this.startPosition = 0;
+    }
+
+    /**
+     * Creates a writer that continues a plain file from the specified position.
+     * The file is truncated to that position.
+     *
+     * @param fileChannel the FileChannel of the file, opened in append mode
+     * @param startPosition the position where the writing starts
+     */
+    ExportWriter(FileChannel fileChannel, long startPosition) throws IOException {
+        this.outputStream = null;
+        this.fileChannel = fileChannel;
+        this.startPosition = startPosition;
+        if (startPosition > 0) fileChannel.truncate(startPosition);
+    }
+
+    /**
+     * @return the number of bytes written by this writer, including the ones still into the buffer
+     */
+    long getBytesWritten() {
+        return bytesWritten + position;
+    }
+
+    /**
+     * @return the position into the file, including the bytes still into the buffer
+     */
+    long getPosition() {
+        return startPosition + bytesWritten + position;
+    }
+
+    void write(String str) throws IOException {
+        final int strLength = str.length();
+        for (int offset = 0; offset < strLength; offset += CHUNK_SIZE) {
+            final int end = Math.min(strLength, offset + CHUNK_SIZE);
+            str.getChars(offset, end, chunk, 0);
+            encode(chunk, end - offset);
+        }
+    }
+
+    /**
+     * Writes the line built into an ExportFormatter, and clears it.
+     */
+    void write(ExportFormatter line) throws IOException {
+        encode(line.buffer, line.length);
+        line.clear();
+    }
+
+    /**
+     * Encodes the chars in UTF-8 into the buffer, flushing it when full.
+     */
+    private void encode(char[] chars, int length) throws IOException {
+        int i = 0;
+        while (i < length) {
+            // ASCII fast path
+            if (highSurrogate == 0) {
+                final int end = Math.min(length, i + BUFFER_SIZE - position);
+                int p = position;
+                while (i < end) {
+                    final char c = chars[i];
+                    if (c >= 0x80) break;
+                    bytes[p++] = (byte) c;
+                    i++;
+                }
+                position = p;
+            }
+            if (i < length) {
+                if (position > BUFFER_SIZE - 4) flushBuffer();
+                else writeChar(chars[i++]);
+            }
+        }
+    }
+
+    /**
+     * Encodes a single char in UTF-8. The buffer must have at least 4 free bytes.
+     */
+    private void writeChar(char c) {
+        if (highSurrogate != 0) {
+            final char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                final int codePoint = Character.toCodePoint(high, c);
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            bytes[position++] = '?';                    // Malformed: high surrogate without the low one
+        }
+        if (c < 0x80) {
+            bytes[position++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[position++] = (byte) (0xC0 | (c >> 6));
+            bytes[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            bytes[position++] = '?';                    // Malformed: low surrogate without the high one
+        } else {
+            bytes[position++] = (byte) (0xE0 | (c >> 12));
+            bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    /**
+     * Writes the content of the buffer to the output.
+     */
+    private void flushBuffer() throws IOException {
+        if (position == 0) return;
+        if (fileChannel != null) {
+            byteBuffer.position(0);
+            byteBuffer.limit(position);
+            while (byteBuffer.hasRemaining()) fileChannel.write(byteBuffer);
+            byteBuffer.clear();
+        } else outputStream.write(bytes, 0, position);
+        bytesWritten += position;
+        position = 0;
+    }
+
+    void flush() throws IOException {
+        flushBuffer();
+        if (outputStream != null) outputStream.flush();
+    }
+
+    /**
+     * Flushes the buffer and closes the output.
+     * A pending high surrogate is written as '?', as the OutputStreamWriter does.
+     */
+    void close() throws IOException {
+        if (highSurrogate != 0) {
+            if (position > BUFFER_SIZE - 4) flushBuffer();
+            highSurrogate = 0;
+            bytes[position++] = '?';
+        }
+        flushBuffer();
+        if (fileChannel != null) fileChannel.close();
+        else outputStream.close();
+    }
+}
@@ -24,19 +24,21 @@ package eu.basicairdata.graziano.gpslogger;
 import android.net.Uri;
 import android.util.Log;
 
-import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
 import static eu.basicairdata.graziano.gpslogger.GPSApplication.getInstance;
@@ -44,10 +46,11 @@ import static eu.basicairdata.graziano.gpslogger.GPSApplication.getInstance;
 import androidx.documentfile.provider.DocumentFile;
 
 /**
- * A Thread that performs the exportation of a Track in KML, GPX, and/or TXT format.
+ * A Runnable that performs the exportation of a Track in KML, GPX, and/or TXT format.
+ * It is executed by the ExportScheduler.
  * The files exported and the destination folder depend on the input parameters.
  */
-class Exporter extends Thread {
+class Exporter implements Runnable {
 
     private final Track track;
     private final ExportingTask exportingTask;
@@ -61,15 +64,36 @@ class Exporter extends Thread {
     private final int getPrefGPXVersion;
     private boolean txtFirstTrackpointFlag = true;
 
+    private static final int GPX1_0 = 100;
+    private static final int GPX1_1 = 110;
+
     private DocumentFile kmlFile;
     private DocumentFile gpxFile;
     private DocumentFile txtFile;
 
-    int groupOfLocations;                           // Reads and writes location grouped by this number;
-
-    private final ArrayBlockingQueue<LocationExtended> arrayGeopoints = new ArrayBlockingQueue<>(3500);
+    private static final int GROUP_OF_LOCATIONS = 1000;     // Reads and writes location grouped by this number;
+
+    // The Trackpoints are read by a single AsyncGeopointsLoader, and each format is written
+    // in parallel by its own TrackpointsWriter Thread.
+    // The loader queues each block of points to all the writers, and the block returns
+    // into freeBlocks when the last writer releases it.
+    private static final int NUMBER_OF_BLOCKS = 4;
+    private static final PointBlock END_OF_TRACK = new PointBlock(0);      // Queued to the writers at the end of the Track
+    private final ArrayBlockingQueue<PointBlock> freeBlocks = new ArrayBlockingQueue<>(NUMBER_OF_BLOCKS);
+    private final List<TrackpointsWriter> trackpointsWriters = new ArrayList<>();
+    private final AtomicLong numberOfTrackpointsWritten = new AtomicLong(0);
     private final AsyncGeopointsLoader asyncGeopointsLoader = new AsyncGeopointsLoader();
 
+    // The cancellation and the checkpoints.
+    // The checkpoints are used only for plain files: the documents of the
+    // Storage Access Framework cannot be reliably truncated and continued.
+    private static final int CHECKPOINT_INTERVAL = 20000;  // The Trackpoints written between two saved checkpoints
+    private volatile boolean cancelled = false;
+    private final ExportCheckpoint checkpoint = new ExportCheckpoint();    // The parameters and the last complete state of the writers
+    private File checkpointFile = null;                     // The file of the checkpoint, null if the checkpoints are disabled
+    private ExportCheckpoint resumeCheckpoint = null;       // The checkpoint of the exportation to resume, null if not resumed
+    private ExportCache exportCache = null;                 // The cache of the exported files, null if not used
+
     /**
      * Converts a String in a format suitable for GPX/KML files,
      * by replacing the invalid characters with the corresponding HTML sequences.
@@ -156,7 +180,7 @@ class Exporter extends Thread {
     }
 
     /**
-     * The Thread that performs the exportation of the Track in KML, GPX, and/or TXT format.
+     * Creates the Exporter of a Track in KML, GPX, and/or TXT format.
      * The files exported and the destination folder depend on the input parameters.
      *
      * @param exportingTask the associated ExportingTask
@@ -168,7 +192,6 @@ class Exporter extends Thread {
     public Exporter(ExportingTask exportingTask, boolean exportKML, boolean exportGPX, boolean exportTXT, String saveIntoFolder) {
         this.exportingTask = exportingTask;
         this.exportingTask.setNumberOfPoints_Processed(0);
-        this.exportingTask.setStatus(ExportingTask.STATUS_RUNNING);
         this.track = GPSApplication.getInstance().gpsDataBase.getTrack(exportingTask.getId());
         this.altitudeManualCorrection = GPSApplication.getInstance().getPrefAltitudeCorrection();
         this.egmAltitudeCorrection = GPSApplication.getInstance().getPrefEGM96AltitudeCorrection();
@@ -179,32 +202,31 @@ class Exporter extends Thread {
         this.exportKML = exportKML;
         this.saveIntoFolder = saveIntoFolder;
 
-        int formats = 0;
-        if (exportKML) formats++;
-        if (exportGPX) formats++;
-        if (exportTXT) formats++;
-        if (formats == 1) groupOfLocations = 1500;
-        else {
-            groupOfLocations = 1900;
-            if (exportKML) groupOfLocations -= 200;     // KML is a light format, less time to write file
-            if (exportTXT) groupOfLocations -= 800;     //
-            if (exportGPX) groupOfLocations -= 600;     // GPX is the heavier format, more time to write the file
-        }
+        for (int i = 0; i < NUMBER_OF_BLOCKS; i++) freeBlocks.add(new PointBlock(GROUP_OF_LOCATIONS));
     }
 
 
+    /**
+     * Sets the cache of the exported files.
+     * If the files of the Track have been already exported with the same parameters,
+     * the Exporter reuses them.
+     *
+     * @param exportCache the cache, or null to always export the files
+     */
+    void setExportCache(ExportCache exportCache) {
+        this.exportCache = exportCache;
+    }
+
     public void run() {
         Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
 
         Log.w("myApp", "[#] Exporter.java - STARTED");
+        exportingTask.setStatus(ExportingTask.STATUS_RUNNING);
 
         kmlFile = null;
         gpxFile = null;
         txtFile = null;
 
-        final int GPX1_0 = 100;
-        final int GPX1_1 = 110;
-
         Date creationTime;
         long elements_total;
         String versionName = BuildConfig.VERSION_NAME;
@@ -232,10 +254,7 @@ class Exporter extends Thread {
         if (egmAltitudeCorrection && EGM96.getInstance().isLoading()) {
             try {
                 Log.w("myApp", "[#] Exporter.java - Wait, EGMGrid is loading");
-                do {
-                    Thread.sleep(200);
-                    // Lazy polling until EGM grid finish to load
-                } while (EGM96.getInstance().isLoading());
+                EGM96.getInstance().awaitLoaded();      // Blocks until the EGM grid finish to load
             } catch (InterruptedException e) {
                 Log.w("myApp", "[#] Exporter.java - Cannot wait!!");
             }
@@ -253,8 +272,46 @@ class Exporter extends Thread {
         //final String newLine = System.getProperty("line.separator"); //\n\r
         final String newLine = "\r\n";
 
+        String fileName = gpsApp.getFileName(track);
+
+        // Prepares the checkpoint, and looks for a previous checkpoint of the same exportation
+        checkpoint.trackID = track.getId();
+        checkpoint.numberOfLocations = track.getNumberOfLocations();
+        checkpoint.numberOfPlacemarks = track.getNumberOfPlacemarks();
+        checkpoint.destination = saveIntoFolder + "/" + fileName;
+        checkpoint.formats[ExportCheckpoint.FORMAT_KML] = exportKML;
+        checkpoint.formats[ExportCheckpoint.FORMAT_GPX] = exportGPX;
+        checkpoint.formats[ExportCheckpoint.FORMAT_TXT] = exportTXT;
+        checkpoint.altitudeManualCorrection = altitudeManualCorrection;
+        checkpoint.egmAltitudeCorrection = egmAltitudeCorrection;
+        checkpoint.kmlAltitudeMode = getPrefKMLAltitudeMode;
+        checkpoint.gpxVersion = getPrefGPXVersion;
+        checkpoint.headsHash = (versionName + "|" + track.getDescription() + "|" + gpsApp.getPrefUM() + "|" + gpsApp.getPrefUMOfSpeed()
+                + "|" + gpsApp.getPrefShowDirections() + "|" + gpsApp.getPrefShowLocalTime()).hashCode();
+
+        // Reuses the files of a previous exportation with the same parameters
+        if (exportCache != null) {
+            if ((!exportKML || exportCache.contains(checkpoint, new File(saveIntoFolder, fileName + ".kml")))
+                    && (!exportGPX || exportCache.contains(checkpoint, new File(saveIntoFolder, fileName + ".gpx")))
+                    && (!exportTXT || exportCache.contains(checkpoint, new File(saveIntoFolder, fileName + ".txt")))) {
+                Log.w("myApp", "[#] Exporter.java - Track " + track.getId() + " already exported, files reused");
+                exportingTask.setNumberOfPoints_Processed(exportingTask.getNumberOfPoints_Total());
+                exportingTask.setStatus(ExportingTask.STATUS_ENDED_SUCCESS);
+                return;
+            }
+            if (exportKML) exportCache.remove(new File(saveIntoFolder, fileName + ".kml"));
+            if (exportGPX) exportCache.remove(new File(saveIntoFolder, fileName + ".gpx"));
+            if (exportTXT) exportCache.remove(new File(saveIntoFolder, fileName + ".txt"));
+        }
+
+        if (!saveIntoFolder.startsWith("content")) {
+            checkpointFile = ExportCheckpoint.getFile(GPSApplication.DIRECTORY_FILESDIR_CHECKPOINTS, track.getId(), checkpoint.destination);
+            resumeCheckpoint = loadResumeCheckpoint(fileName);
+            if (resumeCheckpoint == null) checkpointFile.delete();
+        }
+
         // If the file is not writable abort exportation:
-        boolean fileWritable = tryToInitFiles(gpsApp.getFileName(track));               // Try to use the name with the description
+        boolean fileWritable = (resumeCheckpoint != null) || tryToInitFiles(fileName);  // Try to use the name with the description
         //if (!fileWritable) fileWritable = tryToInitFiles(track.getName());  // else try to use the name without description
         if (!fileWritable) {
             Log.w("myApp", "[#] Exporter.java - Unable to write the file!!");
@@ -264,32 +321,36 @@ class Exporter extends Thread {
         }
 
         // Create buffers for Write operations
-        BufferedWriter kmlBW = null;
-        BufferedWriter gpxBW = null;
-        BufferedWriter txtBW = null;
-
-        asyncGeopointsLoader.start();
+        ExportWriter kmlBW = null;
+        ExportWriter gpxBW = null;
+        ExportWriter txtBW = null;
 
         try {
-            if (exportKML) {
-                OutputStream outputStream = GPSApplication.getInstance().getContentResolver().openOutputStream(kmlFile.getUri(), "rw");
-                kmlBW = new BufferedWriter(new OutputStreamWriter(outputStream));
-            }
-            if (exportGPX) {
-                OutputStream outputStream = GPSApplication.getInstance().getContentResolver().openOutputStream(gpxFile.getUri(), "rw");
-                gpxBW = new BufferedWriter(new OutputStreamWriter(outputStream));
-            }
-            if (exportTXT) {
-                OutputStream outputStream = GPSApplication.getInstance().getContentResolver().openOutputStream(txtFile.getUri(), "rw");
-                txtBW = new BufferedWriter(new OutputStreamWriter(outputStream));
+            if (exportKML) kmlBW = openExportWriter(kmlFile, ExportCheckpoint.FORMAT_KML);
+            if (exportGPX) gpxBW = openExportWriter(gpxFile, ExportCheckpoint.FORMAT_GPX);
+            if (exportTXT) txtBW = openExportWriter(txtFile, ExportCheckpoint.FORMAT_TXT);
+
+            final boolean isResumed = (resumeCheckpoint != null);     // The heads and the Placemarks are already written
+            if (isResumed) {
+                Log.w("myApp", "[#] Exporter.java - Resuming from Trackpoint " + resumeCheckpoint.numberOfTrackpointsWritten);
+                checkpoint.setState(resumeCheckpoint.numberOfTrackpointsWritten, resumeCheckpoint.lastNumber, resumeCheckpoint.positions);
+                numberOfTrackpointsWritten.set(resumeCheckpoint.numberOfTrackpointsWritten);
+                txtFirstTrackpointFlag = (resumeCheckpoint.numberOfTrackpointsWritten == 0);
+                exportingTask.setNumberOfPoints_Processed(track.getNumberOfPlacemarks() + resumeCheckpoint.numberOfTrackpointsWritten);
             }
 
+            // The loader starts to read the Trackpoints meanwhile the heads and the Placemarks are written
+            if (exportKML) trackpointsWriters.add(new KMLTrackpointsWriter(kmlBW));
+            if (exportGPX) trackpointsWriters.add(new GPXTrackpointsWriter(gpxBW));
+            if (exportTXT) trackpointsWriters.add(new TXTTrackpointsWriter(txtBW));
+            asyncGeopointsLoader.start();
+
             creationTime = Calendar.getInstance().getTime();
 
             // ---------------------------------------------------------------------- Writing Heads
             Log.w("myApp", "[#] Exporter.java - Writing Heads");
 
-            if (exportKML) {
+            if (exportKML && !isResumed) {
                 // Writing head of KML file
 
                 kmlBW.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + newLine);
@@ -328,7 +389,7 @@ class Exporter extends Thread {
                 kmlBW.write(newLine);
             }
 
-            if (exportGPX) {
+            if (exportGPX && !isResumed) {
                 // Writing head of GPX file
 
                 gpxBW.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + newLine);
@@ -423,7 +484,7 @@ class Exporter extends Thread {
                 }
             }
 
-            if (exportTXT) {
+            if (exportTXT && !isResumed) {
                 // Writing head of TXT file
                 txtBW.write("type,date time,latitude,longitude,accuracy(m),altitude(m),geoid_height(m),speed(m/s),bearing(deg),sat_used,sat_inview,name,desc" + newLine);
             }
@@ -436,22 +497,23 @@ class Exporter extends Thread {
             // ---------------------------------------------------------------- Writing Placemarks
             Log.w("myApp", "[#] Exporter.java - Writing Placemarks");
 
-            if (track.getNumberOfPlacemarks() > 0) {
+            if (!isResumed && (track.getNumberOfPlacemarks() > 0)) {
                 int placemark_id = 1;                   // It is used to add a progressive "id" to Placemarks
 
                 // Writes track headings
 
-                List<LocationExtended> placemarkList = new ArrayList<>(groupOfLocations);
+                List<LocationExtended> placemarkList = new ArrayList<>(GROUP_OF_LOCATIONS);
 
-                for (int i = 0; i <= track.getNumberOfPlacemarks(); i += groupOfLocations) {
+                for (int i = 0; i <= track.getNumberOfPlacemarks(); i += GROUP_OF_LOCATIONS) {
+                    if (cancelled) throw new InterruptedException("Cancelled");
                     //Log.w("myApp", "[#] Exporter.java - " + (i + GroupOfLocations));
-                    placemarkList.addAll(gpsApp.gpsDataBase.getPlacemarksList(track.getId(), i, i + groupOfLocations - 1));
+                    placemarkList.addAll(gpsApp.gpsDataBase.getPlacemarksList(track.getId(), i, i + GROUP_OF_LOCATIONS - 1));
 
                     if (!placemarkList.isEmpty()) {
                         for (LocationExtended loc : placemarkList) {
                             formattedLatitude = String.format(Locale.US, "%.8f", loc.getLocation().getLatitude());
                             formattedLongitude = String.format(Locale.US, "%.8f", loc.getLocation().getLongitude());
-                            if (loc.getLocation().hasAltitude()) formattedAltitude = String.format(Locale.US, "%.3f", loc.getLocation().getAltitude() + altitudeManualCorrection - (((loc.getAltitudeEGM96Correction() == NOT_AVAILABLE) || (!egmAltitudeCorrection)) ? 0 : loc.getAltitudeEGM96Correction()));
+                            if (loc.getLocation().hasAltitude()) formattedAltitude = String.format(Locale.US, "%.3f", loc.getLocation().getAltitude() + altitudeManualCorrection - (((!egmAltitudeCorrection) || (loc.getAltitudeEGM96Correction() == NOT_AVAILABLE)) ? 0 : loc.getAltitudeEGM96Correction()));
                             if(exportGPX || exportTXT) {
                                 if (loc.getLocation().hasSpeed())
                                     formattedSpeed = String.format(Locale.US, "%.3f", loc.getLocation().getSpeed());
@@ -517,7 +579,7 @@ class Exporter extends Thread {
                                 if (loc.getLocation().hasAltitude())
                                     txtBW.write(formattedAltitude);
                                 txtBW.write(",");
-                                if ((loc.getAltitudeEGM96Correction() != NOT_AVAILABLE) && (egmAltitudeCorrection))
+                                if ((egmAltitudeCorrection) && (loc.getAltitudeEGM96Correction() != NOT_AVAILABLE))
                                     txtBW.write(String.format(Locale.US, "%.3f",loc.getAltitudeEGM96Correction()));
                                 txtBW.write(",");
                                 if (loc.getLocation().hasSpeed())
@@ -542,6 +604,7 @@ class Exporter extends Thread {
                             exportingTask.setNumberOfPoints_Processed(exportingTask.getNumberOfPoints_Processed() + 1);
                         }
                         placemarkList.clear();
+                        gpsApp.onExportingStatusChanged();
                     }
                 }
 
@@ -559,7 +622,7 @@ class Exporter extends Thread {
             if (track.getNumberOfLocations() > 0) {
 
                 // Writes track headings
-                if (exportKML) {
+                if (exportKML && !isResumed) {
                     PhysicalDataFormatter phdformatter = new PhysicalDataFormatter();
                     PhysicalData phdDuration;
                     PhysicalData phdDurationMoving;
@@ -597,112 +660,22 @@ class Exporter extends Thread {
                     kmlBW.write("    <altitudeMode>" + (getPrefKMLAltitudeMode == 1 ? "clampToGround" : "absolute") + "</altitudeMode>" + newLine);
                     kmlBW.write("    <coordinates>" + newLine);
                 }
-                if (exportGPX) {
+                if (exportGPX && !isResumed) {
                     gpxBW.write("<trk>" + newLine);
                     gpxBW.write(" <name>" + gpsApp.getApplicationContext().getString(R.string.tab_track) + " " + track.getName() + "</name>" + newLine);
                     gpxBW.write(" <trkseg>" + newLine);
                 }
 
-                LocationExtended loc;
-
-                for (int i = 0; i < track.getNumberOfLocations(); i++) {
-
-                    loc = arrayGeopoints.take();
-
-                                        // Create formatted strings
-                    formattedLatitude = String.format(Locale.US, "%.8f", loc.getLocation().getLatitude());
-                    formattedLongitude = String.format(Locale.US, "%.8f", loc.getLocation().getLongitude());
-                    if (loc.getLocation().hasAltitude()) formattedAltitude = String.format(Locale.US, "%.3f", loc.getLocation().getAltitude() + altitudeManualCorrection - (((loc.getAltitudeEGM96Correction() == NOT_AVAILABLE) || (!egmAltitudeCorrection)) ? 0 : loc.getAltitudeEGM96Correction()));
-                    if(exportGPX || exportTXT) {
-                        if (loc.getLocation().hasSpeed())
-                            formattedSpeed = String.format(Locale.US, "%.3f", loc.getLocation().getSpeed());
-                    }
-
-                    // KML
-                    if (exportKML) {
-                        if (loc.getLocation().hasAltitude()) kmlBW.write("     " + formattedLongitude + "," + formattedLatitude + "," + formattedAltitude + newLine);
-                        else kmlBW.write("     " + formattedLongitude + "," + formattedLatitude + ",0" + newLine);
-                    }
-
-                    // GPX
-                    if (exportGPX) {
-                        gpxBW.write("  <trkpt lat=\"" + formattedLatitude + "\" lon=\"" + formattedLongitude + "\">");
-                        if (loc.getLocation().hasAltitude()) {
-                            gpxBW.write("<ele>");     // Elevation
-                            gpxBW.write(formattedAltitude);
-                            gpxBW.write("</ele>");
-                        }
-                        gpxBW.write("<time>");     // Time
-                        //gpxBW.write(dfdtGPX.format(loc.getLocation().getTime()));
-                        gpxBW.write(((loc.getLocation().getTime() % 1000L) == 0L) ?
-                                dfdtGPX_NoMillis.format(loc.getLocation().getTime()) :
-                                dfdtGPX.format(loc.getLocation().getTime()));
-                        gpxBW.write("</time>");
-                        if (getPrefGPXVersion == GPX1_0) {
-                            if (loc.getLocation().hasSpeed()) {
-                                gpxBW.write("<speed>");     // Speed
-                                gpxBW.write(formattedSpeed);
-                                gpxBW.write("</speed>");
-                            }
-                        }
-                        if (loc.getNumberOfSatellitesUsedInFix() > 0) {                   // GPX standards requires sats used for FIX.
-                            gpxBW.write("<sat>");                                         // and NOT the number of satellites in view!!!
-                            gpxBW.write(String.valueOf(loc.getNumberOfSatellitesUsedInFix()));
-                            gpxBW.write("</sat>");
-                        }
-                        /*
-                        if (getPrefGPXVersion == GPX1_1) {                                // GPX 1.1 doesn't support speed tags. Let's switch to Garmin extensions :(
-                            if (loc.getLocation().hasSpeed()) {
-                                gpxBW.write("<extensions><gpxtpx:TrackPointExtension><gpxtpx:speed>");     // Speed (as Garmin extension)
-                                gpxBW.write(formattedSpeed);
-                                gpxBW.write("</gpxtpx:speed></gpxtpx:TrackPointExtension></extensions>");
-                            }
-                        } */
-                        gpxBW.write("</trkpt>" + newLine);
-                    }
-
-                    // TXT
-                    if (exportTXT) {
-                        //type,time,latitude,longitude,altitude (m),geoid_height (m),speed (m/s),sat_used,sat_inview,name,desc
-                        //txtBW.write("T," + dfdtTXT.format(loc.getLocation().getTime()) + "," + formattedLatitude + "," + formattedLongitude + ",");
-                        txtBW.write("T," + (((loc.getLocation().getTime() % 1000L) == 0L) ?
-                                  dfdtTXT_NoMillis.format(loc.getLocation().getTime()) :
-                                  dfdtTXT.format(loc.getLocation().getTime()))
-                                + "," + formattedLatitude + "," + formattedLongitude + ",");
-                        if (loc.getLocation().hasAccuracy())
-                            txtBW.write(String.format(Locale.US, "%.0f", loc.getLocation().getAccuracy()));
-                        txtBW.write(",");
-                        if (loc.getLocation().hasAltitude())
-                            txtBW.write(formattedAltitude);
-                        txtBW.write(",");
-                        if ((loc.getAltitudeEGM96Correction() != NOT_AVAILABLE) && (egmAltitudeCorrection))
-                            txtBW.write(String.format(Locale.US, "%.3f",loc.getAltitudeEGM96Correction()));
-                        txtBW.write(",");
-                        if (loc.getLocation().hasSpeed())
-                            txtBW.write(formattedSpeed);
-                        txtBW.write(",");
-                        if (loc.getLocation().hasBearing())
-                            txtBW.write(String.format(Locale.US, "%.0f", loc.getLocation().getBearing()));
-                        txtBW.write(",");
-                        if (loc.getNumberOfSatellitesUsedInFix() > 0)
-                            txtBW.write(String.valueOf(loc.getNumberOfSatellitesUsedInFix()));
-                        txtBW.write(",");
-                        if (loc.getNumberOfSatellites() > 0)
-                            txtBW.write(String.valueOf(loc.getNumberOfSatellites()));
-                        txtBW.write(",");
-                        if (txtFirstTrackpointFlag) {           // First trackpoint of the track: add the description
-                            if (track.getDescription().isEmpty()) txtBW.write(track.getName() + ",GPS Logger: " + track.getName());
-                            else txtBW.write(track.getName() + ",GPS Logger: " + track.getName() + " - " + track.getDescription().replace(",", "_"));
-                            txtFirstTrackpointFlag = false;
-                        } else txtBW.write(",");
-                        txtBW.write(newLine);
-                    }
-
-                    exportingTask.setNumberOfPoints_Processed(exportingTask.getNumberOfPoints_Processed() + 1);
+                // Writes the Trackpoints of all the formats in parallel
+                if (cancelled) throw new InterruptedException("Cancelled");
+                for (TrackpointsWriter trackpointsWriter : trackpointsWriters) trackpointsWriter.start();
+                for (TrackpointsWriter trackpointsWriter : trackpointsWriters) {
+                    trackpointsWriter.join();
+                    if (trackpointsWriter.exception != null) throw trackpointsWriter.exception;
                 }
+                if (cancelled) throw new InterruptedException("Cancelled");
 
                 exportingTask.setNumberOfPoints_Processed(track.getNumberOfPlacemarks() + track.getNumberOfLocations());
-                arrayGeopoints.clear();
 
                 if (exportKML) {
                     kmlBW.write("    </coordinates>" + newLine);
@@ -736,28 +709,178 @@ class Exporter extends Thread {
                 txtBW.close();
             }
 
-            Log.w("myApp", "[#] Exporter.java - Track "+ track.getId() +" exported in " + (System.currentTimeMillis() - startTime) + " ms (" + elements_total + " pts @ " + ((1000L * elements_total) / (System.currentTimeMillis() - startTime)) + " pts/s)");
+            long bytesWritten = 0;
+            if (exportKML) bytesWritten += kmlBW.getBytesWritten();
+            if (exportGPX) bytesWritten += gpxBW.getBytesWritten();
+            if (exportTXT) bytesWritten += txtBW.getBytesWritten();
+            long exportTime = Math.max(1, System.currentTimeMillis() - startTime);
+            Log.w("myApp", "[#] Exporter.java - Track "+ track.getId() +" exported in " + exportTime + " ms (" + elements_total + " pts @ " + ((1000L * elements_total) / exportTime) + " pts/s, "
+                    + String.format(Locale.US, "%.1f", bytesWritten / 1000.0 / exportTime) + " MB/s)");
             //EventBus.getDefault().post(new EventBusMSGNormal(EventBusMSG.TRACK_EXPORTED, track.getId()));
+            if (checkpointFile != null) checkpointFile.delete();
+            if (exportCache != null) {
+                if (exportKML) exportCache.put(checkpoint, new File(saveIntoFolder, fileName + ".kml"));
+                if (exportGPX) exportCache.put(checkpoint, new File(saveIntoFolder, fileName + ".gpx"));
+                if (exportTXT) exportCache.put(checkpoint, new File(saveIntoFolder, fileName + ".txt"));
+            }
             exportingTask.setStatus(ExportingTask.STATUS_ENDED_SUCCESS);
         } catch (IOException e) {
             exportingTask.setStatus(ExportingTask.STATUS_ENDED_FAILED);
             //EventBus.getDefault().post(new EventBusMSGNormal(EventBusMSG.TOAST_UNABLE_TO_WRITE_THE_FILE, track.getId()));
-            asyncGeopointsLoader.interrupt();
+            interruptWorkers();
             Log.w("myApp", "[#] Exporter.java - Unable to write the file: " + e);
         } catch (InterruptedException e) {
+            if (cancelled) {
+                // Stores the data written and the checkpoint, in order to resume the exportation later
+                closeQuietly(kmlBW);
+                closeQuietly(gpxBW);
+                closeQuietly(txtBW);
+                synchronized (checkpoint) {
+                    if ((checkpointFile != null) && (checkpoint.numberOfTrackpointsWritten > 0)) checkpoint.save(checkpointFile);
+                }
+                exportingTask.setStatus(ExportingTask.STATUS_CANCELLED);
+                Log.w("myApp", "[#] Exporter.java - Cancelled after " + checkpoint.numberOfTrackpointsWritten + " Trackpoints");
+                return;
+            }
             exportingTask.setStatus(ExportingTask.STATUS_ENDED_FAILED);
-            asyncGeopointsLoader.interrupt();
+            interruptWorkers();
             Log.w("myApp", "[#] Exporter.java - Interrupted: " + e);
         }
     }
 
     /**
-     * This Thread feeds the arrayGeopoints list with the GeoPoints, by querying
-     * small blocks of points from the DB and keeping the list as full as possible.
-     * The thread is started as soon as the Exported is started in order to fill the
-     * list meanwhile the Exporter is initializing the files and is writing the file headers.
+     * Cancels the exportation.
+     * The loader stops to read the Trackpoints, the writers stop after the block in progress,
+     * and the Exporter saves a checkpoint from which the exportation can be resumed.
+     * The method returns immediately; the ExportingTask ends with STATUS_CANCELLED.
+     */
+    void cancel() {
+        cancelled = true;
+        asyncGeopointsLoader.interrupt();
+    }
+
+    /**
+     * Looks for a valid checkpoint of the exportation.
+     * The checkpoint is valid if it has the same parameters of the current exportation,
+     * and if all the files exist and contain at least the data of the checkpoint.
+     *
+     * @param fName The file name (without path and .extension)
+     * @return the checkpoint to resume, or null if the exportation must start from the beginning
+     */
+    private ExportCheckpoint loadResumeCheckpoint(String fName) {
+        ExportCheckpoint savedCheckpoint = ExportCheckpoint.load(checkpointFile);
+        if ((savedCheckpoint == null) || !savedCheckpoint.hasSameParameters(checkpoint)) return null;
+        File kml = new File(saveIntoFolder, fName + ".kml");
+        File gpx = new File(saveIntoFolder, fName + ".gpx");
+        File txt = new File(saveIntoFolder, fName + ".txt");
+        if ((exportKML && (kml.length() < savedCheckpoint.positions[ExportCheckpoint.FORMAT_KML]))
+                || (exportGPX && (gpx.length() < savedCheckpoint.positions[ExportCheckpoint.FORMAT_GPX]))
+                || (exportTXT && (txt.length() < savedCheckpoint.positions[ExportCheckpoint.FORMAT_TXT]))) return null;
+        if (exportKML) kmlFile = DocumentFile.fromFile(kml);
+        if (exportGPX) gpxFile = DocumentFile.fromFile(gpx);
+        if (exportTXT) txtFile = DocumentFile.fromFile(txt);
+        return savedCheckpoint;
+    }
+
+    private void closeQuietly(ExportWriter exportWriter) {
+        if (exportWriter == null) return;
+        try {
+            exportWriter.close();
+        } catch (IOException e) {
+            Log.w("myApp", "[#] Exporter.java - Unable to close the file: " + e);
+        }
+    }
+
+    /**
+     * Opens the ExportWriter of an exported file.
+     * The plain files are written directly with their FileChannel,
+     * the other ones (Storage Access Framework) with the output stream of the ContentResolver.
+     * When the exportation is resumed, the plain files are continued from the checkpoint.
+     *
+     * @param file the file to write
+     * @param format the format of the file (ExportCheckpoint.FORMAT_KML, FORMAT_GPX, FORMAT_TXT)
+     * @return the ExportWriter
+     */
+    private ExportWriter openExportWriter(DocumentFile file, int format) throws IOException {
+        Uri uri = file.getUri();
+        if ("file".equals(uri.getScheme()) && (uri.getPath() != null)) {
+            if (resumeCheckpoint != null) return new ExportWriter(new FileOutputStream(uri.getPath(), true).getChannel(), resumeCheckpoint.positions[format]);
+            return new ExportWriter(new FileOutputStream(uri.getPath()).getChannel());
+        }
+        OutputStream outputStream = GPSApplication.getInstance().getContentResolver().openOutputStream(uri, "rw");
+        if (outputStream == null) throw new IOException("Unable to open " + uri);
+        return new ExportWriter(outputStream);
+    }
+
+    /**
+     * Stops the loader and the writers of the Trackpoints.
+     */
+    private void interruptWorkers() {
+        asyncGeopointsLoader.interrupt();
+        for (TrackpointsWriter trackpointsWriter : trackpointsWriters) trackpointsWriter.interrupt();
+    }
+
+    /**
+     * A block of points of the Track, shared by all the TrackpointsWriters.
+     * It contains the points and the EGM96 corrections of their altitudes,
+     * computed once by the loader for all the formats.
+     */
+    private static class PointBlock {
+        final TrackPointBuffer points;
+        final double[] egmCorrection;
+        final AtomicInteger pendingWriters = new AtomicInteger(0);    // The writers that are still using the block
+
+        long firstIndex;                        // The number of Trackpoints of the Track that precede the block
+        long lastNumber;                        // The number (DB) of the last Trackpoint of the block
+        boolean isCheckpoint;                   // True if a checkpoint must be saved after the block
+        boolean skipped;                        // True if a writer didn't write the block (cancelled or failed)
+        final long[] positions = new long[ExportCheckpoint.NUMBER_OF_FORMATS];     // The size of the files after the block
+
+        PointBlock(int capacity) {
+            points = new TrackPointBuffer(capacity);
+            egmCorrection = new double[capacity];
+        }
+    }
+
+    /**
+     * Gives a block back to the loader, when the last writer has finished to use it.
+     * The progress of the ExportingTask follows the slowest writer.
+     *
+     * @param block the block written
+     */
+    private void releaseBlock(PointBlock block) {
+        if (block.pendingWriters.decrementAndGet() > 0) return;
+        if (!block.skipped) updateCheckpoint(block);
+        exportingTask.setNumberOfPoints_Processed(track.getNumberOfPlacemarks() + numberOfTrackpointsWritten.addAndGet(block.points.size));
+        GPSApplication.getInstance().onExportingStatusChanged();
+        freeBlocks.add(block);                  // Never full: the blocks are NUMBER_OF_BLOCKS
+    }
+
+    /**
+     * Updates the checkpoint with the state after a block written by all the writers,
+     * and saves it when the block is marked as checkpoint.
+     * The writers flush their files at the end of these blocks, so the data of the
+     * saved checkpoints are always into the files.
+     *
+     * @param block the block written
+     */
+    private void updateCheckpoint(PointBlock block) {
+        synchronized (checkpoint) {
+            final long written = block.firstIndex + block.points.size;
+            if (written <= checkpoint.numberOfTrackpointsWritten) return;       // Older than the current state
+            checkpoint.setState(written, block.lastNumber, block.positions);
+            if (block.isCheckpoint && (checkpointFile != null)) checkpoint.save(checkpointFile);
+        }
+    }
+
+    /**
+     * This Thread feeds the queues of all the TrackpointsWriters with the GeoPoints,
+     * by reading blocks of points from the DB and keeping the queues as full as possible.
+     * The end of the Track is notified by queuing a void block.
+     * The thread is started as soon as the files are opened, in order to fill the
+     * queues meanwhile the Exporter is writing the file headers and the Placemarks.
      * <p>
-     * The Database reading and the file writing are decoupled into two separate Threads
+     * The Database reading and the file writing are decoupled into separate Threads
      * in order to optimise the Exporter's performance.
      */
     private class AsyncGeopointsLoader extends Thread {
@@ -768,23 +891,152 @@ class Exporter extends Thread {
         public void run() {
             Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
 
-            List<LocationExtended> lList = new ArrayList<>(groupOfLocations);
+            // Streams the locations with a single forward cursor, starting after the
+            // last Trackpoint written in case of resume.
+            // The locations are limited to the number stored into the Track summary.
+            TrackPointCursor trackPointCursor = (resumeCheckpoint == null) ?
+                    GPSApplication.getInstance().gpsDataBase.getLocationsCursor(track.getId()) :
+                    GPSApplication.getInstance().gpsDataBase.getLocationsCursor(track.getId(), resumeCheckpoint.lastNumber);
+            long numberOfLocationsLoaded = (resumeCheckpoint == null) ? 0 : resumeCheckpoint.numberOfTrackpointsWritten;
+            EGM96 egm96 = EGM96.getInstance();
+            try {
+                PointBlock block;
+                while (!cancelled) {
+                    block = freeBlocks.take();
+                    TrackPointBuffer points = block.points;
+                    if (points.fill(trackPointCursor, (int) Math.min(track.getNumberOfLocations() - numberOfLocationsLoaded, points.capacity)) == 0) {
+                        freeBlocks.put(block);
+                        break;
+                    }
+                    block.firstIndex = numberOfLocationsLoaded;
+                    block.lastNumber = trackPointCursor.getNumber();
+                    numberOfLocationsLoaded += points.size;
+                    block.isCheckpoint = (block.firstIndex / CHECKPOINT_INTERVAL) != (numberOfLocationsLoaded / CHECKPOINT_INTERVAL);
+                    block.skipped = false;
+                    if (egmAltitudeCorrection) egm96.getEGMCorrections(points.latitude, points.longitude, block.egmCorrection, points.size);
+                    else Arrays.fill(block.egmCorrection, 0, points.size, NOT_AVAILABLE);
+                    if (trackpointsWriters.isEmpty()) freeBlocks.put(block);
+                    else {
+                        block.pendingWriters.set(trackpointsWriters.size());
+                        for (TrackpointsWriter trackpointsWriter : trackpointsWriters) trackpointsWriter.queue.put(block);
+                    }
+                    //Log.w("myApp", "[#] Exporter.java - " + points.size);
+                }
+            } catch (InterruptedException e) {
+                Log.w("myApp", "[#] Exporter.java - Interrupted: " + e);
+            } finally {
+                trackPointCursor.close();
+                // The end of the Track. The queues have a place more than the blocks, so they are never full
+                for (TrackpointsWriter trackpointsWriter : trackpointsWriters) trackpointsWriter.queue.offer(END_OF_TRACK);
+            }
+        }
+    }
+
+    /**
+     * The Thread that writes the Trackpoints of a single format.
+     * It takes the blocks of points from its own bounded queue, and releases them
+     * when written; it ends when it takes the END_OF_TRACK block.
+     * It flushes the file at the end of the blocks marked as checkpoint.
+     * Each line is built into a reusable ExportFormatter, in order to not allocate
+     * Strings for each point.
+     * <p>
+     * In case of IOException or cancellation the writer continues to release the blocks
+     * without writing them, in order to not stop the loader and the other writers.
+     * The exception is then thrown by the Exporter.
+     */
+    private abstract class TrackpointsWriter extends Thread {
+
+        final ArrayBlockingQueue<PointBlock> queue = new ArrayBlockingQueue<>(NUMBER_OF_BLOCKS + 1);
+        final ExportWriter bw;
+        final int format;
+        final ExportFormatter line = new ExportFormatter(256);
+        IOException exception = null;
+
+        TrackpointsWriter(ExportWriter bw, int format) {
+            this.bw = bw;
+            this.format = format;
+        }
 
-            for (int i = 0; i <= track.getNumberOfLocations(); i += groupOfLocations) {
-                //Log.w("myApp", "[#] Exporter.java - " + (i + GroupOfLocations));
-                lList.addAll(GPSApplication.getInstance().gpsDataBase.getLocationsList(track.getId(), i, i + groupOfLocations - 1));
-                if (!lList.isEmpty()) {
-                    for (LocationExtended loc : lList) {
+        /**
+         * Appends to the line the point at the specified index of the block.
+         */
+        abstract void format(PointBlock block, int i);
+
+        public void run() {
+            Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+
+            PointBlock block;
+            try {
+                while ((block = queue.take()) != END_OF_TRACK) {
+                    if ((exception == null) && !cancelled) {
                         try {
-                            arrayGeopoints.put(loc);
-                            //Log.w("myApp", "[#] Exporter.java - " + ArrayGeopoints.size());
-                        } catch (InterruptedException e) {
-                            Log.w("myApp", "[#] Exporter.java - Interrupted: " + e);
+                            for (int i = 0; i < block.points.size; i++) {
+                                format(block, i);
+                                bw.write(line);
+                            }
+                            if (block.isCheckpoint) bw.flush();
+                            block.positions[format] = bw.getPosition();
+                        } catch (IOException e) {
+                            exception = e;
+                            block.skipped = true;
                         }
-                    }
-                    lList.clear();
+                    } else block.skipped = true;
+                    releaseBlock(block);
                 }
+            } catch (InterruptedException e) {
+                Log.w("myApp", "[#] Exporter.java - Interrupted: " + e);
+            }
+        }
+    }
+
+    /**
+     * Writes the coordinates of the Trackpoints into the KML file.
+     */
+    private class KMLTrackpointsWriter extends TrackpointsWriter {
+
+        KMLTrackpointsWriter(ExportWriter bw) {
+            super(bw, ExportCheckpoint.FORMAT_KML);
+        }
+
+        @Override
+        void format(PointBlock block, int i) {
+            TrackpointFormatter.appendKML(line, block.points, i, block.egmCorrection[i], altitudeManualCorrection);
+        }
+    }
+
+    /**
+     * Writes the Trackpoints into the GPX file.
+     */
+    private class GPXTrackpointsWriter extends TrackpointsWriter {
+
+        GPXTrackpointsWriter(ExportWriter bw) {
+            super(bw, ExportCheckpoint.FORMAT_GPX);
+        }
+
+        @Override
+        void format(PointBlock block, int i) {
+            TrackpointFormatter.appendGPX(line, block.points, i, block.egmCorrection[i], altitudeManualCorrection, getPrefGPXVersion == GPX1_0);
+        }
+    }
+
+    /**
+     * Writes the Trackpoints into the TXT file.
+     */
+    private class TXTTrackpointsWriter extends TrackpointsWriter {
+
+        TXTTrackpointsWriter(ExportWriter bw) {
+            super(bw, ExportCheckpoint.FORMAT_TXT);
+        }
+
+        @Override
+        void format(PointBlock block, int i) {
+            String nameAndDescription = null;
+            if (txtFirstTrackpointFlag) {           // First trackpoint of the track: add the description
+                if (track.getDescription().isEmpty()) nameAndDescription = track.getName() + ",GPS Logger: " + track.getName();
+                else nameAndDescription = track.getName() + ",GPS Logger: " + track.getName() + " - " + track.getDescription().replace(",", "_");
+                txtFirstTrackpointFlag = false;
             }
+            TrackpointFormatter.appendTXT(line, block.points, i, block.egmCorrection[i], altitudeManualCorrection, nameAndDescription);
         }
     }
 }
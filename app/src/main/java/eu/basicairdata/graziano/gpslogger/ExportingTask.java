@@ -32,11 +32,12 @@ public class ExportingTask {
     static final short STATUS_RUNNING           = 1;    // Task is running...
     static final short STATUS_ENDED_SUCCESS     = 2;    // Task ended with success
     static final short STATUS_ENDED_FAILED      = 3;    // Task failed to export
+    static final short STATUS_CANCELLED         = 4;    // Task cancelled (it can be resumed from its checkpoint)
 
     private long    id                          = 0;
     private long    numberOfPoints_Total        = 0;
-    private long    numberOfPoints_Processed    = 0;
-    private short   status                      = STATUS_PENDING;
+    private volatile long numberOfPoints_Processed = 0;    // Updated by the Exporter threads
+    private volatile short status               = STATUS_PENDING;
     private String  name                        = "";
 
     public long getId() {
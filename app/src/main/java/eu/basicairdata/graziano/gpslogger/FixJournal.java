@@ -0,0 +1,276 @@
+/*
+ * FixJournal - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import android.location.Location;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
+
+/**
+ * The write-ahead journal of the recorded locations that are not yet stored into the DB.
+ * <br>
+ * It is a small memory-mapped file, made of a header followed by a ring of CAPACITY fixed-size records.
+ * Each location is appended by onLocationChanged with a few memory writes, without any system call,
+ * before being enqueued for the DB; the data survive to the kill of the app,
+ * because they are already into the page cache of the System.
+ * <br>
+ * Each record has a sequence number, and the header contains the sequence of the first record
+ * not yet stored into the DB. When some locations are stored into the DB, they are released
+ * by advancing that sequence, so the records appended meanwhile remain into the journal.
+ * At the next start, the locations still into the journal (if any) are imported into the DB.
+ * <br>
+ * The records don't contain the ID of the Track, that is assigned by the DB thread
+ * when it executes the TASK_NEWTRACK, maybe after some locations of the new Track are journaled.
+ * Each record contains instead the recording epoch: a counter of the producer, that starts from 0
+ * at each start of the app and is incremented when a TASK_NEWTRACK is enqueued.
+ * The header contains the last epoch whose Track is known, and the ID of that Track;
+ * the records of the following epochs belong to new Tracks not yet created.
+ * <br>
+ * A record is valid when its sequence (the commit mark) is not released and corresponds to its place
+ * into the ring. The sequence is written as the last field, so a record partially written is never valid.
+ * <br>
+ * The journal is written by the thread of onLocationChanged and released by the AsyncUpdateThreadClass,
+ * so all the methods are synchronized.
+ */
+class FixJournal {
+
+    static final int CAPACITY = 256;                    // The maximum number of locations into the journal
+
+    private static final int MAGIC = 0x474C4A33;        // "GLJ3"
+
+    // The header
+    private static final int HEADER_MAGIC           = 0;    // int
+    private static final int HEADER_RELEASED        = 8;    // long, the sequence of the first record not stored into the DB
+    private static final int HEADER_KNOWN_EPOCH     = 16;   // long, the last epoch whose Track is known
+    private static final int HEADER_KNOWN_TRACK_ID  = 24;   // long, the ID of the Track of HEADER_KNOWN_EPOCH
+    private static final int HEADER_SIZE            = 32;
+
+    // The offsets of the fields of a record
+    private static final int RECORD_EPOCH           = 0;    // long
+    private static final int RECORD_LATITUDE        = 8;    // double
+    private static final int RECORD_LONGITUDE       = 16;   // double
+    private static final int RECORD_ALTITUDE        = 24;   // double
+    private static final int RECORD_TIME            = 32;   // long
+    private static final int RECORD_SPEED           = 40;   // float
+    private static final int RECORD_ACCURACY        = 44;   // float
+    private static final int RECORD_BEARING         = 48;   // float
+    private static final int RECORD_NUMBEROFSATELLITES          = 52;   // int
+    private static final int RECORD_NUMBEROFSATELLITESUSEDINFIX = 56;   // int
+    private static final int RECORD_SEQUENCE        = 64;   // long, the commit mark
+    private static final int RECORD_SIZE            = 72;
+
+    private MappedByteBuffer buffer = null;
+    private long releasedSequence;                      // The sequence of the first record not stored into the DB
+    private long nextSequence;                          // The sequence of the next record to append
+
+    /**
+     * Opens (or creates) the journal.
+     * If the journal cannot be opened, all the methods work as on an empty journal,
+     * and the app works as without the journal.
+     *
+     * @param file the file of the journal
+     */
+    FixJournal(File file) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) CAPACITY * RECORD_SIZE);
+            } finally {
+                raf.close();                            // The mapping remains valid after closing the file
+            }
+        } catch (IOException e) {
+            Log.w("myApp", "[#] FixJournal.java - Unable to open the journal: " + e);
+            buffer = null;
+            return;
+        }
+        if (buffer.getInt(HEADER_MAGIC) != MAGIC) {
+            // New (or invalid) journal
+            for (int i = 0; i < CAPACITY; i++) buffer.putLong(getOffset(i) + RECORD_SEQUENCE, 0);
+            buffer.putLong(HEADER_RELEASED, 1);         // The sequence 0 is the one of the records never written
+            buffer.putLong(HEADER_KNOWN_EPOCH, 0);
+            buffer.putLong(HEADER_KNOWN_TRACK_ID, NOT_AVAILABLE);
+            buffer.putInt(HEADER_MAGIC, MAGIC);
+        }
+        releasedSequence = buffer.getLong(HEADER_RELEASED);
+        nextSequence = releasedSequence;
+        while ((nextSequence < releasedSequence + CAPACITY) && isValid(nextSequence)) nextSequence++;
+        //Log.w("myApp", "[#] FixJournal.java - Journal opened with " + size() + " locations");
+    }
+
+    private static int getOffset(long sequence) {
+        return HEADER_SIZE + (int) (sequence % CAPACITY) * RECORD_SIZE;
+    }
+
+    private boolean isValid(long sequence) {
+        return buffer.getLong(getOffset(sequence) + RECORD_SEQUENCE) == sequence;
+    }
+
+    /**
+     * @return true if the journal is working
+     */
+    synchronized boolean isAvailable() {
+        return buffer != null;
+    }
+
+    /**
+     * @return the number of locations into the journal
+     */
+    synchronized int size() {
+        return (int) (nextSequence - releasedSequence);
+    }
+
+    /**
+     * Appends a location to the journal.
+     *
+     * @param epoch the recording epoch of the location
+     * @param location the location
+     * @return the sequence of the record, or -1 if the location has not been written (journal full or not available)
+     */
+    synchronized long append(long epoch, LocationExtended location) {
+        if ((buffer == null) || (nextSequence - releasedSequence >= CAPACITY)) return -1;
+        final int offset = getOffset(nextSequence);
+        buffer.putLong(offset + RECORD_EPOCH, epoch);
+        buffer.putDouble(offset + RECORD_LATITUDE, location.getLatitude());
+        buffer.putDouble(offset + RECORD_LONGITUDE, location.getLongitude());
+        buffer.putDouble(offset + RECORD_ALTITUDE, location.getAltitude());
+        buffer.putLong(offset + RECORD_TIME, location.getTime());
+        buffer.putFloat(offset + RECORD_SPEED, location.getSpeed());
+        buffer.putFloat(offset + RECORD_ACCURACY, location.getAccuracy());
+        buffer.putFloat(offset + RECORD_BEARING, location.getBearing());
+        buffer.putInt(offset + RECORD_NUMBEROFSATELLITES, location.getNumberOfSatellites());
+        buffer.putInt(offset + RECORD_NUMBEROFSATELLITESUSEDINFIX, location.getNumberOfSatellitesUsedInFix());
+        buffer.putLong(offset + RECORD_SEQUENCE, nextSequence);     // Commit
+        return nextSequence++;
+    }
+
+    /**
+     * Releases the records stored into the DB.
+     * To be called when the locations have been stored into the DB.
+     *
+     * @param sequence the sequence of the first record not stored into the DB
+     */
+    synchronized void release(long sequence) {
+        if ((buffer == null) || (sequence <= releasedSequence)) return;
+        releasedSequence = Math.min(sequence, nextSequence);
+        buffer.putLong(HEADER_RELEASED, releasedSequence);
+    }
+
+    /**
+     * Starts a new session of the app: releases all the records of the journal
+     * (they must be already imported), and sets the Track of the epoch 0.
+     *
+     * @param trackID the ID of the current Track
+     */
+    synchronized void startSession(long trackID) {
+        if (buffer == null) return;
+        release(nextSequence);
+        buffer.putLong(HEADER_KNOWN_TRACK_ID, trackID);
+        buffer.putLong(HEADER_KNOWN_EPOCH, 0);
+    }
+
+    /**
+     * Sets the Track of an epoch, when the DB thread creates it.
+     *
+     * @param epoch the recording epoch
+     * @param trackID the ID of the Track of the epoch
+     */
+    synchronized void setKnownTrack(long epoch, long trackID) {
+        if ((buffer == null) || (epoch < buffer.getLong(HEADER_KNOWN_EPOCH))) return;
+        buffer.putLong(HEADER_KNOWN_TRACK_ID, trackID);
+        buffer.putLong(HEADER_KNOWN_EPOCH, epoch);
+    }
+
+    /**
+     * @return the last epoch whose Track is known
+     */
+    synchronized long getKnownEpoch() {
+        return (buffer == null) ? 0 : buffer.getLong(HEADER_KNOWN_EPOCH);
+    }
+
+    /**
+     * @return the ID of the Track of the known epoch, or NOT_AVAILABLE
+     */
+    synchronized long getKnownTrackID() {
+        return (buffer == null) ? NOT_AVAILABLE : buffer.getLong(HEADER_KNOWN_TRACK_ID);
+    }
+
+    /**
+     * @return the greatest epoch of the records into the journal, or -1 if the journal is empty
+     */
+    synchronized long getLastEpoch() {
+        long lastEpoch = -1;
+        for (long sequence = releasedSequence; sequence < nextSequence; sequence++) {
+            lastEpoch = Math.max(lastEpoch, buffer.getLong(getOffset(sequence) + RECORD_EPOCH));
+        }
+        return lastEpoch;
+    }
+
+    /**
+     * Reads the locations of an epoch stored into the journal that are newer than the specified time,
+     * in order of sequence.
+     *
+     * @param epoch the recording epoch
+     * @param afterTime the time of the last location of the Track of the epoch stored into the DB
+     * @return the list of the locations found
+     */
+    synchronized List<LocationExtended> getLocations(long epoch, long afterTime) {
+        List<LocationExtended> locations = new ArrayList<>();
+        for (long sequence = releasedSequence; sequence < nextSequence; sequence++) {
+            final int offset = getOffset(sequence);
+            if ((buffer.getLong(offset + RECORD_EPOCH) != epoch) || (buffer.getLong(offset + RECORD_TIME) <= afterTime)) continue;
+
+            Location lc = new Location("Journal");
+            lc.setLatitude(buffer.getDouble(offset + RECORD_LATITUDE));
+            lc.setLongitude(buffer.getDouble(offset + RECORD_LONGITUDE));
+
+            double lcdata_double = buffer.getDouble(offset + RECORD_ALTITUDE);
+            if (lcdata_double != NOT_AVAILABLE) lc.setAltitude(lcdata_double);
+
+            float lcdata_float = buffer.getFloat(offset + RECORD_SPEED);
+            if (lcdata_float != NOT_AVAILABLE) lc.setSpeed(lcdata_float);
+
+            lcdata_float = buffer.getFloat(offset + RECORD_ACCURACY);
+            if (lcdata_float != NOT_AVAILABLE) lc.setAccuracy(lcdata_float);
+
+            lcdata_float = buffer.getFloat(offset + RECORD_BEARING);
+            if (lcdata_float != NOT_AVAILABLE) lc.setBearing(lcdata_float);
+
+            lc.setTime(buffer.getLong(offset + RECORD_TIME));
+
+            LocationExtended extdloc = new LocationExtended(lc);
+            extdloc.setNumberOfSatellites(buffer.getInt(offset + RECORD_NUMBEROFSATELLITES));
+            extdloc.setNumberOfSatellitesUsedInFix(buffer.getInt(offset + RECORD_NUMBEROFSATELLITESUSEDINFIX));
+            locations.add(extdloc);
+            afterTime = extdloc.getTime();
+        }
+        return locations;
+    }
+}
@@ -27,6 +27,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ProgressBar;
+import android.widget.TextView;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
@@ -35,10 +36,12 @@ import org.greenrobot.eventbus.ThreadMode;
 /**
  * The Fragment that displays the bar that shows the progress of a ExportingTask
  * on the third tab (Tracklist) of the main Activity (GPSActivity).
+ * During an exportation it shows also the control to cancel it.
  */
 public class FragmentJobProgress extends Fragment {
 
     ProgressBar progressBar;
+    TextView cancelTextView;
 
     public FragmentJobProgress() {
         // Required empty public constructor
@@ -51,6 +54,13 @@ public class FragmentJobProgress extends Fragment {
         View view = inflater.inflate(R.layout.fragment_job_progress, container, false);
         progressBar = view.findViewById(R.id.id_jobProgressBar);
         progressBar.setProgress(GPSApplication.getInstance().getJobProgress());
+        cancelTextView = view.findViewById(R.id.id_jobCancel);
+        cancelTextView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                GPSApplication.getInstance().cancelJob();
+            }
+        });
         return view;
     }
 
@@ -86,11 +96,14 @@ public class FragmentJobProgress extends Fragment {
     }
 
     /**
-     * Updates the status of the Progressbar.
+     * Updates the status of the Progressbar, and shows the Cancel control
+     * while an exportation is in progress.
      */
     public void Update() {
         if (isAdded()) {
-            progressBar.setProgress((GPSApplication.getInstance().getJobProgress() == 1000) || (GPSApplication.getInstance().getJobsPending() == 0 ) ? 0 : GPSApplication.getInstance().getJobProgress());
+            final GPSApplication gpsApp = GPSApplication.getInstance();
+            progressBar.setProgress((gpsApp.getJobProgress() == 1000) || (gpsApp.getJobsPending() == 0 ) ? 0 : gpsApp.getJobProgress());
+            cancelTextView.setVisibility(((gpsApp.getJobsPending() > 0) && (gpsApp.getJobType() != GPSApplication.JOB_TYPE_DELETE)) ? View.VISIBLE : View.GONE);
         }
     }
 }
@@ -51,7 +51,6 @@ import org.greenrobot.eventbus.Subscribe;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
@@ -65,7 +64,6 @@ public class FragmentTracklist extends Fragment {
     RecyclerView recyclerView;
     RecyclerView.LayoutManager layoutManager;
     private TrackAdapter adapter;
-    private final List<Track> data = Collections.synchronizedList(new ArrayList<Track>());
     private View view;
     private TextView tvTracklistEmpty;
 
@@ -87,7 +85,7 @@ public class FragmentTracklist extends Fragment {
         recyclerView.setLayoutManager(layoutManager);
         recyclerView.setItemAnimator(new DefaultItemAnimator());
         recyclerView.getItemAnimator().setChangeDuration(0);
-        adapter = new TrackAdapter(data);
+        adapter = new TrackAdapter(GPSApplication.getInstance().getTrackList());
         switch (getResources().getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK) {
             case Configuration.UI_MODE_NIGHT_NO:
                 // Night mode is not active, we're in day time
@@ -130,40 +128,12 @@ public class FragmentTracklist extends Fragment {
      */
     @Subscribe
     public void onEvent(final EventBusMSGNormal msg) {
-        int i = 0;
-        boolean found = false;
         switch (msg.eventBusMSG) {
-            case EventBusMSG.TRACKLIST_SELECT:
-            case EventBusMSG.TRACKLIST_DESELECT:
-                synchronized (data) {
-                    do {
-                        if (data.get(i).getId() == msg.trackID) {
-                            found = true;
-                            data.get(i).setSelected(msg.eventBusMSG == EventBusMSG.TRACKLIST_SELECT);
-                        }
-                        i++;
-                    } while ((i < data.size()) && !found);
-                }
-                break;
             case EventBusMSG.TRACKLIST_RANGE_SELECTION:
+                // The selection is stored by id into the PagedTrackList, so the Tracks of the range are not loaded
                 if (GPSApplication.getInstance().getLastClickId() != NOT_AVAILABLE) {
-                    synchronized (data) {
-                        do {
-                            if (data.get(i).getId() == GPSApplication.getInstance().getLastClickId()) {
-                                data.get(i).setSelected(GPSApplication.getInstance().getLastClickState());
-                                found = !found;
-                            }
-                            if (data.get(i).getId() == msg.trackID) {
-                                data.get(i).setSelected(GPSApplication.getInstance().getLastClickState());
-                                found = !found;
-                            }
-                            if (found) {
-                                // into the range
-                                data.get(i).setSelected(GPSApplication.getInstance().getLastClickState());
-                            }
-                            i++;
-                        } while (i < data.size());
-                    }
+                    GPSApplication.getInstance().getTrackList().setSelected(GPSApplication.getInstance().getLastClickId(),
+                            msg.trackID, GPSApplication.getInstance().getLastClickState());
                     EventBus.getDefault().post(EventBusMSG.UPDATE_TRACKLIST);
                 }
         }
@@ -175,22 +145,23 @@ public class FragmentTracklist extends Fragment {
     @Subscribe
     public void onEvent(Short msg) {
         if (msg == EventBusMSG.UPDATE_TRACK) {
-            if (!data.isEmpty() && GPSApplication.getInstance().isCurrentTrackVisible()) {
+            if (GPSApplication.getInstance().isCurrentTrackVisible()) {
                 final Track trk = GPSApplication.getInstance().getCurrentTrack();
-                synchronized (data) {
-                    if (data.get(0).getId() == trk.getId()) {
-                        //data.set(0, trk);
-                        getActivity().runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                // Update Current Track Card Statistics
+                try {
+                    getActivity().runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Update Current Track Card Statistics
+                            if ((adapter.getItemCount() > 0) && (adapter.getTrackID(0) == trk.getId())) {
                                 RecyclerView.ViewHolder holder = recyclerView.findViewHolderForAdapterPosition(0);
                                 if (holder != null) {
-                                    ((TrackAdapter.TrackHolder) holder).UpdateTrackStats(data.get(0));
+                                    ((TrackAdapter.TrackHolder) holder).UpdateTrackStats(trk);
                                 }
                             }
-                        });
-                    }
+                        }
+                    });
+                } catch (NullPointerException e) {
+                    //Log.w("myApp", "[#] FragmentTracklist.java - Unable to manage UI");
                 }
             }
             return;
@@ -209,7 +180,7 @@ public class FragmentTracklist extends Fragment {
             return;
         }
         if (msg == EventBusMSG.NOTIFY_TRACKS_DELETED) {
-            deleteSomeTracks();
+            update();
             return;
         }
         if (msg == EventBusMSG.UPDATE_TRACKLIST) {
@@ -217,23 +188,24 @@ public class FragmentTracklist extends Fragment {
             return;
         }
         if (msg == EventBusMSG.ACTION_BULK_SHARE_TRACKS) {
-            GPSApplication.getInstance().loadJob(GPSApplication.JOB_TYPE_SHARE);
-            GPSApplication.getInstance().executeJob();
+            GPSApplication.getInstance().startJob(GPSApplication.JOB_TYPE_SHARE);
             GPSApplication.getInstance().deselectAllTracks();
             return;
         }
         if (msg == EventBusMSG.ACTION_EDIT_TRACK) {
-            for (Track T : GPSApplication.getInstance().getTrackList()) {
-                if (T.isSelected()) {
-                    GPSApplication.getInstance().setTrackToEdit(T);
-                    FragmentManager fm = getActivity().getSupportFragmentManager();
-                    FragmentTrackPropertiesDialog tpDialog = new FragmentTrackPropertiesDialog();
-                    tpDialog.setTitleResource(R.string.card_menu_edit);
-                    tpDialog.setFinalizeTrackWithOk(false);
-                    tpDialog.show(fm, "");
-                    break;
+            GPSApplication.getInstance().getSelectedTracks(new PagedTrackList.TracksListener() {
+                @Override
+                public void onTracksLoaded(List<Track> selectedTracks) {
+                    if (!selectedTracks.isEmpty() && isAdded()) {
+                        GPSApplication.getInstance().setTrackToEdit(selectedTracks.get(0));
+                        FragmentManager fm = getActivity().getSupportFragmentManager();
+                        FragmentTrackPropertiesDialog tpDialog = new FragmentTrackPropertiesDialog();
+                        tpDialog.setTitleResource(R.string.card_menu_edit);
+                        tpDialog.setFinalizeTrackWithOk(false);
+                        tpDialog.show(fm, "");
+                    }
                 }
-            }
+            });
         }
         if (msg == EventBusMSG.ACTION_BULK_VIEW_TRACKS) {
             final ArrayList<ExternalViewer> evList = new ArrayList<>(GPSApplication.getInstance().getExternalViewerChecker().getExternalViewersList());
@@ -292,8 +264,7 @@ public class FragmentTracklist extends Fragment {
             builder.setPositiveButton(R.string.yes, new DialogInterface.OnClickListener() {
                 public void onClick(DialogInterface dialog, int id) {
                     dialog.dismiss();
-                    GPSApplication.getInstance().loadJob(GPSApplication.JOB_TYPE_DELETE);
-                    GPSApplication.getInstance().executeJob();
+                    GPSApplication.getInstance().startJob(GPSApplication.JOB_TYPE_DELETE);
                 }
             });
             builder.setNegativeButton(R.string.no, new DialogInterface.OnClickListener() {
@@ -420,73 +391,36 @@ public class FragmentTracklist extends Fragment {
      * Opens a Track with an external viewer using the GPSApplication Job executor.
      */
     public void openTrack() {
-        GPSApplication.getInstance().loadJob(GPSApplication.JOB_TYPE_VIEW);
-        GPSApplication.getInstance().executeJob();
+        GPSApplication.getInstance().startJob(GPSApplication.JOB_TYPE_VIEW);
         GPSApplication.getInstance().deselectAllTracks();
     }
 
     /**
      * Updates the user interface of the fragment.
+     * The cards of the Tracks added and deleted are inserted and removed with an animation.
      */
     public void update() {
         if (isAdded()) {
             Log.w("myApp", "[#] FragmentTracklist.java - Updating Tracklist");
-            final List<Track> TI = GPSApplication.getInstance().getTrackList();
-            //Log.w("myApp", "[#] FragmentTracklist.java - The element 0 has id = " + TI.get(0).getId());
-            synchronized(data) {
-                if (data != null) data.clear();
-                if (!TI.isEmpty()) {
-                    data.addAll(TI);
-                    if (data.get(0).getId() == GPSApplication.getInstance().getCurrentTrack().getId()) {
-                        GPSApplication.getInstance().setCurrentTrackVisible(true);
-                        //Log.w("myApp", "[#] FragmentTracklist.java - current track, VISIBLE into the tracklist ("
-                        //    + GPSApplication.getInstance().getCurrentTrack().getId() + ")");
-                    } else {
-                        GPSApplication.getInstance().setCurrentTrackVisible(false);
-                        //Log.w("myApp", "[#] FragmentTracklist.java - current track empty, NOT VISIBLE into the tracklist");
-                    }
-                } else {
-                    GPSApplication.getInstance().setCurrentTrackVisible(false);
-                }
-                try {
-                    getActivity().runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            tvTracklistEmpty.setVisibility(data.isEmpty() ? View.VISIBLE : View.GONE);
-                            adapter.notifyDataSetChanged();
-                        }
-                    });
-                } catch (NullPointerException e) {
-                    //Log.w("myApp", "[#] FragmentTracklist.java - Unable to manage UI");
-                }
-            }
-        }
-    }
-
-    /**
-     * Deletes some tracks from the CardView Adapter via notification,
-     * in order to show a graceful animation of the deletion.
-     */
-    public void deleteSomeTracks() {
-        try {
-            getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    List<Track> TI = GPSApplication.getInstance().getTrackList();
-                    synchronized (data) {
-                        for (int i = data.size() - 1; i >= 0; i--) {
-                            if (!TI.contains(data.get(i))) {
-                                data.remove(i);
-                                adapter.notifyItemRemoved(i);
-                            }
+            try {
+                getActivity().runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        adapter.update();
+                        if ((adapter.getItemCount() > 0) && (adapter.getTrackID(0) == GPSApplication.getInstance().getCurrentTrack().getId())) {
+                            GPSApplication.getInstance().setCurrentTrackVisible(true);
+                            //Log.w("myApp", "[#] FragmentTracklist.java - current track, VISIBLE into the tracklist ("
+                            //    + GPSApplication.getInstance().getCurrentTrack().getId() + ")");
+                        } else {
+                            GPSApplication.getInstance().setCurrentTrackVisible(false);
+                            //Log.w("myApp", "[#] FragmentTracklist.java - current track empty, NOT VISIBLE into the tracklist");
                         }
-                        tvTracklistEmpty.setVisibility(data.isEmpty() ? View.VISIBLE : View.GONE);
+                        tvTracklistEmpty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
                     }
-                }
-            });
-        } catch (NullPointerException e) {
-            //Log.w("myApp", "[#] FragmentTracklist.java - Unable to manage UI");
-            update();
+                });
+            } catch (NullPointerException e) {
+                //Log.w("myApp", "[#] FragmentTracklist.java - Unable to manage UI");
+            }
         }
     }
 }
@@ -377,6 +377,16 @@ public class GPSActivity extends AppCompatActivity {
                     }
                 });
                 break;
+            case EventBusMSG.TOAST_EXPORT_CANCELLED:
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast toast = Toast.makeText(gpsApp.getApplicationContext(), R.string.export_cancelled, Toast.LENGTH_SHORT);
+                        toast.setGravity(Gravity.BOTTOM, 0, TOAST_VERTICAL_OFFSET);
+                        toast.show();
+                    }
+                });
+                break;
 
             case EventBusMSG.ACTION_BULK_EXPORT_TRACKS:
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -384,15 +394,13 @@ public class GPSActivity extends AppCompatActivity {
                     if (!gpsApp.isExportFolderWritable()) {
                         openDirectory();
                     } else {
-                        gpsApp.loadJob(GPSApplication.JOB_TYPE_EXPORT);
-                        gpsApp.executeJob();
+                        gpsApp.startJob(GPSApplication.JOB_TYPE_EXPORT);
                         gpsApp.deselectAllTracks();
                     }
                 } else {
                     // Android 4
                     if (gpsApp.isExportFolderWritable()) {
-                        gpsApp.loadJob(GPSApplication.JOB_TYPE_EXPORT);
-                        gpsApp.executeJob();
+                        gpsApp.startJob(GPSApplication.JOB_TYPE_EXPORT);
                         gpsApp.deselectAllTracks();
                     } else {
                         EventBus.getDefault().post(EventBusMSG.TOAST_UNABLE_TO_WRITE_THE_FILE);
@@ -603,8 +611,7 @@ public class GPSActivity extends AppCompatActivity {
                 Log.w("myApp", "[#] GPSActivity.java - onActivityResult URI: " + treeUri.getEncodedPath());
 
                 gpsApp.setPrefExportFolder(treeUri.toString());
-                gpsApp.loadJob(GPSApplication.JOB_TYPE_EXPORT);
-                gpsApp.executeJob();
+                gpsApp.startJob(GPSApplication.JOB_TYPE_EXPORT);
                 gpsApp.deselectAllTracks();
 
                 // Perform operations on the document using its URI.
@@ -39,10 +39,7 @@ import android.content.UriPermission;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.ColorMatrixColorFilter;
-import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.drawable.AdaptiveIconDrawable;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
@@ -58,6 +55,7 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
@@ -74,14 +72,21 @@ import org.greenrobot.eventbus.Subscribe;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.StringTokenizer;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GPSApplication extends Application implements LocationListener {
 
@@ -92,8 +97,16 @@ public class GPSApplication extends Application implements LocationListener {
     private static final int DEFAULT_SWITCHOFF_HANDLER_TIME = 5000; // Default time for turning off GPS on exit
     private static final int GPS_UNAVAILABLE_HANDLER_TIME = 7000;   // The "GPS temporary unavailable" time
 
-    private static final int MAX_ACTIVE_EXPORTER_THREADS = 3;       // The maximum number of Exporter threads to run simultaneously
-    private static final int EXPORTING_STATUS_CHECK_INTERVAL = 16;  // The app updates the progress of exportation every 16 milliseconds
+    private static final int EXPORTING_STATUS_UPDATE_DELAY = 16;    // The app updates the progress of exportation at most every 16 milliseconds
+    private static final int GROUP_COMMIT_MAX_LOCATIONS = 100;      // The maximum number of journaled locations stored into DB with a single transaction
+    private static final int GROUP_COMMIT_MAX_DELAY = 30000;        // The maximum time (ms) a journaled location waits before being stored into DB
+    private static final int UNJOURNALED_GROUP_COMMIT_MAX_LOCATIONS = 20;   // The max locations of a transaction, when some are not journaled
+    private static final int UNJOURNALED_GROUP_COMMIT_MAX_DELAY = 5000;     // The max time (ms) a location that is not journaled waits before being stored into DB
+    private static final int TRACK_SUMMARY_MAX_LOCATIONS = 100;     // The maximum number of locations stored into DB without updating the Track summary
+    private static final int TRACK_SUMMARY_MAX_DELAY = 30000;       // The maximum time (ms) the Track summary stays not updated into DB
+    private static final int ASYNCTODO_POOL_SIZE = 32;              // The maximum number of executed AsyncTODOs kept for reuse
+    private static final int ASYNCTODO_QUEUE_CAPACITY = 256;        // The number of DB operations kept into the ring buffer of the queue (the others are spilled into its overflow list)
+    private static final String FIX_JOURNAL_FILENAME = "FixJournal.bin";    // The file of the write-ahead journal of the recorded locations
 
     public static final int GPS_DISABLED                = 0;
     public static final int GPS_OUTOFSERVICE            = 1;
@@ -108,12 +121,12 @@ public class GPSApplication extends Application implements LocationListener {
     public static final int JOB_TYPE_SHARE      = 3;                // Bulk Share
     public static final int JOB_TYPE_DELETE     = 4;                // Bulk Delete
 
-    private static final String TASK_SHUTDOWN       = "TASK_SHUTDOWN";      // The AsyncTodo Type to Shut down the DB connection
-    private static final String TASK_NEWTRACK       = "TASK_NEWTRACK";      // The AsyncTodo Type to create a new track into DB
-    private static final String TASK_ADDLOCATION    = "TASK_ADDLOCATION";   // The AsyncTodo Type to create a new track into DB
-    private static final String TASK_ADDPLACEMARK   = "TASK_ADDPLACEMARK";  // The AsyncTodo Type to create a new placemark into DB
-    private static final String TASK_UPDATEFIX      = "TASK_UPDATEFIX";     // The AsyncTodo Type to update the current FIX
-    private static final String TASK_DELETETRACKS   = "TASK_DELETETRACKS";  // The AsyncTodo Type to delete some tracks
+    static final int TASK_SHUTDOWN          = 0;                    // The AsyncTodo Type to Shut down the DB connection
+    static final int TASK_NEWTRACK          = 1;                    // The AsyncTodo Type to create a new track into DB
+    static final int TASK_ADDLOCATION       = 2;                    // The AsyncTodo Type to add a new location to the current track into DB
+    static final int TASK_ADDPLACEMARK      = 3;                    // The AsyncTodo Type to create a new placemark into DB
+    static final int TASK_UPDATEFIX         = 4;                    // The AsyncTodo Type to update the current FIX
+    static final int TASK_DELETETRACKS      = 5;                    // The AsyncTodo Type to delete some tracks
 
     public static final String FLAG_RECORDING       = "flagRecording";      // The persistent Flag is set when the app is recording, in order to detect Background Crashes
     public static final String FILETYPE_KML         = ".kml";
@@ -133,6 +146,7 @@ public class GPSApplication extends Application implements LocationListener {
 
     public static String DIRECTORY_TEMP;                         // The directory to store temporary tracks. Currently /GPSLogger/AppData
     public static String DIRECTORY_FILESDIR_TRACKS;              // The directory FilesDir/Tracks
+    public static String DIRECTORY_FILESDIR_CHECKPOINTS;         // The directory FilesDir/Checkpoints, with the checkpoints of the exportations
     public static String FILE_EMPTY_GPX;
     public static String FILE_EMPTY_KML;
 
@@ -213,8 +227,7 @@ public class GPSApplication extends Application implements LocationListener {
     private Track currentTrack = null;                           // The current track. Used for adding Trackpoints and Annotations
     private Track trackToEdit = null;                            // The Track that the user selected to edit with the "Track Properties" Dialog
 
-    private final List<Track> arrayListTracks
-            = Collections.synchronizedList(new ArrayList<Track>());             // The list of Tracks
+    private PagedTrackList trackList;                            // The list of Tracks shown on the Tracklist
 
     private final List<ExportingTask> exportingTaskList
             = new ArrayList<>();                                 // The list of Exporting Tasks
@@ -223,8 +236,46 @@ public class GPSApplication extends Application implements LocationListener {
     private ExternalViewerChecker externalViewerChecker;                        // The manager of the External Viewers
     BroadcastReceiver broadcastReceiver = new ActionsBroadcastReceiver();       // The BroadcastReceiver for SHUTDOWN and SCREEN_ON/OFF events
 
-    Thumbnailer thumbnailer;                                     // It creates the Thumbnails of the Tracks asynchronously
-    Exporter exporter;                                           // It exports the Tracks
+    // The Thumbnails of the Tracks are created asynchronously by a small pool of threads,
+    // in order of priority (see Thumbnailer.PRIORITY_*).
+    // The Thumbnailers queued or running are into thumbnailsPending, so a Thumbnail is never
+    // created twice at the same time.
+    // The missing Thumbnails of the old Tracks are regenerated in background (see startThumbnailsBackfill):
+    // their ids are into thumbnailsBackfill, and they are queued one at a time with the lowest priority,
+    // so they never take more than one thread.
+    private static final int THUMBNAIL_THREADS = 2;              // The maximum number of Thumbnails created simultaneously
+    private static final int BACKFILL_RECORDING_DELAY = 2000;    // While recording, the backfill creates a Thumbnail every 2 seconds at most
+    private static final int BACKFILL_REFRESH_INTERVAL = 1000;   // The backfill refreshes the tracklist at most every second
+    private final ThreadPoolExecutor thumbnailExecutor = new ThreadPoolExecutor(THUMBNAIL_THREADS, THUMBNAIL_THREADS,
+            30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Thumbnailer");
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+    private final Map<Long, Thumbnailer> thumbnailsPending = new HashMap<>();     // By Track id. All the thumbnail fields are guarded by it
+    private final ArrayDeque<Long> thumbnailsBackfill = new ArrayDeque<>();       // The ids of the Tracks to backfill, the newest first
+    private final Set<Long> thumbnailsUnavailable = new HashSet<>();              // The ids of the Tracks that cannot be drawn
+    private boolean isBackfillRunning = false;
+    private long backfillRefreshTime = 0;
+    private final AtomicLong thumbnailSequenceNumber = new AtomicLong(0);
+    // The live Thumbnail of the current Track, drawn from its ThumbnailPolyline while recording
+    private static final int LIVE_THUMBNAIL_INTERVAL = 5000;     // The live Thumbnail is updated at most every 5 seconds
+    private final AtomicBoolean liveThumbnailPending = new AtomicBoolean(false);
+    private final Object liveThumbnailLock = new Object();
+    private Bitmap liveThumbnail = null;                         // Guarded by liveThumbnailLock
+    private long liveThumbnailTrackID = -1;                      // Guarded by liveThumbnailLock
+    private final ExportScheduler exportScheduler                // It runs the Exporters of the Tracks
+            = new ExportScheduler(new Runnable() {
+                @Override
+                public void run() {
+                    onExportingStatusChanged();
+                }
+            });
+    private ExportCache exportCache;                             // The cache of the Tracks exported to be viewed or shared
+    private ThumbnailStore thumbnailStore;                       // The Thumbnails of the Tracks
     private final AsyncUpdateThreadClass asyncUpdateThread = new AsyncUpdateThreadClass();
 
     // ---------------------------------------------------------------------- Singleton instance
@@ -280,11 +331,20 @@ public class GPSApplication extends Application implements LocationListener {
         }
     };
 
-    // The Handler that checks the progress of an exportation
-    private final Handler exportingStatusCheckHandler = new Handler();
-    private final Runnable exportingStatusCheckRunnable = new Runnable() {
+    // The Handler that delivers on the main thread the selected Tracks, read by the loader of the Tracklist
+    private final Handler selectedTracksHandler = new Handler();
+
+    // The Handler that updates the status of an exportation.
+    // The update is requested by the Exporters (see onExportingStatusChanged) when their progress
+    // changes and when they end, and it is executed on the main thread.
+    private final Handler exportingStatusUpdateHandler = new Handler();
+    private final AtomicBoolean exportingStatusUpdatePending = new AtomicBoolean(false);
+    private final Runnable exportingStatusUpdateRunnable = new Runnable() {
         @Override
         public void run() {
+            exportingStatusUpdatePending.set(false);
+            if (jobsPending == 0) return;               // No job in progress
+
             long total = 0;
             long progress = 0;
             int exportersTotal = exportingTaskList.size();      // The total amount of exportation into the current job
@@ -316,7 +376,7 @@ public class GPSApplication extends Application implements LocationListener {
                 }
             }
 
-            //Log.w("myApp", "[#] GPSApplication.java - ExportingStatusChecker running: " + 100*progress/total + "% - P "
+            //Log.w("myApp", "[#] GPSApplication.java - ExportingStatusUpdate: " + 100*progress/total + "% - P "
             //        + exportersPending + " - R " + exportersRunning + " - S " + exportersSuccess + " - F " + exportersFailed);
 
             // Exportation Failed
@@ -327,6 +387,7 @@ public class GPSApplication extends Application implements LocationListener {
                                     + ". Preference reset");
                     GPSApplication.getInstance().setPrefExportFolder("");
                 }
+                exportScheduler.clearPending();
                 jobProgress = 0;
                 jobsPending = 0;
                 EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);
@@ -345,22 +406,7 @@ public class GPSApplication extends Application implements LocationListener {
                 jobProgress = 0;
                 jobsPending = 0;
                 EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);
-                return;
             }
-
-            // If needed, run another Exportation Thread
-            if ((exportersRunning < MAX_ACTIVE_EXPORTER_THREADS) && (exportersPending > 0)) {
-                for (ExportingTask et : exportingTaskList) {
-                    if (et.getStatus() == ExportingTask.STATUS_PENDING) {
-                        //Log.w("myApp", "[#] GPSApplication.java - Run the export thread nr." + exportersRunning + ": " + et.getId());
-                        et.setStatus(ExportingTask.STATUS_RUNNING);
-                        executeExportingTask(et);
-                        break;
-                    }
-                }
-            }
-
-            exportingStatusCheckHandler.postDelayed(exportingStatusCheckRunnable, EXPORTING_STATUS_CHECK_INTERVAL);
         }
     };
 
@@ -611,6 +657,20 @@ public class GPSApplication extends Application implements LocationListener {
         return currentLocationExtended;
     }
 
+    /**
+     * @return the number of DB operations waiting to be executed
+     */
+    public int getAsyncTODOQueueDepth() {
+        return asyncTODOQueue.getDepth();
+    }
+
+    /**
+     * @return the time (ms) that the last DB operation waited into the queue before being executed
+     */
+    public long getAsyncTODOQueueLatency() {
+        return asyncTODOQueue.getLastLatency();
+    }
+
     public void setPlacemarkDescription(String Description) {
         this.placemarkDescription = Description;
     }
@@ -651,8 +711,8 @@ public class GPSApplication extends Application implements LocationListener {
         isBottomBarLocked = locked;
     }
 
-    public List<Track> getTrackList() {
-        return arrayListTracks;
+    public PagedTrackList getTrackList() {
+        return trackList;
     }
 
     public boolean isCurrentTrackVisible() {
@@ -675,6 +735,10 @@ public class GPSApplication extends Application implements LocationListener {
         return jobsPending;
     }
 
+    public int getJobType() {
+        return jobType;
+    }
+
     public int getGPSActivityActiveTab() {
         return gpsActivityActiveTab;
     }
@@ -728,8 +792,8 @@ public class GPSApplication extends Application implements LocationListener {
     /**
      * Creates the private application folders. No permission are needed to create them.
      * - DIRECTORY_TEMP = Where the app saves the tracks to be shared or viewed
-     * - getApplicationContext().getFilesDir() + "/Thumbnails" = The private folder that contains the thumbnails of the tracks
      * - DIRECTORY_FILESDIR_TRACKS = The folder that contains the empty kml and gpx
+     * - DIRECTORY_FILESDIR_CHECKPOINTS = The folder that contains the checkpoints of the exportations
      */
     public void createPrivateFolders() {
         File sd = new File(DIRECTORY_TEMP);
@@ -738,19 +802,173 @@ public class GPSApplication extends Application implements LocationListener {
             else Log.w("myApp", "[#] GPSApplication.java - Unable to create the folder: " + sd.getAbsolutePath());
         } else Log.w("myApp", "[#] GPSApplication.java - Folder exists: " + sd.getAbsolutePath());
 
-        sd = new File(getApplicationContext().getFilesDir() + "/Thumbnails");
+        sd = new File(DIRECTORY_FILESDIR_TRACKS);
         if (!sd.exists()) {
             if (sd.mkdir()) Log.w("myApp", "[#] GPSApplication.java - Folder created: " + sd.getAbsolutePath());
             else Log.w("myApp", "[#] GPSApplication.java - Unable to create the folder: " + sd.getAbsolutePath());
         } else Log.w("myApp", "[#] GPSApplication.java - Folder exists: " + sd.getAbsolutePath());
 
-        sd = new File(DIRECTORY_FILESDIR_TRACKS);
+        sd = new File(DIRECTORY_FILESDIR_CHECKPOINTS);
         if (!sd.exists()) {
             if (sd.mkdir()) Log.w("myApp", "[#] GPSApplication.java - Folder created: " + sd.getAbsolutePath());
             else Log.w("myApp", "[#] GPSApplication.java - Unable to create the folder: " + sd.getAbsolutePath());
         } else Log.w("myApp", "[#] GPSApplication.java - Folder exists: " + sd.getAbsolutePath());
     }
 
+    /**
+     * Queues the creation of the Thumbnail of the Track with the given id,
+     * if it is not already into the ThumbnailStore (the Thumbnailer checks it, off the calling thread).
+     * If the Thumbnail is already queued with a lower priority, its priority is raised;
+     * otherwise the request is ignored.
+     *
+     * @param id The id of the Track
+     * @param priority The priority (Thumbnailer.PRIORITY_HIGH, PRIORITY_VISIBLE, PRIORITY_BACKFILL)
+     */
+    public void createThumbnail(long id, int priority) {
+        synchronized (thumbnailsPending) {
+            Thumbnailer queuedThumbnailer = thumbnailsPending.get(id);
+            if ((queuedThumbnailer != null)
+                    && ((queuedThumbnailer.priority <= priority) || !thumbnailExecutor.remove(queuedThumbnailer))) return;    // Already queued, or running
+            Thumbnailer thumbnailer = new Thumbnailer(id, priority);
+            if (queuedThumbnailer != null) thumbnailer.continuesBackfill = queuedThumbnailer.continuesBackfill;
+            thumbnailsPending.put(id, thumbnailer);
+            thumbnailExecutor.execute(thumbnailer);
+        }
+    }
+
+    /**
+     * Queues the creation of the Thumbnail of a Track shown on the tracklist,
+     * whose Thumbnail is missing. The request has priority on the backfill.
+     *
+     * @param track The Track
+     */
+    public void requestThumbnail(Track track) {
+        if ((track.getNumberOfLocations() <= 2) || (track.getDistance() < 15) || (track.getValidMap() == 0)) return;
+        synchronized (thumbnailsPending) {
+            if (thumbnailsUnavailable.contains(track.getId())) return;
+        }
+        createThumbnail(track.getId(), Thumbnailer.PRIORITY_VISIBLE);
+    }
+
+    /**
+     * Queues the creation of the Thumbnail of a finished Track, drawing it from its polyline.
+     *
+     * @param track The Track
+     * @param polyline The complete polyline of the Track
+     */
+    private void createThumbnail(Track track, ThumbnailPolyline polyline) {
+        synchronized (thumbnailsPending) {
+            if (thumbnailsPending.containsKey(track.getId())) return;
+            Thumbnailer thumbnailer = new Thumbnailer(track, polyline, false);
+            thumbnailsPending.put(track.getId(), thumbnailer);
+            thumbnailExecutor.execute(thumbnailer);
+        }
+    }
+
+    /**
+     * Starts the regeneration of the missing Thumbnails of all the Tracks of the tracklist
+     * (for example after a restore of the DB). The Thumbnails are created one at a time,
+     * from the newest Track, with the lowest priority.
+     */
+    private void startThumbnailsBackfill() {
+        List<Long> missingThumbnails = new ArrayList<>();
+        for (Long id : gpsDataBase.getTrackIDsList(0, currentTrack.getId() - 1, true)) {     // The newest first
+            if (!thumbnailStore.contains(id)) missingThumbnails.add(id);
+        }
+        synchronized (thumbnailsPending) {
+            thumbnailsBackfill.addAll(missingThumbnails);
+            Log.w("myApp", "[#] GPSApplication.java - Thumbnails to backfill: " + thumbnailsBackfill.size());
+            if (!isBackfillRunning) scheduleNextBackfill();
+        }
+    }
+
+    /**
+     * Queues the next Thumbnail of the backfill.
+     * It is called when the backfill starts, and when a Thumbnailer of the backfill ends.
+     */
+    private void scheduleNextBackfill() {
+        synchronized (thumbnailsPending) {
+            Long id;
+            while ((id = thumbnailsBackfill.poll()) != null) {
+                if (thumbnailsPending.containsKey(id)) continue;        // Already queued by the tracklist
+                Thumbnailer thumbnailer = new Thumbnailer(id, Thumbnailer.PRIORITY_BACKFILL);
+                thumbnailer.continuesBackfill = true;
+                thumbnailsPending.put(id, thumbnailer);
+                thumbnailExecutor.execute(thumbnailer);
+                isBackfillRunning = true;
+                return;
+            }
+            if (isBackfillRunning) {
+                isBackfillRunning = false;
+                Log.w("myApp", "[#] GPSApplication.java - Thumbnails backfill completed");
+                EventBus.getDefault().post(EventBusMSG.REFRESH_TRACKLIST);
+            }
+        }
+    }
+
+    /**
+     * Queues the update of the live Thumbnail of the Track being recorded.
+     * The request is ignored if an update is already queued.
+     *
+     * @param track The current Track
+     * @param polyline A copy of the polyline of the Track
+     */
+    private void createLiveThumbnail(Track track, ThumbnailPolyline polyline) {
+        if (liveThumbnailPending.compareAndSet(false, true)) thumbnailExecutor.execute(new Thumbnailer(track, polyline, true));
+    }
+
+    /**
+     * Returns the live Thumbnail of the Track with the given id, that is updated while
+     * the Track is recorded.
+     *
+     * @param trackID The id of the Track
+     * @return the Thumbnail, or null if not available
+     */
+    public Bitmap getLiveThumbnail(long trackID) {
+        synchronized (liveThumbnailLock) {
+            return (trackID == liveThumbnailTrackID) ? liveThumbnail : null;
+        }
+    }
+
+    private void setLiveThumbnail(long trackID, Bitmap bitmap) {
+        synchronized (liveThumbnailLock) {
+            liveThumbnailTrackID = trackID;
+            liveThumbnail = bitmap;
+        }
+    }
+
+    /**
+     * Returns the Thumbnail of a Track, if already drawn.
+     * Otherwise the Thumbnail is drawn in background, and the tracklist is refreshed when ready;
+     * if the Thumbnail is missing, its creation is requested.
+     * It never reads the ThumbnailStore on the calling thread, so it can be called while scrolling the tracklist.
+     *
+     * @param track The Track
+     * @return the Thumbnail, or null if not yet available
+     */
+    public Bitmap getThumbnail(final Track track) {
+        return thumbnailStore.getBitmap(track.getId(), new Runnable() {
+            @Override
+            public void run() {
+                requestThumbnail(track);                // The Thumbnail is missing
+            }
+        });
+    }
+
+    /**
+     * Deletes the Thumbnails saved as png files by the previous versions of the app.
+     * They will be stored again into the ThumbnailStore by the backfill.
+     */
+    private void deleteLegacyThumbnails() {
+        File folder = new File(getApplicationContext().getFilesDir() + "/Thumbnails");
+        File[] files = folder.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (!f.delete()) Log.w("myApp", "[#] GPSApplication.java - Unable to delete " + f.getAbsolutePath());
+        }
+        if (folder.delete()) Log.w("myApp", "[#] GPSApplication.java - Legacy Thumbnails deleted: " + files.length);
+    }
+
     /**
      * Deletes the file with the given filename.
      *
@@ -939,6 +1157,16 @@ public class GPSApplication extends Application implements LocationListener {
 
         DIRECTORY_TEMP = getApplicationContext().getCacheDir() + "/Tracks";
         DIRECTORY_FILESDIR_TRACKS = getApplicationContext().getFilesDir() + "/URI";
+        DIRECTORY_FILESDIR_CHECKPOINTS = getApplicationContext().getFilesDir() + "/Checkpoints";
+        exportCache = new ExportCache(DIRECTORY_TEMP);
+        thumbnailStore = new ThumbnailStore(new File(getApplicationContext().getFilesDir(), "thumbnails.dat"), getResources(),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        EventBus.getDefault().post(EventBusMSG.REFRESH_TRACKLIST);     // The Thumbnails requested are ready
+                    }
+                });     // The file is opened in background
+        thumbnailExecutor.allowCoreThreadTimeOut(true);
         FILE_EMPTY_GPX = DIRECTORY_FILESDIR_TRACKS + "/empty.gpx";
         FILE_EMPTY_KML = DIRECTORY_FILESDIR_TRACKS + "/empty.kml";
 
@@ -970,6 +1198,12 @@ public class GPSApplication extends Application implements LocationListener {
 
         // Initialize the connection with the Database
         gpsDataBase = new DatabaseHandler(this);
+        trackList = new PagedTrackList(gpsDataBase, new Runnable() {
+            @Override
+            public void run() {
+                EventBus.getDefault().post(EventBusMSG.REFRESH_TRACKLIST);     // A page of Tracks requested by the Tracklist is loaded
+            }
+        });
 
         // Prepare the current track
         if (gpsDataBase.getLastTrackID() == 0) {
@@ -1054,10 +1288,7 @@ public class GPSApplication extends Application implements LocationListener {
             if ((prevFix != null) && (prevFix.getLocation().hasSpeed()) && (eloc.getLocation().hasSpeed()) && (gpsStatus == GPS_OK) && (isRecording)
                     && (((eloc.getLocation().getSpeed() == 0) && (prevFix.getLocation().getSpeed() != 0)) || ((eloc.getLocation().getSpeed() != 0) && (prevFix.getLocation().getSpeed() == 0)))) {
                 if (!isPrevFixRecorded) {                   // Record the old sample if not already recorded
-                    AsyncTODO ast = new AsyncTODO();
-                    ast.taskType = TASK_ADDLOCATION;
-                    ast.location = prevFix;
-                    asyncTODOQueue.add(ast);
+                    enqueueAsyncTODO(TASK_ADDLOCATION, prevFix);
                     prevRecordedFix = prevFix;
                     isPrevFixRecorded = true;
                 }
@@ -1065,8 +1296,6 @@ public class GPSApplication extends Application implements LocationListener {
             }
 
             if (gpsStatus == GPS_OK) {
-                AsyncTODO ast = new AsyncTODO();
-
                 // Distance Filter and Interval Filter in AND
                 // The Trackpoint is recorded when both filters are True.
 //                if ((isRecording) && ((prevRecordedFix == null)
@@ -1082,24 +1311,20 @@ public class GPSApplication extends Application implements LocationListener {
                         || ((prefGPSinterval > 0)
                             && (prefGPSdistance > 0)                                                            // Both filters enabled, check conditions in OR
                             && (((loc.getTime() - prevRecordedFix.getTime()) >= (prefGPSinterval * 1000.0f))
-                                || (loc.distanceTo(prevRecordedFix.getLocation()) >= prefGPSdistance)))
+                                || (Geodesic.distance(loc.getLatitude(), loc.getLongitude(), prevRecordedFix.getLatitude(), prevRecordedFix.getLongitude()) >= prefGPSdistance)))
                         || ((prefGPSinterval > 0)
                             && (prefGPSdistance == 0)                                                           // Only interval filter enabled
                             && ((loc.getTime() - prevRecordedFix.getTime()) >= (prefGPSinterval * 1000.0f)))
                         || ((prefGPSinterval == 0)
                             && (prefGPSdistance > 0)                                                            // Only distance filter enabled
-                            && ((loc.distanceTo(prevRecordedFix.getLocation()) >= prefGPSdistance)))
+                            && ((Geodesic.distance(loc.getLatitude(), loc.getLongitude(), prevRecordedFix.getLatitude(), prevRecordedFix.getLongitude()) >= prefGPSdistance)))
                         || (currentTrack.getNumberOfLocations() == 0))){                                        // It is the first point of a track
 
                     prevRecordedFix = eloc;
-                    ast.taskType = TASK_ADDLOCATION;
-                    ast.location = eloc;
-                    asyncTODOQueue.add(ast);
+                    enqueueAsyncTODO(TASK_ADDLOCATION, eloc);
                     isPrevFixRecorded = true;
                 } else {
-                    ast.taskType = TASK_UPDATEFIX;
-                    ast.location = eloc;
-                    asyncTODOQueue.add(ast);
+                    enqueueAsyncTODO(TASK_UPDATEFIX, eloc);
                     isPrevFixRecorded = false;
                 }
                 if (isPlacemarkRequested) {
@@ -1161,18 +1386,12 @@ public class GPSApplication extends Application implements LocationListener {
     @Subscribe
     public void onEvent(Short msg) {
         if (msg == EventBusMSG.NEW_TRACK) {
-            AsyncTODO ast = new AsyncTODO();
-            ast.taskType = TASK_NEWTRACK;
-            ast.location = null;
-            asyncTODOQueue.add(ast);
+            enqueueAsyncTODO(TASK_NEWTRACK, null);
             return;
         }
         if (msg == EventBusMSG.ADD_PLACEMARK) {
-            AsyncTODO ast = new AsyncTODO();
-            ast.taskType = TASK_ADDPLACEMARK;
-            ast.location = currentPlacemark;
             currentPlacemark.setDescription(placemarkDescription);
-            asyncTODOQueue.add(ast);
+            enqueueAsyncTODO(TASK_ADDPLACEMARK, currentPlacemark);
             return;
         }
         if (msg == EventBusMSG.APP_PAUSE) {
@@ -1228,10 +1447,7 @@ public class GPSApplication extends Application implements LocationListener {
     public void onShutdown() {
         gpsStatus = GPS_SEARCHING;
         Log.w("myApp", "[#] GPSApplication.java - onShutdown()");
-        AsyncTODO ast = new AsyncTODO();
-        ast.taskType = TASK_SHUTDOWN;
-        ast.location = null;
-        asyncTODOQueue.add(ast);
+        enqueueAsyncTODO(TASK_SHUTDOWN, null);
         if (asyncUpdateThread.isAlive()) {
             try {
                 Log.w("myApp", "[#] GPSApplication.java - onShutdown(): asyncUpdateThread isAlive. join...");
@@ -1405,63 +1621,46 @@ public class GPSApplication extends Application implements LocationListener {
     }
 
     /**
-     * Updates the Tracklist (re-)reading it from the Database.
+     * Updates the Tracklist with the Tracks added to the Database.
+     * Only the ids of the new Tracks are read, the Tracks are loaded when shown (see PagedTrackList).
      */
     public void UpdateTrackList() {
         long ID = gpsDataBase.getLastTrackID();
 
         if (ID > 0) {
-            synchronized(arrayListTracks) {
-                // Save Selections
-                ArrayList <Long> SelectedT = new ArrayList<>();
-                for (Track T : arrayListTracks) {
-                    if (T.isSelected()) SelectedT.add(T.getId());
-                }
-
-                // Update the List
-                arrayListTracks.clear();
-                arrayListTracks.addAll(gpsDataBase.getTracksList(0, ID - 1));
-                if ((ID > 1) && (gpsDataBase.getTrack(ID - 1) != null)) {
-                    String fname = (ID - 1) + ".png";
-                    File file = new File(getApplicationContext().getFilesDir() + "/Thumbnails/", fname);
-                    if (!file.exists()) thumbnailer = new Thumbnailer(ID - 1);
-                }
-                if (currentTrack.getNumberOfLocations() + currentTrack.getNumberOfPlacemarks() > 0) {
-                    Log.w("myApp", "[#] GPSApplication.java - Update Tracklist: current track (" + currentTrack.getId() + ") visible into the tracklist");
-                    arrayListTracks.add(0, currentTrack);
-                } else
-                    Log.w("myApp", "[#] GPSApplication.java - Update Tracklist: current track not visible into the tracklist");
-
-                // Restore the selection state
-                for (Track T : arrayListTracks) {
-                    for (Long SelT : SelectedT) {
-                        if (SelT == T.getId()) {
-                            T.setSelected(true);
-                            break;
-                        }
-                    }
-                }
-            }
+            // The Thumbnailer skips the Thumbnail if already stored (the ThumbnailStore is never read here,
+            // because UpdateTrackList can be called on the main thread)
+            if ((ID > 1) && (gpsDataBase.getTrack(ID - 1) != null)) createThumbnail(ID - 1, Thumbnailer.PRIORITY_HIGH);
+            boolean isCurrentTrackVisible = currentTrack.getNumberOfLocations() + currentTrack.getNumberOfPlacemarks() > 0;
+            if (isCurrentTrackVisible)
+                Log.w("myApp", "[#] GPSApplication.java - Update Tracklist: current track (" + currentTrack.getId() + ") visible into the tracklist");
+            else
+                Log.w("myApp", "[#] GPSApplication.java - Update Tracklist: current track not visible into the tracklist");
+            trackList.update(ID - 1, currentTrack, isCurrentTrackVisible);
             EventBus.getDefault().post(EventBusMSG.UPDATE_TRACKLIST);
-            //Log.w("myApp", "[#] GPSApplication.java - Update Tracklist: Added " + _ArrayListTracks.size() + " tracks");
+            //Log.w("myApp", "[#] GPSApplication.java - Update Tracklist: " + trackList.size() + " tracks");
         }
     }
 
     /**
-     * Extracts and returns the list of the selected tracks on the Tracklist.
+     * Extracts the list of the selected tracks on the Tracklist.
+     * The selection is taken immediately, but the Tracks not in memory are read from the DB
+     * on a background thread: the listener receives the Tracks later, on the main thread.
      *
-     * @return the ArrayList of the selected tracks.
+     * @param listener the listener that receives the selected tracks, in the order of the Tracklist
      */
-    public ArrayList<Track> getSelectedTracks() {
-        ArrayList<Track> selTracks = new ArrayList<>();
-        synchronized(arrayListTracks) {
-            for (Track T : arrayListTracks) {
-                if (T.isSelected()) {
-                    selTracks.add(T);
-                }
+    public void getSelectedTracks(final PagedTrackList.TracksListener listener) {
+        trackList.requestTracks(trackList.getSelectedIDs(), new PagedTrackList.TracksListener() {
+            @Override
+            public void onTracksLoaded(final List<Track> tracks) {
+                selectedTracksHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onTracksLoaded(tracks);
+                    }
+                });
             }
-        }
-        return (selTracks);
+        });
     }
 
     /**
@@ -1470,66 +1669,57 @@ public class GPSApplication extends Application implements LocationListener {
      * @return the number of selected tracks.
      */
     public int getNumberOfSelectedTracks() {
-        int nsel = 0;
-        synchronized(arrayListTracks) {
-            for (Track T : arrayListTracks) {
-                if (T.isSelected()) nsel++;
-            }
-        }
-        return nsel;
+        return trackList.getNumberOfSelectedTracks();
     }
 
     /**
      * Deselects all the tracks on the Tracklist.
      */
     public void deselectAllTracks() {
-        synchronized(arrayListTracks) {
-            for (Track T : arrayListTracks) {
-                if (T.isSelected()) {
-                    T.setSelected(false);
-                    EventBus.getDefault().post(new EventBusMSGNormal(EventBusMSG.TRACKLIST_DESELECT, T.getId()));
-                }
-            }
+        for (Long id : trackList.deselectAll()) {
+            EventBus.getDefault().post(new EventBusMSGNormal(EventBusMSG.TRACKLIST_DESELECT, id));
         }
         EventBus.getDefault().post(EventBusMSG.REFRESH_TRACKLIST);
     }
 
     /**
-     * Starts the ExportingStatusChecker.
-     * The ExportingStatusChecker regularly updates the status of the exportation,
-     * updating the progressbar at the bottom of the tracklist.
-     * The ExportingStatusChecker will end as soon as the last ExportingTask of
-     * the ExportingTaskList is done.
+     * Requests an update of the status of the exportation, that updates the progressbar
+     * at the bottom of the tracklist and ends the job when the last ExportingTask
+     * of the ExportingTaskList is done.
+     * It can be called from any thread: the update is executed on the main thread,
+     * and multiple requests are merged into a single update.
      */
-    void startExportingStatusChecker() {
-        exportingStatusCheckRunnable.run();
+    void onExportingStatusChanged() {
+        if (exportingStatusUpdatePending.compareAndSet(false, true))
+            exportingStatusUpdateHandler.postDelayed(exportingStatusUpdateRunnable, EXPORTING_STATUS_UPDATE_DELAY);
     }
 
     /**
-     * Executes the specified ExportingTask.
+     * Schedules the specified ExportingTask.
      *
      * @param exportingTask The ExportingTask to execute
      */
     public void executeExportingTask(ExportingTask exportingTask) {
+        Exporter exporter = null;
         switch (jobType) {
             case JOB_TYPE_EXPORT:
                 exporter = new Exporter(exportingTask, prefExportKML, prefExportGPX, prefExportTXT, prefExportFolder);
-                exporter.start();
                 break;
             case JOB_TYPE_VIEW:
                 if (trackViewer.fileType.equals(FILETYPE_GPX)) exporter = new Exporter(exportingTask, false, true, false, DIRECTORY_TEMP);
                 if (trackViewer.fileType.equals(FILETYPE_KML)) exporter = new Exporter(exportingTask, true, false, false, DIRECTORY_TEMP);
-                exporter.start();
+                if (exporter != null) exporter.setExportCache(exportCache);
                 break;
             case JOB_TYPE_SHARE:
                 exporter = new Exporter(exportingTask, prefExportKML, prefExportGPX, prefExportTXT, DIRECTORY_TEMP);
-                exporter.start();
+                exporter.setExportCache(exportCache);
                 break;
             case JOB_TYPE_NONE:
             case JOB_TYPE_DELETE:
             default:
                 break;
         }
+        if (exporter != null) exportScheduler.execute(exporter, exportingTask);
     }
 
     /**
@@ -1538,38 +1728,52 @@ public class GPSApplication extends Application implements LocationListener {
      * It is described by a type (jobType) and by a list of ExportingTask.
      * Loading a Job means populate the ExportingTaskList and set a jobType.
      * <p>
-     * For example, if you want to export a set of Tracks, you should set as selected
-     * some tracks of the arrayListTracks (the tracks on the TrackList),
+     * For example, if you want to export a set of Tracks, you should get
+     * the selected tracks of the trackList (the tracks on the TrackList) with getSelectedTracks,
      * call this method with jobType = JOB_TYPE_EXPORT,
-     * and then call executeJob.
+     * and then call executeJob (see startJob).
      *
      * @param jobType The Job Type (JOB_TYPE_DELETE, JOB_TYPE_EXPORT, JOB_TYPE_VIEW...)
+     * @param tracks The Tracks of the Job
      */
-    public void loadJob(int jobType) {
+    public void loadJob(int jobType, List<Track> tracks) {
         exportingTaskList.clear();
-        synchronized(arrayListTracks) {
-            for (Track t : arrayListTracks) {
-                if (t.isSelected()) {
-                    ExportingTask et = new ExportingTask();
-                    et.setId(t.getId());
-                    et.setName(getFileName(t));
-                    et.setNumberOfPoints_Total(t.getNumberOfLocations() + t.getNumberOfPlacemarks());
-                    et.setNumberOfPoints_Processed(0);
-                    exportingTaskList.add(et);
-                }
-            }
+        for (Track t : tracks) {
+            ExportingTask et = new ExportingTask();
+            et.setId(t.getId());
+            et.setName(getFileName(t));
+            et.setNumberOfPoints_Total(t.getNumberOfLocations() + t.getNumberOfPlacemarks());
+            et.setNumberOfPoints_Processed(0);
+            exportingTaskList.add(et);
         }
         jobsPending = exportingTaskList.size();
         this.jobType = jobType;
     }
 
+    /**
+     * Loads and executes a Job with the selected tracks on the Tracklist.
+     * The selection is taken immediately, so it can be cleared just after this call;
+     * the Job is loaded and executed on the main thread when the selected Tracks are read (see getSelectedTracks).
+     *
+     * @param jobType The Job Type (JOB_TYPE_DELETE, JOB_TYPE_EXPORT, JOB_TYPE_VIEW...)
+     */
+    public void startJob(final int jobType) {
+        getSelectedTracks(new PagedTrackList.TracksListener() {
+            @Override
+            public void onTracksLoaded(List<Track> tracks) {
+                loadJob(jobType, tracks);
+                executeJob();
+            }
+        });
+    }
+
     /**
      * Executes a Job.
      * A Job is an operation to do with a set of Tracks.
      * It is described by a type (jobType) and by a list of ExportingTask.
      * <p>
      * For example, if you want to export a set of Tracks, you should set as selected
-     * some tracks of the arrayListTracks (the tracks on the TrackList),
+     * some tracks of the trackList (the tracks on the TrackList),
      * call this method with jobType = JOB_TYPE_EXPORT,
      * and then call executeJob.
      */
@@ -1579,20 +1783,20 @@ public class GPSApplication extends Application implements LocationListener {
                 case JOB_TYPE_NONE:
                     break;
                 case JOB_TYPE_DELETE:
-                    String s = TASK_DELETETRACKS;
-                    for (ExportingTask et : exportingTaskList) {
-                        s = s + " " + et.getId();
+                    long[] trackIDs = new long[exportingTaskList.size()];
+                    for (int i = 0; i < trackIDs.length; i++) {
+                        trackIDs[i] = exportingTaskList.get(i).getId();
                     }
-                    AsyncTODO ast = new AsyncTODO();
-                    ast.taskType = s;
-                    ast.location = null;
-                    asyncTODOQueue.add(ast);
+                    enqueueAsyncTODO(TASK_DELETETRACKS, null, trackIDs);
                     break;
                 case JOB_TYPE_EXPORT:
                 case JOB_TYPE_VIEW:
                 case JOB_TYPE_SHARE:
                     createPrivateFolders();
-                    startExportingStatusChecker();
+                    exportScheduler.setStorageType((jobType == JOB_TYPE_EXPORT) && prefExportFolder.startsWith("content"));
+                    for (ExportingTask et : exportingTaskList) executeExportingTask(et);     // The scheduler runs the largest first
+                    onExportingStatusChanged();
+                    EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);                // Shows the Cancel control
                     break;
                 default:
                     break;
@@ -1604,6 +1808,21 @@ public class GPSApplication extends Application implements LocationListener {
         }
     }
 
+    /**
+     * Cancels the Job in progress.
+     * The Exporters not yet started are removed, and the running ones are stopped.
+     * The running Exporters save a checkpoint, and the next exportation of the same
+     * Tracks with the same settings resumes from it.
+     */
+    public void cancelJob() {
+        if ((jobsPending == 0) || (jobType == JOB_TYPE_DELETE)) return;     // No exportation in progress
+        exportScheduler.cancelAll();
+        jobProgress = 0;
+        jobsPending = 0;
+        EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);
+        EventBus.getDefault().post(EventBusMSG.TOAST_EXPORT_CANCELLED);
+    }
+
     /**
      * Gets a Bitmap starting from a Drawable.
      * It is user to extract the icon of the viewers, in order to use them into Action Mode
@@ -1851,35 +2070,191 @@ public class GPSApplication extends Application implements LocationListener {
         }
     }
 
+    private final AsyncTODOQueue asyncTODOQueue
+            = new AsyncTODOQueue(ASYNCTODO_QUEUE_CAPACITY);     // The FIFO for asynchronous DB operations
+    private final AsyncTODO.Pool asyncTODOPool
+            = new AsyncTODO.Pool(ASYNCTODO_POOL_SIZE);          // The AsyncTODOs already executed, ready to be reused
+    private volatile FixJournal fixJournal = null;              // The journal of the recorded locations, opened by the AsyncUpdateThreadClass
+    private int asyncTODOMaxOverflowLogged = 0;                 // The high-water mark of the overflow of the asyncTODOQueue already logged
+    private long recordingEpoch = 0;                            // The recording epoch of the FixJournal, incremented when a TASK_NEWTRACK is enqueued
+
     /**
-     * The Class defines a Database transaction to be enqueued
+     * Enqueues a new task for the AsyncUpdateThreadClass.
+     * The AsyncTODO is taken from the pool of the recycled ones, if available,
+     * in order to avoid an allocation for each fix.
+     *
+     * @param taskType the type of the task (one of the TASK_ constants)
+     * @param location the location of the task, or null
      */
-    private static class AsyncTODO {
-        String taskType;
-        LocationExtended location;
+    private void enqueueAsyncTODO(int taskType, LocationExtended location) {
+        enqueueAsyncTODO(taskType, location, null);
     }
 
-    private final BlockingQueue<AsyncTODO> asyncTODOQueue
-            = new LinkedBlockingQueue<>();                      // The FIFO for asynchronous DB operations
+    /**
+     * Enqueues a new task for the AsyncUpdateThreadClass.
+     *
+     * @param taskType the type of the task (one of the TASK_ constants)
+     * @param location the location of the task, or null
+     * @param trackIDs the IDs of the tracks of the task, or null
+     */
+    private void enqueueAsyncTODO(int taskType, LocationExtended location, long[] trackIDs) {
+        AsyncTODO ast = asyncTODOPool.obtain(taskType, location, trackIDs);
+        // The recorded locations are journaled here, on the thread of onLocationChanged, before being enqueued.
+        // They are tagged with the recording epoch, because the ID of a new Track is known only when the DB thread creates it
+        if (taskType == TASK_NEWTRACK) recordingEpoch++;
+        ast.journalEpoch = recordingEpoch;
+        final FixJournal journal = fixJournal;
+        if ((taskType == TASK_ADDLOCATION) && (journal != null)) ast.journalSequence = journal.append(recordingEpoch, location);
+        AsyncTODO replaced = asyncTODOQueue.add(ast);               // It never waits: the main thread must not block
+        if (replaced != null) asyncTODOPool.recycle(replaced);      // An UPDATEFIX replaced by the new one
+        final int maxOverflow = asyncTODOQueue.getMaxOverflow();
+        if (maxOverflow > asyncTODOMaxOverflowLogged) {             // The DB thread is late: logs the new high-water mark
+            asyncTODOMaxOverflowLogged = maxOverflow;
+            if ((maxOverflow == 1) || (maxOverflow % ASYNCTODO_QUEUE_CAPACITY == 0))
+                Log.w("myApp", "[#] GPSApplication.java - AsyncTODOQueue overflow: " + asyncTODOQueue);
+        }
+    }
 
     /**
      * The Thread that manages and executes the Database operations asynchronously.
      * It takes one by one the elements of the asyncTODOQueue and executes them
      * in FIFO order.
      * When the asyncTODOQueue list is empty, the thread blocks waiting the next item.
+     * <br>
+     * The recorded locations are immediately added to the current Track, but they are
+     * stored into the DB in groups (group commit), using a single transaction.
+     * A group is committed when it reaches GROUP_COMMIT_MAX_LOCATIONS locations,
+     * when its oldest location waited GROUP_COMMIT_MAX_DELAY milliseconds,
+     * or before executing any other task that writes the DB.
+     * Meanwhile, the locations of the group are into the FixJournal (written by onLocationChanged),
+     * that is imported into the DB at the next start in case of crash.
+     * If a location of the group is not journaled (journal full or not available),
+     * the group is committed with the shorter UNJOURNALED_GROUP_COMMIT_ limits.
+     * <br>
+     * The summary of the Track (the tracks table) is updated with a lower rate:
+     * every TRACK_SUMMARY_MAX_LOCATIONS locations, after TRACK_SUMMARY_MAX_DELAY milliseconds,
+     * when the recording is stopped, or before executing any other task that writes the DB.
+     * Only the columns changed since the last update are written.
+     * In case of crash, the summary is rebuilt from the locations at the next start.
      */
     private class AsyncUpdateThreadClass extends Thread {
 
         Track track;
         LocationExtended locationExtended;
+        final List<LocationExtended> pendingLocations = new ArrayList<>(GROUP_COMMIT_MAX_LOCATIONS);
+        long groupCommitDeadline;           // The time (elapsedRealtime) by which the pending locations must be stored
+        long lastPendingJournalSequence = -1;   // The journal sequence of the last pending location journaled (-1 if none)
+        boolean isPendingLocationUnjournaled = false;   // True if a pending location is not into the journal
+        int summaryPendingLocations = 0;    // The number of locations stored after the last update of the Track summary
+        long summaryDeadline;               // The time (elapsedRealtime) by which the Track summary must be updated
+        ThumbnailPolyline thumbnailPolyline = new ThumbnailPolyline();     // The polyline of the current Track, for its Thumbnail
+        long liveThumbnailTime = 0;         // The time (elapsedRealtime) of the last update of the live Thumbnail
 
         public AsyncUpdateThreadClass() {}
 
+        /**
+         * Stores into the DB all the pending locations of the current Track,
+         * with a single transaction.
+         * The Track summary is updated when forced, or when its cadence expires.
+         *
+         * @param forceSummaryUpdate true to update also the Track summary
+         */
+        private void commitPendingLocations(boolean forceSummaryUpdate) {
+            if (pendingLocations.isEmpty() && (summaryPendingLocations == 0)) return;
+            summaryPendingLocations += pendingLocations.size();
+            boolean updateSummary = forceSummaryUpdate
+                    || (summaryPendingLocations >= TRACK_SUMMARY_MAX_LOCATIONS)
+                    || (SystemClock.elapsedRealtime() >= summaryDeadline)
+                    || ((track.getDirtyFields() & Track.DIRTY_DESCRIPTIVE) != 0);
+            gpsDataBase.addLocationsToTrack(pendingLocations, track, updateSummary);
+            //Log.w("myApp", "[#] GPSApplication.java - Group commit: " + pendingLocations.size() + " Locations added in " + track.getId());
+            pendingLocations.clear();
+            if (lastPendingJournalSequence >= 0) fixJournal.release(lastPendingJournalSequence + 1);     // The journaled locations are now into the DB
+            lastPendingJournalSequence = -1;
+            isPendingLocationUnjournaled = false;
+            if (updateSummary) summaryPendingLocations = 0;
+        }
+
+        /**
+         * @return the time (ms) to wait for the next task before committing
+         * the pending locations or the Track summary.
+         */
+        private long getCommitTimeout() {
+            long deadline = pendingLocations.isEmpty() ? summaryDeadline
+                    : (summaryPendingLocations == 0 ? groupCommitDeadline : Math.min(groupCommitDeadline, summaryDeadline));
+            return Math.max(0, deadline - SystemClock.elapsedRealtime());
+        }
+
+        /**
+         * Imports into the DB the locations of the FixJournal of the previous session, in order of epoch.
+         * The locations of the known epoch are added to its Track; the ones of the following epochs
+         * (whose TASK_NEWTRACK has not been executed) are added to new Tracks, created as TASK_NEWTRACK does.
+         * No location is discarded: the journal is released only after the import.
+         * The locations of the previous epochs, and the ones not newer than the end of their Track,
+         * are already into the DB (the app stopped after storing them, but before releasing them).
+         */
+        private void importJournal(FixJournal journal) {
+            final long knownEpoch = journal.getKnownEpoch();
+            final long lastEpoch = journal.getLastEpoch();
+            final long knownTrackID = journal.getKnownTrackID();
+            for (long epoch = knownEpoch; epoch <= lastEpoch; epoch++) {
+                Track trk = null;
+                if (epoch == knownEpoch) {
+                    trk = (knownTrackID == track.getId()) ? track : gpsDataBase.getTrack(knownTrackID);
+                    if (trk == null) Log.w("myApp", "[#] GPSApplication.java - Journal: Track " + knownTrackID + " not found, importing its locations into a new Track");
+                }
+                if (trk == null) {
+                    if (journal.getLocations(epoch, NOT_AVAILABLE).isEmpty()) continue;
+                    if ((track.getNumberOfLocations() != 0) || (track.getNumberOfPlacemarks() != 0)) {
+                        track = new Track();        // The new Track of the epoch (an empty Track is reused, as TASK_NEWTRACK does)
+                        track.setId(gpsDataBase.addTrack(track));
+                        Log.w("myApp", "[#] GPSApplication.java - Journal: Track " + track.getId() + " created");
+                    }
+                    currentTrack = track;
+                    trk = track;
+                }
+                List<LocationExtended> journaledLocations = journal.getLocations(epoch, trk.getTimeEnd());
+                if (journaledLocations.isEmpty()) continue;
+                Log.w("myApp", "[#] GPSApplication.java - IMPORTING " + journaledLocations.size() + " LOCATIONS FROM THE JOURNAL INTO TRACK " + trk.getId());
+                for (LocationExtended loc : journaledLocations) trk.add(loc);
+                gpsDataBase.addLocationsToTrack(journaledLocations, trk, true);
+            }
+        }
+
         public void run() {
 
             track = currentTrack;
+
+            // Rebuilds the summary of the current Track if it is not aligned with its locations
+            // (it could happen in case of crash, because the summary is updated with a lower rate)
+            if (gpsDataBase.getLocationsCount(track.getId()) != track.getNumberOfLocations()) {
+                Log.w("myApp", "[#] GPSApplication.java - REBUILDING THE SUMMARY OF TRACK " + track.getId());
+                track = gpsDataBase.rebuildTrack(track);
+                currentTrack = track;
+                Log.w("myApp", "[#] GPSApplication.java - SUMMARY OF TRACK " + track.getId() + " REBUILT");
+            }
+
+            // Imports the locations of the FixJournal that are not into the DB
+            // (it could happen in case of crash, because the locations are stored in groups)
+            FixJournal journal = new FixJournal(new File(getApplicationContext().getFilesDir(), FIX_JOURNAL_FILENAME));
+            if (journal.size() > 0) importJournal(journal);
+            journal.startSession(track.getId());                    // The epoch 0 of this session is the one of the current Track
+            fixJournal = journal;                                   // From now on, onLocationChanged journals the recorded locations
+
+            // Builds the polyline for the Thumbnail of the current Track, that is then updated with the new locations
+            if (track.getNumberOfLocations() > 0) {
+                TrackPointCursor trackPointCursor = gpsDataBase.getLocationsCursor(track.getId());
+                try {
+                    while (trackPointCursor.moveToNext()) thumbnailPolyline.add(trackPointCursor.getLatitude(), trackPointCursor.getLongitude());
+                } finally {
+                    trackPointCursor.close();
+                }
+            }
+
             EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
+            deleteLegacyThumbnails();
             UpdateTrackList();
+            startThumbnailsBackfill();
 
             // ----------------------------------------------------------------------------------------
             // If needed, applies the GPS Week Rollover Correction for data already stored into the DB
@@ -1889,6 +2264,7 @@ public class GPSApplication extends Application implements LocationListener {
                     Log.w("myApp", "[#] GPSApplication.java - CORRECTING DATA FOR GPS WEEK ROLLOVER");
                     gpsDataBase.CorrectGPSWeekRollover();
                     Log.w("myApp", "[#] GPSApplication.java - DATA FOR GPS WEEK ROLLOVER CORRECTED");
+                    trackList.clear();                          // The names of the Tracks are changed
                     UpdateTrackList();
                     Log.w("myApp", "[#] GPSApplication.java - TRACKLIST UPDATED WITH THE CORRECTED NAMES");
                 }
@@ -1904,152 +2280,218 @@ public class GPSApplication extends Application implements LocationListener {
             while (!shutdown) {
                 AsyncTODO asyncTODO;
                 try {
-                    asyncTODO = asyncTODOQueue.take();
+                    if (pendingLocations.isEmpty() && (summaryPendingLocations == 0)) asyncTODO = asyncTODOQueue.take();
+                    else asyncTODO = asyncTODOQueue.poll(getCommitTimeout());
                 } catch (InterruptedException e) {
                     Log.w("myApp", "[!] Buffer not available: " + e.getMessage());
+                    commitPendingLocations(true);
                     break;
                 }
 
-                // Task: Safely Shutdown
-                if (asyncTODO.taskType.equals(TASK_SHUTDOWN)) {
-                    shutdown = true;
-                    Log.w("myApp", "[#] GPSApplication.java - AsyncUpdateThreadClass: SHUTDOWN EVENT.");
+                // Group commit: when the waiting time expires
+                if (asyncTODO == null) {
+                    commitPendingLocations(false);
+                    continue;
                 }
 
-                // Task: Create new track (if needed)
-                if (asyncTODO.taskType.equals(TASK_NEWTRACK)) {
-                    if ((track.getNumberOfLocations() != 0) || (track.getNumberOfPlacemarks() != 0)) {
-                        // ---- Delete 2 thumbs files forward - in case of user deleted DB in App manager (pngs could be already presents for the new IDS)
-                        String fname = (track.getId() + 1) +".png";
-                        File file = new File(getApplicationContext().getFilesDir() + "/Thumbnails/", fname);
-                        if (file.exists ()) file.delete ();
-                        fname = (track.getId() + 2) +".png";
-                        file = new File(getApplicationContext().getFilesDir() + "/Thumbnails/", fname);
-                        if (file.exists ()) file.delete ();
-                        track = new Track();
-                        // ----
-                        track.setId(gpsDataBase.addTrack(track));
-                        Log.w("myApp", "[#] GPSApplication.java - TASK_NEWTRACK: " + track.getId());
-                        currentTrack = track;
-                        UpdateTrackList();
-                    } else Log.w("myApp", "[#] GPSApplication.java - TASK_NEWTRACK: Track " + track.getId() + " already empty (New track not created)");
-                    currentTrack = track;
-                    EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
+                // Group commit, including the Track summary: before any other DB task
+                if ((asyncTODO.taskType != TASK_ADDLOCATION) && (asyncTODO.taskType != TASK_UPDATEFIX)) {
+                    commitPendingLocations(true);
                 }
 
-                // Task: Add location to current track
-                if (asyncTODO.taskType.equals(TASK_ADDLOCATION)) {
-                    locationExtended = new LocationExtended(asyncTODO.location.getLocation());
-                    locationExtended.setNumberOfSatellites(asyncTODO.location.getNumberOfSatellites());
-                    locationExtended.setNumberOfSatellitesUsedInFix(asyncTODO.location.getNumberOfSatellitesUsedInFix());
-                    currentLocationExtended = locationExtended;
-                    if (isScreenOn) EventBus.getDefault().post(EventBusMSG.UPDATE_FIX);
-                    track.add(locationExtended);
-                    gpsDataBase.addLocationToTrack(locationExtended, track);
-                    //Log.w("myApp", "[#] GPSApplication.java - TASK_ADDLOCATION: Added new Location in " + track.getId());
-                    currentTrack = track;
-                    if (isScreenOn) EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
-                    if (currentTrack.getNumberOfLocations() + currentTrack.getNumberOfPlacemarks() == 1) UpdateTrackList();
-                }
+                switch (asyncTODO.taskType) {
+                    // Task: Safely Shutdown
+                    case TASK_SHUTDOWN:
+                        shutdown = true;
+                        Log.w("myApp", "[#] GPSApplication.java - AsyncUpdateThreadClass: SHUTDOWN EVENT.");
+                        Log.w("myApp", "[#] GPSApplication.java - AsyncTODOQueue: " + asyncTODOQueue);
+                        Log.w("myApp", "[#] GPSApplication.java - EGM lookups avoided: " + LocationExtended.getEGMLookupsAvoided());
+                        break;
 
-                // Task: Add a placemark to current track
-                if (asyncTODO.taskType.equals(TASK_ADDPLACEMARK)) {
-                    locationExtended = new LocationExtended(asyncTODO.location.getLocation());
-                    locationExtended.setDescription(asyncTODO.location.getDescription());
-                    locationExtended.setNumberOfSatellites(asyncTODO.location.getNumberOfSatellites());
-                    locationExtended.setNumberOfSatellitesUsedInFix(asyncTODO.location.getNumberOfSatellitesUsedInFix());
-                    track.addPlacemark(locationExtended);
-                    gpsDataBase.addPlacemarkToTrack(locationExtended, track);
-                    currentTrack = track;
-                    EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
-                    if (currentTrack.getNumberOfLocations() + currentTrack.getNumberOfPlacemarks() == 1) UpdateTrackList();
-                }
+                    // Task: Create new track (if needed)
+                    case TASK_NEWTRACK:
+                        if ((track.getNumberOfLocations() != 0) || (track.getNumberOfPlacemarks() != 0)) {
+                            // ---- Delete 2 thumbs forward - in case of user deleted DB in App manager (thumbs could be already presents for the new IDS)
+                            thumbnailStore.remove(track.getId() + 1);
+                            thumbnailStore.remove(track.getId() + 2);
+                            // Creates the Thumbnail of the finished Track from its polyline, without reading the DB
+                            if (thumbnailPolyline.getNumberOfLocations() == track.getNumberOfLocations()) createThumbnail(track, thumbnailPolyline);
+                            thumbnailPolyline = new ThumbnailPolyline();
+                            track = new Track();
+                            // ----
+                            track.setId(gpsDataBase.addTrack(track));
+                            Log.w("myApp", "[#] GPSApplication.java - TASK_NEWTRACK: " + track.getId());
+                            currentTrack = track;
+                            UpdateTrackList();
+                        } else Log.w("myApp", "[#] GPSApplication.java - TASK_NEWTRACK: Track " + track.getId() + " already empty (New track not created)");
+                        currentTrack = track;
+                        if (fixJournal != null) fixJournal.setKnownTrack(asyncTODO.journalEpoch, track.getId());     // The locations of the epoch belong to this Track
+                        EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
+                        break;
 
-                // Task: Update current Fix
-                if (asyncTODO.taskType.equals(TASK_UPDATEFIX)) {
-                    currentLocationExtended = new LocationExtended(asyncTODO.location.getLocation());
-                    currentLocationExtended.setNumberOfSatellites(asyncTODO.location.getNumberOfSatellites());
-                    currentLocationExtended.setNumberOfSatellitesUsedInFix(asyncTODO.location.getNumberOfSatellitesUsedInFix());
-                    if (isScreenOn) EventBus.getDefault().post(EventBusMSG.UPDATE_FIX);
-                }
+                    // Task: Add location to current track
+                    case TASK_ADDLOCATION:
+                        locationExtended = asyncTODO.location;
+                        currentLocationExtended = locationExtended;
+                        if (isScreenOn) EventBus.getDefault().post(EventBusMSG.UPDATE_FIX);
+                        track.add(locationExtended);
+                        thumbnailPolyline.add(locationExtended.getLocation().getLatitude(), locationExtended.getLocation().getLongitude());
+                        if (isScreenOn && (SystemClock.elapsedRealtime() - liveThumbnailTime >= LIVE_THUMBNAIL_INTERVAL)) {
+                            liveThumbnailTime = SystemClock.elapsedRealtime();
+                            createLiveThumbnail(track, thumbnailPolyline.copy());
+                        }
+                        pendingLocations.add(locationExtended);
+                        if (pendingLocations.size() == 1) {
+                            groupCommitDeadline = SystemClock.elapsedRealtime() + GROUP_COMMIT_MAX_DELAY;
+                            if (summaryPendingLocations == 0) summaryDeadline = SystemClock.elapsedRealtime() + TRACK_SUMMARY_MAX_DELAY;
+                        }
+                        if (asyncTODO.journalSequence >= 0) lastPendingJournalSequence = asyncTODO.journalSequence;
+                        else if (!isPendingLocationUnjournaled) {
+                            // Not journaled: the group is committed as without the journal
+                            isPendingLocationUnjournaled = true;
+                            groupCommitDeadline = Math.min(groupCommitDeadline, SystemClock.elapsedRealtime() + UNJOURNALED_GROUP_COMMIT_MAX_DELAY);
+                        }
+                        //Log.w("myApp", "[#] GPSApplication.java - TASK_ADDLOCATION: Added new Location in " + track.getId());
+                        currentTrack = track;
+                        if ((pendingLocations.size() >= (isPendingLocationUnjournaled ? UNJOURNALED_GROUP_COMMIT_MAX_LOCATIONS : GROUP_COMMIT_MAX_LOCATIONS))
+                                || (currentTrack.getNumberOfLocations() + currentTrack.getNumberOfPlacemarks() == 1)) commitPendingLocations(false);
+                        if (isScreenOn) EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
+                        if (currentTrack.getNumberOfLocations() + currentTrack.getNumberOfPlacemarks() == 1) UpdateTrackList();
+                        break;
+
+                    // Task: Add a placemark to current track
+                    case TASK_ADDPLACEMARK:
+                        locationExtended = asyncTODO.location;
+                        track.addPlacemark(locationExtended);
+                        gpsDataBase.addPlacemarkToTrack(locationExtended, track);
+                        currentTrack = track;
+                        EventBus.getDefault().post(EventBusMSG.UPDATE_TRACK);
+                        if (currentTrack.getNumberOfLocations() + currentTrack.getNumberOfPlacemarks() == 1) UpdateTrackList();
+                        break;
 
-                // Task: Delete some tracks
-                if (asyncTODO.taskType.startsWith(TASK_DELETETRACKS)) {
+                    // Task: Update current Fix
+                    case TASK_UPDATEFIX:
+                        currentLocationExtended = asyncTODO.location;
+                        if (isScreenOn) EventBus.getDefault().post(EventBusMSG.UPDATE_FIX);
+                        if (!isRecording) commitPendingLocations(true);     // The recording is stopped: stores everything
+                        break;
 
-                    String sTokens = asyncTODO.taskType.substring(asyncTODO.taskType.indexOf(" ") + 1);
-                    Log.w("myApp", "[#] GPSApplication.java - DELETING (" + sTokens + ")");
-                    List<String> tokens = new ArrayList<>();
-                    StringTokenizer tokenizer = new StringTokenizer(sTokens, " ");
-                    while (tokenizer.hasMoreElements()) {
-                        tokens.add(tokenizer.nextToken());
-                    }
-                    if (!tokens.isEmpty()) {
+                    // Task: Delete some tracks
+                    case TASK_DELETETRACKS:
+                        Log.w("myApp", "[#] GPSApplication.java - DELETING " + asyncTODO.trackIDs.length + " TRACKS");
                         jobProgress = 0;
-                        int tracksToBeDeleted = tokens.size();
-                        int tracksDeleted = 0;
-                        for (String s : tokens) {
-                            Track track = null;                 // The track found in the _ArrayListTracks
-                            int i = Integer.valueOf(s);
-                            if (i != currentTrack.getId()) {   // Prevent the deletion of the current track
-                                synchronized (arrayListTracks) {
-                                    for (Track t : arrayListTracks) {
-                                        if (t.getId() == i) {
-                                            track = t;
-                                            gpsDataBase.DeleteTrack(i);
-                                            Log.w("myApp", "[#] GPSApplication.java - TASK_DELETE_TRACKS: Track " + i + " deleted.");
-                                            arrayListTracks.remove(t);
-                                            break;
-                                        }
-                                    }
-                                }
-                                if (track != null) {
-                                    // Delete track files
-                                    if (fileFind(DIRECTORY_TEMP, track.getName()) != null) {
-                                        for (File f : fileFind(DIRECTORY_TEMP, track.getName())) {
-                                            Log.w("myApp", "[#] GPSApplication.java - Deleting: " + f.getAbsolutePath());
-                                            fileDelete(f.getAbsolutePath());
-                                        }
-                                    }
-                                    // Delete thumbnail
-                                    fileDelete(getApplicationContext().getFilesDir() + "/Thumbnails/" + track.getId() + ".png");
-
-                                    tracksDeleted++;
-                                    jobProgress = (int) Math.round(1000L * tracksDeleted / tracksToBeDeleted);
-                                    EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);
-                                    if (jobsPending > 0) jobsPending--;
-                                }
-                            } else {
+                        EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);
+                        // Reads the names of the Tracks with a single query, without loading them
+                        long[] idsToBeDeleted = new long[asyncTODO.trackIDs.length];
+                        int n = 0;
+                        for (long i : asyncTODO.trackIDs) {
+                            if (i == currentTrack.getId()) {   // Prevent the deletion of the current track
                                 Log.w("myApp", "[#] GPSApplication.java - TASK_DELETE_TRACKS: Unable to delete the current track!");
-                                tracksDeleted++;
-                                jobProgress = (int) Math.round(1000L * tracksDeleted / tracksToBeDeleted);
-                                EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);
-                                if (jobsPending > 0) jobsPending--;
+                                continue;
                             }
+                            idsToBeDeleted[n++] = i;
+                        }
+                        Map<Long, String> tracksToBeDeleted = gpsDataBase.getTrackNames(Arrays.copyOf(idsToBeDeleted, n));
+                        if (!tracksToBeDeleted.isEmpty()) {
+                            long[] trackIDs = new long[tracksToBeDeleted.size()];
+                            int j = 0;
+                            for (long id : tracksToBeDeleted.keySet()) trackIDs[j++] = id;
+                            gpsDataBase.DeleteTracks(trackIDs);                                 // A single transaction
+                            trackList.remove(trackIDs);                                         // A single pass on the list
+                            Log.w("myApp", "[#] GPSApplication.java - TASK_DELETE_TRACKS: " + trackIDs.length + " Tracks deleted.");
+                            // The files of the Tracks are deleted in background
+                            new AsyncDeleteFilesThreadClass(tracksToBeDeleted).start();
+                        }
+                        jobsPending = 0;
+                        jobProgress = 0;
+                        EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);
+                        EventBus.getDefault().post(EventBusMSG.NOTIFY_TRACKS_DELETED);
+                        break;
+                }
+
+                asyncTODOPool.recycle(asyncTODO);
+            }
+        }
+    }
+
+    /**
+     * The Thread that deletes the files of some deleted Tracks:
+     * the temporary files (exported to be viewed or shared) and the thumbnails.
+     * The temporary folder is listed only once for all the Tracks.
+     */
+    private class AsyncDeleteFilesThreadClass extends Thread {
+
+        private final Map<Long, String> tracks;             // The names of the deleted Tracks, by ID
+
+        public AsyncDeleteFilesThreadClass(Map<Long, String> tracks) {
+            this.tracks = tracks;
+        }
+
+        public void run() {
+            Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+
+            // Delete track files
+            File[] tempFiles = new File(DIRECTORY_TEMP).listFiles();
+            if (tempFiles != null) {
+                for (File f : tempFiles) {
+                    for (String name : tracks.values()) {
+                        if (f.getName().startsWith(name)) {
+                            Log.w("myApp", "[#] GPSApplication.java - Deleting: " + f.getAbsolutePath());
+                            fileDelete(f.getAbsolutePath());
+                            break;
+                        }
+                    }
+                }
+            }
+            // Delete thumbnails
+            for (long id : tracks.keySet()) {
+                thumbnailStore.remove(id);
+            }
+            // Delete the checkpoints of the exportations
+            File[] checkpointFiles = new File(DIRECTORY_FILESDIR_CHECKPOINTS).listFiles();
+            if (checkpointFiles != null) {
+                for (File f : checkpointFiles) {
+                    for (long id : tracks.keySet()) {
+                        if (f.getName().startsWith(id + "_")) {
+                            fileDelete(f.getAbsolutePath());
+                            break;
                         }
                     }
-                    jobProgress = 0;
-                    EventBus.getDefault().post(EventBusMSG.UPDATE_JOB_PROGRESS);
-                    EventBus.getDefault().post(EventBusMSG.NOTIFY_TRACKS_DELETED);
                 }
             }
         }
     }
 
     /**
-     * The Thread that generates the Thumbnail of the Track with the given id.
+     * The task that generates the Thumbnail of the Track with the given id.
+     * It is executed by the thumbnailExecutor.
+     * <br>
+     * The Trackpoints are streamed from the DB, or taken from the ThumbnailPolyline of the
+     * Track when available, and normalized on the drawing area of the Thumbnail; a point is
+     * added to the polyline only if it moves at least THUMBNAIL_MIN_STEP (1/512 of the area)
+     * from the last point added, so the polyline of a long Track has at most a few thousand points.
+     * The polyline is saved into the ThumbnailStore, that draws the bitmaps when needed.
+     * The live Thumbnails of the current Track are drawn and kept in memory instead of being saved.
+     * <br>
+     * The Thumbnailers are ordered by priority, and then from the newest request.
+     * The polyline is created only when the Thumbnailer runs, so many
+     * Thumbnailers can be queued with little memory.
      */
-    public class Thumbnailer {
+    public class Thumbnailer implements Runnable, Comparable<Thumbnailer> {
+
+        static final int PRIORITY_HIGH = 0;             // The current Track and the Track just finished
+        static final int PRIORITY_VISIBLE = 1;          // The Tracks shown on the tracklist
+        static final int PRIORITY_BACKFILL = 2;         // The regeneration of the missing Thumbnails
 
-        long id;
-        long numberOfLocations;
+        private static final int THUMBNAIL_MIN_STEP = ThumbnailStore.MAX_COORDINATE / 512;   // The minimum distance between two points of the polyline
 
-        private final Paint drawPaint = new Paint();
-        private final Paint bgPaint = new Paint();
-        private final Paint endDotdrawPaint = new Paint();
-        private final Paint endDotBGPaint = new Paint();
-        private final int size = (int)(getResources().getDimension(R.dimen.thumbSize));
-        private final int margin = (int) Math.ceil(getResources().getDimension(R.dimen.thumbLineWidth) * 3);
-        private final int sizeMinusMargins = size - 2 * margin;
+        final long id;
+        final int priority;
+        final long sequenceNumber = thumbnailSequenceNumber.getAndIncrement();
+        boolean continuesBackfill = false;              // True if the Thumbnailer must queue the next Thumbnail of the backfill when ends
+        private final Track track;                      // The Track, or null to read it from the DB
+        private final ThumbnailPolyline polyline;       // The polyline of the Track, or null to read the Trackpoints from the DB
+        private final boolean isLive;                   // True for the live Thumbnail of the current Track
 
         private double minLatitude;
         private double minLongitude;
@@ -2059,128 +2501,182 @@ public class GPSApplication extends Application implements LocationListener {
         double latOffset;
         double lonOffset;
 
+        private char[] points;                          // The normalized points of the Thumbnail (x0, y0, x1, y1, ...)
+        private int numberOfPoints = 0;
+        private char x = 0;                             // The coordinates of the last point read
+        private char y = 0;
+
         /**
-         * Generates the Thumbnail of the Track with the given id into FilesDir/Thumbnails/.
-         * The id will be used also to name the output png file.
+         * Creates the task that generates the Thumbnail of the Track with the given id
+         * into the ThumbnailStore.
          *
          * @param id The id of the Track
+         * @param priority The priority of the Thumbnailer
+         */
+        public Thumbnailer(long id, int priority) {
+            this.id = id;
+            this.priority = priority;
+            this.track = null;
+            this.polyline = null;
+            this.isLive = false;
+        }
+
+        /**
+         * Creates the task that generates the Thumbnail of a Track using its polyline.
+         *
+         * @param track The Track
+         * @param polyline The polyline of the Track (it must not be modified while in use)
+         * @param isLive true to generate the live Thumbnail of the current Track, false to store the Thumbnail
          */
-        public Thumbnailer(long id) {
-
-            Track track = gpsDataBase.getTrack(id);
-            //Log.w("myApp", "[#] GPSApplication.java - Bitmap Size = " + Size);
-
-            if ((track.getNumberOfLocations() > 2) && (track.getDistance() >= 15) && (track.getValidMap() != 0)) {
-                this.id = track.getId();
-                numberOfLocations = track.getNumberOfLocations();
-
-                // Setup Paints
-                drawPaint.setColor(getResources().getColor(R.color.colorThumbnailLineColor));
-                drawPaint.setAntiAlias(true);
-                drawPaint.setStrokeWidth(getResources().getDimension(R.dimen.thumbLineWidth));
-                //drawPaint.setStrokeWidth(2);
-                drawPaint.setStyle(Paint.Style.STROKE);
-                drawPaint.setStrokeJoin(Paint.Join.ROUND);
-                drawPaint.setStrokeCap(Paint.Cap.ROUND);
-
-                bgPaint.setColor(Color.BLACK);
-                bgPaint.setAntiAlias(true);
-                bgPaint.setStrokeWidth(getResources().getDimension(R.dimen.thumbLineWidth) * 3);
-                //BGPaint.setStrokeWidth(6);
-                bgPaint.setStyle(Paint.Style.STROKE);
-                bgPaint.setStrokeJoin(Paint.Join.ROUND);
-                bgPaint.setStrokeCap(Paint.Cap.ROUND);
-
-                endDotdrawPaint.setColor(getResources().getColor(R.color.colorThumbnailLineColor));
-                endDotdrawPaint.setAntiAlias(true);
-                endDotdrawPaint.setStrokeWidth(getResources().getDimension(R.dimen.thumbLineWidth) * 2.5f);
-                endDotdrawPaint.setStyle(Paint.Style.STROKE);
-                endDotdrawPaint.setStrokeJoin(Paint.Join.ROUND);
-                endDotdrawPaint.setStrokeCap(Paint.Cap.ROUND);
-
-                endDotBGPaint.setColor(Color.BLACK);
-                endDotBGPaint.setAntiAlias(true);
-                endDotBGPaint.setStrokeWidth(getResources().getDimension(R.dimen.thumbLineWidth) * 4.5f);
-                endDotBGPaint.setStyle(Paint.Style.STROKE);
-                endDotBGPaint.setStrokeJoin(Paint.Join.ROUND);
-                endDotBGPaint.setStrokeCap(Paint.Cap.ROUND);
-
-                // Calculate the drawing scale
-                double midLatitude = (track.getLatitudeMax() + track.getLatitudeMin()) / 2;
-                double angleFromEquator = Math.abs(midLatitude);
-
-                distanceProportion = Math.cos(Math.toRadians(angleFromEquator));
-                //Log.w("myApp", "[#] GPSApplication.java - Distance_Proportion = " + Distance_Proportion);
-
-                drawScale = Math.max(track.getLatitudeMax() - track.getLatitudeMin(), distanceProportion * (track.getLongitudeMax() - track.getLongitudeMin()));
-                latOffset = sizeMinusMargins * (1 - (track.getLatitudeMax() - track.getLatitudeMin()) / drawScale) / 2;
-                lonOffset = sizeMinusMargins * (1 - (distanceProportion * (track.getLongitudeMax() - track.getLongitudeMin()) / drawScale)) / 2;
-
-                minLatitude = track.getLatitudeMin();
-                minLongitude = track.getLongitudeMin();
-
-                final AsyncThumbnailThreadClass asyncThumbnailThreadClass = new AsyncThumbnailThreadClass();
-                asyncThumbnailThreadClass.start();
+        Thumbnailer(Track track, ThumbnailPolyline polyline, boolean isLive) {
+            this.id = track.getId();
+            this.priority = PRIORITY_HIGH;
+            this.track = track;
+            this.polyline = polyline;
+            this.isLive = isLive;
+        }
+
+        @Override
+        public int compareTo(Thumbnailer other) {
+            if (priority != other.priority) return priority < other.priority ? -1 : 1;
+            if (sequenceNumber == other.sequenceNumber) return 0;
+            return sequenceNumber > other.sequenceNumber ? -1 : 1;
+        }
+
+        public void run() {
+            try {
+                if ((track == null) && thumbnailStore.contains(id)) return;    // Already stored
+                if (priority == PRIORITY_BACKFILL) {
+                    // Throttling: the backfill leaves the DB to the recording
+                    if (isRecording()) Thread.sleep(BACKFILL_RECORDING_DELAY);
+                }
+                Track trk = (track != null) ? track : gpsDataBase.getTrack(id);
+                //Log.w("myApp", "[#] GPSApplication.java - Thumbnailer started");
+
+                boolean isDrawn = false;
+                if ((trk != null) && (trk.getNumberOfLocations() > 2) && (trk.getDistance() >= 15) && (trk.getValidMap() != 0)) {
+                    setup(trk);
+                    isDrawn = draw();
+                }
+                if (isLive) {
+                    if (isDrawn) setLiveThumbnail(id, thumbnailStore.draw(points, numberOfPoints));
+                } else {
+                    save(isDrawn);
+                    if (!isDrawn) {
+                        synchronized (thumbnailsPending) {
+                            thumbnailsUnavailable.add(id);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Log.w("myApp", "[#] GPSApplication.java - Thumbnailer interrupted: " + e);
+            } finally {
+                if (isLive) liveThumbnailPending.set(false);
+                else {
+                    synchronized (thumbnailsPending) {
+                        if (thumbnailsPending.get(id) == this) thumbnailsPending.remove(id);
+                    }
+                    if (continuesBackfill) scheduleNextBackfill();
+                }
             }
         }
 
-        private class AsyncThumbnailThreadClass extends Thread {
+        private void setup(Track track) {
+            // Calculate the drawing scale (on the bounds of the polyline, if used, that are always updated)
+            final double latitudeMin = (polyline != null) ? polyline.getLatitudeMin() : track.getLatitudeMin();
+            final double latitudeMax = (polyline != null) ? polyline.getLatitudeMax() : track.getLatitudeMax();
+            final double longitudeMin = (polyline != null) ? polyline.getLongitudeMin() : track.getLongitudeMin();
+            final double longitudeMax = (polyline != null) ? polyline.getLongitudeMax() : track.getLongitudeMax();
+            double midLatitude = (latitudeMax + latitudeMin) / 2;
+            double angleFromEquator = Math.abs(midLatitude);
 
-            public AsyncThumbnailThreadClass() {}
+            distanceProportion = Math.cos(Math.toRadians(angleFromEquator));
+            //Log.w("myApp", "[#] GPSApplication.java - Distance_Proportion = " + Distance_Proportion);
 
-            public void run() {
-                Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+            drawScale = Math.max(latitudeMax - latitudeMin, distanceProportion * (longitudeMax - longitudeMin));
+            latOffset = (1 - (latitudeMax - latitudeMin) / drawScale) / 2;
+            lonOffset = (1 - (distanceProportion * (longitudeMax - longitudeMin) / drawScale)) / 2;
 
-                String fname = id + ".png";
-                File file = new File(getApplicationContext().getFilesDir() + "/Thumbnails/", fname);
-                if (file.exists()) file.delete();
+            minLatitude = latitudeMin;
+            minLongitude = longitudeMin;
+        }
 
-                if (drawScale > 0) {
-                    int groupOfLocations = 200;
-                    Path path = new Path();
-                    List<LatLng> latlngList = new ArrayList<>();
+        /**
+         * Normalizes a point and adds it to the polyline,
+         * if it is far enough from the last point of the polyline.
+         */
+        private void addPoint(double latitude, double longitude) {
+            x = normalize(lonOffset + (longitude - minLongitude) * distanceProportion / drawScale);
+            y = normalize(1 - (latOffset + (latitude - minLatitude) / drawScale));
+            if ((numberOfPoints == 0)
+                    || (Math.abs(x - points[2 * numberOfPoints - 2]) >= THUMBNAIL_MIN_STEP)
+                    || (Math.abs(y - points[2 * numberOfPoints - 1]) >= THUMBNAIL_MIN_STEP)) appendPoint();
+        }
 
-                    //Log.w("myApp", "[#] GPSApplication.java - Thumbnailer Thread started");
-                    for (int i = 0; i < numberOfLocations; i += groupOfLocations) {
-                        latlngList.addAll(gpsDataBase.getLatLngList(id, i, i + groupOfLocations - 1));
-                    }
-                    //Log.w("myApp", "[#] GPSApplication.java - Added " + latlngList.size() + " items to Path");
-                    if (!latlngList.isEmpty()) {
-                        Bitmap thumbBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
-                        Canvas thumbCanvas = new Canvas(thumbBitmap);
-
-                        for (int i = 0; i < latlngList.size(); i++) {
-                            if (i == 0)
-                                path.moveTo((float) (lonOffset + margin + sizeMinusMargins * ((latlngList.get(i).longitude - minLongitude) * distanceProportion / drawScale)),
-                                        (float) (-latOffset + size - (margin + sizeMinusMargins * ((latlngList.get(i).latitude - minLatitude) / drawScale))));
-                            else
-                                path.lineTo((float) (lonOffset + margin + sizeMinusMargins * ((latlngList.get(i).longitude - minLongitude) * distanceProportion / drawScale)),
-                                        (float) (-latOffset + size - (margin + sizeMinusMargins * ((latlngList.get(i).latitude - minLatitude) / drawScale))));
-                        }
-                        thumbCanvas.drawPath(path, bgPaint);
-                        thumbCanvas.drawPoint((float) (lonOffset + margin + sizeMinusMargins * ((latlngList.get(latlngList.size()-1).longitude - minLongitude) * distanceProportion / drawScale)),
-                                (float) (-latOffset + size - (margin + sizeMinusMargins * ((latlngList.get(latlngList.size()-1).latitude - minLatitude) / drawScale))), endDotBGPaint);
-                        thumbCanvas.drawPath(path, drawPaint);
-                        thumbCanvas.drawPoint((float) (lonOffset + margin + sizeMinusMargins * ((latlngList.get(latlngList.size()-1).longitude - minLongitude) * distanceProportion / drawScale)),
-                                (float) (-latOffset + size - (margin + sizeMinusMargins * ((latlngList.get(latlngList.size()-1).latitude - minLatitude) / drawScale))), endDotdrawPaint);
-
-                        try {
-                            FileOutputStream out = new FileOutputStream(file);
-                            //Log.w("myApp", "[#] GPSApplication.java - FileOutputStream out = new FileOutputStream(file)");
-                            //boolean res = thumbBitmap.compress(Bitmap.CompressFormat.PNG, 60, out);
-                            thumbBitmap.compress(Bitmap.CompressFormat.PNG, 60, out);
-                            //Log.w("myApp", "[#] GPSApplication.java - thumbBitmap.compress(Bitmap.CompressFormat.PNG, 60, out): " + res);
-                            out.flush();
-                            out.close();
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            //Log.w("myApp", "[#] GPSApplication.java - Unable to save: " + DIRECTORY_TEMP + "/" + fname);
-                        }
+        private char normalize(double coordinate) {
+            return (char) Math.round(Math.max(0, Math.min(1, coordinate)) * ThumbnailStore.MAX_COORDINATE);
+        }
 
-                        EventBus.getDefault().post(EventBusMSG.REFRESH_TRACKLIST);
-                    }
+        private void appendPoint() {
+            if (2 * numberOfPoints == points.length) {
+                char[] newPoints = new char[points.length * 2];
+                System.arraycopy(points, 0, newPoints, 0, points.length);
+                points = newPoints;
+            }
+            points[2 * numberOfPoints] = x;
+            points[2 * numberOfPoints + 1] = y;
+            numberOfPoints++;
+        }
+
+        /**
+         * Builds the normalized polyline of the Thumbnail.
+         *
+         * @return true if the polyline has been built, false if the Track cannot be drawn
+         */
+        private boolean draw() {
+            if (drawScale <= 0) return false;
+            points = new char[2 * 256];
+            numberOfPoints = 0;
+
+            if (polyline != null) {
+                for (int i = 0; i < polyline.size(); i++) addPoint(polyline.getLatitude(i), polyline.getLongitude(i));
+                if (polyline.getNumberOfLocations() > 0) addPoint(polyline.getLastLatitude(), polyline.getLastLongitude());
+            } else {
+                // Streams the locations directly into the polyline, skipping the points too close
+                TrackPointCursor trackPointCursor = gpsDataBase.getLocationsCursor(id);
+                try {
+                    while (trackPointCursor.moveToNext()) addPoint(trackPointCursor.getLatitude(), trackPointCursor.getLongitude());
+                } finally {
+                    trackPointCursor.close();
+                }
+            }
+            if (numberOfPoints == 0) return false;
+            // The polyline always ends on the last point
+            if ((x != points[2 * numberOfPoints - 2]) || (y != points[2 * numberOfPoints - 1])) appendPoint();
+            return true;
+        }
+
+        /**
+         * Saves the Thumbnail into the ThumbnailStore, replacing the previous one.
+         *
+         * @param isDrawn true if the polyline has been built, false to only delete the previous Thumbnail
+         */
+        private void save(boolean isDrawn) {
+            if (!isDrawn) {
+                thumbnailStore.remove(id);
+                return;
+            }
+            thumbnailStore.put(id, points, numberOfPoints);
+            //Log.w("myApp", "[#] GPSApplication.java - Thumbnail " + id + " saved: " + numberOfPoints + " points");
+
+            if (priority == PRIORITY_BACKFILL) {
+                // The backfill refreshes the tracklist at a lower rate (and at its end)
+                synchronized (thumbnailsPending) {
+                    if (SystemClock.elapsedRealtime() - backfillRefreshTime < BACKFILL_REFRESH_INTERVAL) return;
+                    backfillRefreshTime = SystemClock.elapsedRealtime();
                 }
             }
+            EventBus.getDefault().post(EventBusMSG.REFRESH_TRACKLIST);
         }
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Geodesic - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+/**
+ * The distance and the bearing between two points on the WGS84 ellipsoid.
+ * <br>
+ * It uses the same Vincenty's inverse formula of Location.distanceTo() and
+ * Location.bearingTo(), so it gives the same results, but it works directly
+ * on the coordinates, without the need to create (or to modify) any Location object.
+ */
+final class Geodesic {
+
+    private static final int MAX_ITERATIONS = 20;
+    private static final double A = 6378137.0;                  // WGS84 major axis
+    private static final double B = 6356752.3142;               // WGS84 semi-minor axis
+    private static final double F = (A - B) / A;                // Flattening
+    private static final double A_SQ_MINUS_B_SQ_OVER_B_SQ = (A * A - B * B) / (B * B);
+
+    private Geodesic() {}
+
+    /**
+     * @return the distance, in meters, between the start point and the end point
+     */
+    static float distance(double startLatitude, double startLongitude, double endLatitude, double endLongitude) {
+        return (float) compute(startLatitude, startLongitude, endLatitude, endLongitude, false);
+    }
+
+    /**
+     * @return the initial bearing, in degrees (-180..180), from the start point to the end point
+     */
+    static float initialBearing(double startLatitude, double startLongitude, double endLatitude, double endLongitude) {
+        return (float) compute(startLatitude, startLongitude, endLatitude, endLongitude, true);
+    }
+
+    /**
+     * The Vincenty's inverse formula.
+     * Based on http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf (section 4).
+     *
+     * @param bearing true to return the initial bearing (in degrees), false to return the distance (in meters)
+     */
+    private static double compute(double lat1, double lon1, double lat2, double lon2, boolean bearing) {
+        lat1 *= Math.PI / 180.0;
+        lat2 *= Math.PI / 180.0;
+        lon1 *= Math.PI / 180.0;
+        lon2 *= Math.PI / 180.0;
+
+        double L = lon2 - lon1;
+        double a = 0.0;
+        double U1 = Math.atan((1.0 - F) * Math.tan(lat1));
+        double U2 = Math.atan((1.0 - F) * Math.tan(lat2));
+
+        double cosU1 = Math.cos(U1);
+        double cosU2 = Math.cos(U2);
+        double sinU1 = Math.sin(U1);
+        double sinU2 = Math.sin(U2);
+        double cosU1cosU2 = cosU1 * cosU2;
+        double sinU1sinU2 = sinU1 * sinU2;
+
+        double sigma = 0.0;
+        double deltaSigma = 0.0;
+        double cosSqAlpha;
+        double cos2SM;
+        double cosSigma;
+        double sinSigma;
+        double cosLambda = 0.0;
+        double sinLambda = 0.0;
+
+        double lambda = L;                                      // Initial guess
+        for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+            double lambdaOrig = lambda;
+            cosLambda = Math.cos(lambda);
+            sinLambda = Math.sin(lambda);
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            double sinSqSigma = t1 * t1 + t2 * t2;              // (14)
+            sinSigma = Math.sqrt(sinSqSigma);
+            cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda;     // (15)
+            sigma = Math.atan2(sinSigma, cosSigma);             // (16)
+            double sinAlpha = (sinSigma == 0) ? 0.0 :
+                    cosU1cosU2 * sinLambda / sinSigma;          // (17)
+            cosSqAlpha = 1.0 - sinAlpha * sinAlpha;
+            cos2SM = (cosSqAlpha == 0) ? 0.0 :
+                    cosSigma - 2.0 * sinU1sinU2 / cosSqAlpha;   // (18)
+
+            double uSquared = cosSqAlpha * A_SQ_MINUS_B_SQ_OVER_B_SQ;
+            a = 1 + (uSquared / 16384.0) *                      // (3)
+                    (4096.0 + uSquared * (-768 + uSquared * (320.0 - 175.0 * uSquared)));
+            double b = (uSquared / 1024.0) *                    // (4)
+                    (256.0 + uSquared * (-128.0 + uSquared * (74.0 - 47.0 * uSquared)));
+            double c = (F / 16.0) * cosSqAlpha * (4.0 + F * (4.0 - 3.0 * cosSqAlpha));     // (10)
+            double cos2SMSq = cos2SM * cos2SM;
+            deltaSigma = b * sinSigma *                         // (6)
+                    (cos2SM + (b / 4.0) * (cosSigma * (-1.0 + 2.0 * cos2SMSq)
+                            - (b / 6.0) * cos2SM * (-3.0 + 4.0 * sinSigma * sinSigma) * (-3.0 + 4.0 * cos2SMSq)));
+
+            lambda = L + (1.0 - c) * F * sinAlpha *             // (11)
+                    (sigma + c * sinSigma * (cos2SM + c * cosSigma * (-1.0 + 2.0 * cos2SM * cos2SM)));
+
+            double delta = (lambda - lambdaOrig) / lambda;
+            if (Math.abs(delta) < 1.0e-12) break;
+        }
+
+        if (bearing) {
+            float initialBearing = (float) Math.atan2(cosU2 * sinLambda, cosU1 * sinU2 - sinU1 * cosU2 * cosLambda);
+            initialBearing *= 180.0 / Math.PI;
+            return initialBearing;
+        }
+        return B * a * (sigma - deltaSigma);
+    }
+}
@@ -1,31 +0,0 @@
-/*
- * LatLng - Java Class for Android
- * Created by G.Capelli on 3/7/2016
- * This file is part of BasicAirData GPS Logger
- *
- * Copyright (C) 2011 BasicAirData
- *
- * This program is free software: you can redistribute it and/or modify
- * it under the terms of the GNU General Public License as published by
- * the Free Software Foundation, either version 3 of the License, or
- * (at your option) any later version.
- *
- * This program is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
- * GNU General Public License for more details.
- *
- * You should have received a copy of the GNU General Public License
- * along with this program. If not, see <http://www.gnu.org/licenses/>.
- */
-
-package eu.basicairdata.graziano.gpslogger;
-
-/**
- * The data structure that describes a 2D point on the Earth surface.
- * It is used to create the thumbnails of the Tracks.
- */
-class LatLng {
-    double latitude;
-    double longitude;
-}
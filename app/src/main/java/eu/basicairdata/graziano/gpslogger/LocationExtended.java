@@ -23,18 +23,27 @@ package eu.basicairdata.graziano.gpslogger;
 
 import android.location.Location;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
 
 /**
  * The Location Class, including some extra stuff in order to manage the orthometric
  * height using the EGM Correction.
+ * The EGM Correction is evaluated lazily, the first time it is requested.
  */
 public class LocationExtended {
+
+    // The number of EGM lookups that would have been done by the constructor
+    // (when the EGM grid is loaded) and that have not been requested (yet)
+    private static final AtomicLong egmLookupsAvoided = new AtomicLong();
+
     private Location location;
     private String description              = "";
     private double altitudeEGM96Correction  = NOT_AVAILABLE;
     private int numberOfSatellites          = NOT_AVAILABLE;
     private int numberOfSatellitesUsedInFix = NOT_AVAILABLE;
+    private boolean isEGMLookupDeferred     = false;        // True if the EGM grid was loaded on creation
 
     /**
      * The constructor.
@@ -44,11 +53,19 @@ public class LocationExtended {
     public LocationExtended(Location location) {
         this.location = location;
         EGM96 egm96 = EGM96.getInstance();
-        if (egm96 != null) {
-            if (egm96.isLoaded()) altitudeEGM96Correction = egm96.getEGMCorrection(this.location.getLatitude(), this.location.getLongitude());
+        if ((egm96 != null) && egm96.isLoaded()) {
+            isEGMLookupDeferred = true;
+            egmLookupsAvoided.incrementAndGet();
         }
     }
 
+    /**
+     * @return the number of EGM lookups avoided by the lazy evaluation of the EGM Correction
+     */
+    public static long getEGMLookupsAvoided() {
+        return egmLookupsAvoided.get();
+    }
+
     // ------------------------------------------------------------------------- Getters and Setters
 
     public Location getLocation() {
@@ -94,14 +111,24 @@ public class LocationExtended {
     }
 
     /**
+     * The correction is evaluated on the first call.
+     * The method is synchronized because the same location can be used
+     * at the same time by the UI and by the DB thread (the current fix).
+     *
      * @return the altitude correction, in meters, based on EGM96
      */
-    public double getAltitudeEGM96Correction(){
+    public synchronized double getAltitudeEGM96Correction(){
         if (altitudeEGM96Correction == NOT_AVAILABLE) {
             //Log.w("myApp", "[#] LocationExtended.java - _AltitudeEGM96Correction == NOT_AVAILABLE");
             EGM96 egm96 = EGM96.getInstance();
             if (egm96 != null) {
-                if (egm96.isLoaded()) altitudeEGM96Correction = egm96.getEGMCorrection(location.getLatitude(), location.getLongitude());
+                if (egm96.isLoaded()) {
+                    altitudeEGM96Correction = egm96.getEGMCorrection(location.getLatitude(), location.getLongitude());
+                    if (isEGMLookupDeferred) {
+                        isEGMLookupDeferred = false;            // The deferred lookup is done: it has not been avoided
+                        egmLookupsAvoided.decrementAndGet();
+                    }
+                }
             }
         }
         return altitudeEGM96Correction;
@@ -0,0 +1,405 @@
+/*
+ * PagedTrackList - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The list of the Tracks shown on the Tracklist, the newest first.
+ * <br>
+ * The list keeps in memory only the ids of the archived Tracks, read from the DB
+ * with a single light query; the Tracks are loaded from the DB when needed,
+ * PAGE_SIZE at a time, and kept into an LRU cache of CACHE_SIZE Tracks.
+ * The Tracklist never reads the DB on the main thread: it requests the Tracks with requestTrack,
+ * and the pages not in memory are loaded on a background thread (the loader).
+ * The current Track, when visible, is always on top of the list.
+ * <br>
+ * The list is updated incrementally: the new Tracks are added reading only the ids
+ * newer than the ones already in the list, and the deleted Tracks are removed without
+ * reading the DB. The Tracklist applies the differences between its ids and the ones
+ * of the list (see TrackAdapter.update).
+ * <br>
+ * The selection is stored by id, so it survives the eviction of the Tracks from the cache.
+ * All the methods are thread safe.
+ */
+class PagedTrackList {
+
+    /**
+     * The listener of requestTracks.
+     */
+    interface TracksListener {
+        /**
+         * Called on the loader when the requested Tracks are loaded.
+         *
+         * @param tracks the Tracks found, in the order of the request
+         */
+        void onTracksLoaded(List<Track> tracks);
+    }
+
+    static final int PAGE_SIZE = 32;                    // The number of Tracks loaded from the DB at a time
+    private static final int CACHE_SIZE = 8 * PAGE_SIZE;    // The maximum number of Tracks kept in memory
+
+    private final DatabaseHandler gpsDataBase;
+    private final Runnable onPageLoaded;
+    private long[] trackIDs = new long[64];             // The ids of the archived Tracks, the newest first
+    private int size = 0;                               // The number of archived Tracks
+    private boolean isLoaded = false;
+    private Track currentTrack = null;                  // The current Track, on top of the list (null if not visible)
+    private final Set<Long> selectedIDs = new HashSet<>();
+    private final LinkedHashMap<Long, Track> cache      // The Tracks loaded, by id, in access order
+            = new LinkedHashMap<Long, Track>(2 * CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Track> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+    private final Set<Long> tracksLoading = new HashSet<>();    // The ids of the Tracks of the pages queued on the loader
+    private final ThreadPoolExecutor loader = new ThreadPoolExecutor(1, 1,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "TrackListLoader");
+                }
+            });
+
+    /**
+     * Creates the list. It is void until the first update.
+     *
+     * @param gpsDataBase the DB of the Tracks
+     * @param onPageLoaded the callback to call (on the loader) when a page requested with requestTrack is loaded
+     */
+    PagedTrackList(DatabaseHandler gpsDataBase, Runnable onPageLoaded) {
+        this.gpsDataBase = gpsDataBase;
+        this.onPageLoaded = onPageLoaded;
+        loader.allowCoreThreadTimeOut(true);
+    }
+
+    // ----------------------------------------------------------------------  The content
+
+    /**
+     * Updates the list with the Tracks added to the DB.
+     * The first time it reads all the ids of the archived Tracks, then only the newer ones.
+     * The DB is read outside the lock, so the list can be used meanwhile.
+     *
+     * @param lastArchivedID the id of the newest archived Track (the current Track excluded)
+     * @param track the current Track
+     * @param isCurrentTrackVisible true if the current Track must be shown on top of the list
+     */
+    void update(long lastArchivedID, Track track, boolean isCurrentTrackVisible) {
+        final boolean wasLoaded;
+        final long firstNewID;
+        synchronized (this) {
+            wasLoaded = isLoaded;
+            firstNewID = ((size > 0) && isLoaded) ? trackIDs[0] + 1 : 0;
+        }
+        final List<Long> newIDs = (!wasLoaded || (lastArchivedID >= firstNewID))
+                ? gpsDataBase.getTrackIDsList(firstNewID, lastArchivedID, false) : null;
+        synchronized (this) {
+            // The list could be changed while reading the DB: if it has been cleared, the ids are read again
+            // on the next update, otherwise only the ids newer than the ones already in the list are added
+            if ((newIDs != null) && !(wasLoaded && !isLoaded)) {
+                if (!isLoaded) size = 0;
+                isLoaded = true;
+                int n = 0;
+                while ((n < newIDs.size()) && ((size == 0) || (newIDs.get(n) > trackIDs[0]))) n++;
+                if (n > 0) {
+                    long[] ids = (size + n > trackIDs.length) ? new long[2 * (size + n)] : trackIDs;
+                    System.arraycopy(trackIDs, 0, ids, n, size);
+                    for (int i = 0; i < n; i++) ids[i] = newIDs.get(i);
+                    trackIDs = ids;
+                    size += n;
+                }
+            }
+            // The previous current Track, just archived, is kept without reading it again
+            if ((currentTrack != null) && (currentTrack != track) && (indexOf(currentTrack.getId()) >= 0))
+                cache.put(currentTrack.getId(), currentTrack);
+            currentTrack = isCurrentTrackVisible ? track : null;
+            if (currentTrack != null) currentTrack.setSelected(selectedIDs.contains(currentTrack.getId()));
+        }
+    }
+
+    /**
+     * Clears the list and the cache. The ids will be read again on the next update.
+     * It is used when the Tracks are changed directly on the DB.
+     */
+    synchronized void clear() {
+        size = 0;
+        isLoaded = false;
+        cache.clear();
+    }
+
+    /**
+     * Removes some Tracks from the list.
+     *
+     * @param ids the ids of the Tracks
+     */
+    synchronized void remove(long[] ids) {
+        Set<Long> removedIDs = new HashSet<>(2 * ids.length);
+        for (long id : ids) {
+            removedIDs.add(id);
+            cache.remove(id);
+            selectedIDs.remove(id);
+        }
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {               // A single pass on the list
+            if (!removedIDs.contains(trackIDs[i])) trackIDs[newSize++] = trackIDs[i];
+        }
+        size = newSize;
+    }
+
+    /**
+     * @return the ids of the Tracks of the list, the newest first
+     */
+    synchronized long[] getIDs() {
+        final int offset = (currentTrack != null) ? 1 : 0;
+        long[] ids = new long[size + offset];
+        if (currentTrack != null) ids[0] = currentTrack.getId();
+        System.arraycopy(trackIDs, 0, ids, offset, size);
+        return ids;
+    }
+
+    /**
+     * @return the number of Tracks of the list
+     */
+    synchronized int size() {
+        return size + ((currentTrack != null) ? 1 : 0);
+    }
+
+    /**
+     * Returns a Track of the list.
+     * If the Track is not in memory, it is loaded from the DB with the other Tracks of its page,
+     * on the calling thread (not on the main thread, see requestTrack).
+     *
+     * @param id the id of the Track
+     * @return the Track, or null if it is not in the list
+     */
+    Track getTrack(long id) {
+        final long[] pageIDs;
+        synchronized (this) {
+            if ((currentTrack != null) && (currentTrack.getId() == id)) return currentTrack;
+            Track track = cache.get(id);
+            if (track != null) return track;
+            final int index = indexOf(id);
+            if (index < 0) return null;
+            pageIDs = getPageIDs(index);
+        }
+        addPage(readPage(pageIDs));                     // The DB is read outside the lock
+        synchronized (this) {
+            return cache.get(id);
+        }
+    }
+
+    /**
+     * Returns a Track of the list, if it is in memory.
+     * Otherwise it returns null, and the Track is loaded on the loader with the other Tracks of its page:
+     * when the page is loaded, the loader calls onPageLoaded.
+     * It never reads the DB, so it can be called on the main thread.
+     *
+     * @param id the id of the Track
+     * @return the Track, or null if it is not yet in memory, or if it is not in the list
+     */
+    synchronized Track requestTrack(long id) {
+        if ((currentTrack != null) && (currentTrack.getId() == id)) return currentTrack;
+        Track track = cache.get(id);
+        if (track != null) return track;
+        final int index = indexOf(id);
+        if ((index < 0) || tracksLoading.contains(id)) return null;
+        final long[] pageIDs = getPageIDs(index);
+        for (long pageID : pageIDs) tracksLoading.add(pageID);
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    addPage(readPage(pageIDs));
+                } finally {
+                    synchronized (PagedTrackList.this) {
+                        for (long pageID : pageIDs) tracksLoading.remove(pageID);
+                    }
+                }
+                onPageLoaded.run();
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Loads some Tracks of the list on the loader, reading from the DB only the pages not in memory,
+     * and then calls the listener on the loader.
+     * It never reads the DB on the calling thread, so it can be called on the main thread.
+     *
+     * @param ids the ids of the Tracks
+     * @param listener the listener that receives the Tracks
+     */
+    void requestTracks(final List<Long> ids, final TracksListener listener) {
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Track> tracks = new ArrayList<>(ids.size());
+                for (Long id : ids) {
+                    Track track = getTrack(id);         // The Tracks are kept here, so they can't be evicted from the cache meanwhile
+                    if (track != null) tracks.add(track);
+                }
+                listener.onTracksLoaded(tracks);
+            }
+        });
+    }
+
+    /**
+     * @return the ids of the page that contains the archived Track with the given index
+     */
+    private long[] getPageIDs(int index) {
+        final int start = index - index % PAGE_SIZE;
+        final int end = Math.min(size, start + PAGE_SIZE);
+        long[] pageIDs = new long[end - start];
+        System.arraycopy(trackIDs, start, pageIDs, 0, pageIDs.length);
+        return pageIDs;
+    }
+
+    /**
+     * Reads a page from the DB. It must be called without holding the lock of the list.
+     *
+     * @param pageIDs the ids of the page, the newest first
+     */
+    private List<Track> readPage(long[] pageIDs) {
+        // The ids of the page are contiguous into the list, so a single range query reads the whole page
+        return gpsDataBase.getTracksList(pageIDs[pageIDs.length - 1], pageIDs[0]);
+    }
+
+    /**
+     * Puts into the cache the Tracks of a page read from the DB.
+     * The Tracks already in memory are not replaced, and the ones removed from the list
+     * while reading are discarded.
+     */
+    private synchronized void addPage(List<Track> tracks) {
+        for (Track t : tracks) {
+            if (cache.containsKey(t.getId()) || (indexOf(t.getId()) < 0)) continue;
+            t.setSelected(selectedIDs.contains(t.getId()));
+            cache.put(t.getId(), t);
+        }
+        //Log.w("myApp", "[#] PagedTrackList.java - Loaded " + tracks.size() + " Tracks");
+    }
+
+    /**
+     * @return the index of the archived Track with the given id, or -1 if not found
+     */
+    private int indexOf(long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {                           // Binary search, the ids are in descending order
+            final int mid = (low + high) >>> 1;
+            if (trackIDs[mid] > id) low = mid + 1;
+            else if (trackIDs[mid] < id) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position into the list of the Track with the given id, or -1 if not found
+     */
+    private int getPosition(long id) {
+        if (currentTrack != null) {
+            if (currentTrack.getId() == id) return 0;
+            final int index = indexOf(id);
+            return (index < 0) ? -1 : index + 1;
+        }
+        return indexOf(id);
+    }
+
+    // ----------------------------------------------------------------------  The selection
+
+    synchronized boolean isSelected(long id) {
+        return selectedIDs.contains(id);
+    }
+
+    /**
+     * Selects or deselects a Track.
+     *
+     * @param id the id of the Track
+     * @param selected the new state
+     */
+    synchronized void setSelected(long id, boolean selected) {
+        if (selected) selectedIDs.add(id);
+        else selectedIDs.remove(id);
+        if ((currentTrack != null) && (currentTrack.getId() == id)) currentTrack.setSelected(selected);
+        Track track = cache.get(id);
+        if (track != null) track.setSelected(selected);
+    }
+
+    /**
+     * Selects or deselects all the Tracks between two Tracks of the list, inclusive.
+     *
+     * @param fromID the id of the first Track
+     * @param toID the id of the last Track
+     * @param selected the new state
+     */
+    synchronized void setSelected(long fromID, long toID, boolean selected) {
+        final int fromPosition = getPosition(fromID);
+        final int toPosition = getPosition(toID);
+        if ((fromPosition < 0) || (toPosition < 0)) return;
+        final int offset = (currentTrack != null) ? 1 : 0;
+        for (int p = Math.min(fromPosition, toPosition); p <= Math.max(fromPosition, toPosition); p++) {
+            setSelected(p < offset ? currentTrack.getId() : trackIDs[p - offset], selected);
+        }
+    }
+
+    /**
+     * @return the number of selected Tracks
+     */
+    synchronized int getNumberOfSelectedTracks() {
+        return selectedIDs.size();
+    }
+
+    /**
+     * @return the ids of the selected Tracks, in the order of the list
+     */
+    synchronized List<Long> getSelectedIDs() {
+        List<Long> ids = new ArrayList<>(selectedIDs.size());
+        if (selectedIDs.isEmpty()) return ids;
+        if ((currentTrack != null) && selectedIDs.contains(currentTrack.getId())) ids.add(currentTrack.getId());
+        for (int i = 0; (i < size) && (ids.size() < selectedIDs.size()); i++) {
+            if (selectedIDs.contains(trackIDs[i])) ids.add(trackIDs[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Deselects all the Tracks.
+     *
+     * @return the ids of the Tracks deselected
+     */
+    synchronized List<Long> deselectAll() {
+        List<Long> ids = getSelectedIDs();
+        for (Long id : ids) setSelected(id, false);
+        selectedIDs.clear();
+        return ids;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * ThumbnailPolyline - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+/**
+ * A decimated polyline of a Track, updated incrementally while the Track is recorded
+ * and used to draw its Thumbnail without reading the Trackpoints from the DB.
+ * <br>
+ * A point is stored only if it is at least "step" degrees far from the last point stored,
+ * where the step is a fraction (1 / RESOLUTION) of the size of the Track.
+ * When the polyline is full, the step is doubled and the points are decimated again,
+ * so the memory used is limited regardless of the length of the Track.
+ * The last point added is always kept apart, so the polyline ends on the last Trackpoint.
+ * <br>
+ * The class is not thread safe: it is updated by a single thread, that passes copies
+ * of it to the other threads.
+ */
+class ThumbnailPolyline {
+
+    private static final int MAX_POINTS = 8192;         // The maximum number of points stored
+    private static final int RESOLUTION = 512;          // The minimum step is 1/512 of the size of the Track
+
+    private final double[] latitude;
+    private final double[] longitude;
+    private int size = 0;                               // The number of points stored
+
+    private long numberOfLocations = 0;                 // The number of points added
+    private double lastLatitude;                        // The last point added
+    private double lastLongitude;
+    private double latitudeMin = 0;
+    private double latitudeMax = 0;
+    private double longitudeMin = 0;
+    private double longitudeMax = 0;
+    private double distanceProportion = 1;              // The proportion between longitude and latitude degrees
+    private double step = 0;                            // The minimum distance between two points stored, in degrees of latitude
+
+    ThumbnailPolyline() {
+        latitude = new double[MAX_POINTS];
+        longitude = new double[MAX_POINTS];
+    }
+
+    private ThumbnailPolyline(ThumbnailPolyline other) {
+        latitude = new double[other.size];
+        longitude = new double[other.size];
+        System.arraycopy(other.latitude, 0, latitude, 0, other.size);
+        System.arraycopy(other.longitude, 0, longitude, 0, other.size);
+        size = other.size;
+        numberOfLocations = other.numberOfLocations;
+        lastLatitude = other.lastLatitude;
+        lastLongitude = other.lastLongitude;
+        latitudeMin = other.latitudeMin;
+        latitudeMax = other.latitudeMax;
+        longitudeMin = other.longitudeMin;
+        longitudeMax = other.longitudeMax;
+        distanceProportion = other.distanceProportion;
+        step = other.step;
+    }
+
+    /**
+     * @return a read-only copy of the polyline, that can be passed to another thread
+     */
+    ThumbnailPolyline copy() {
+        return new ThumbnailPolyline(this);
+    }
+
+    /**
+     * Adds a point to the polyline.
+     */
+    void add(double lat, double lon) {
+        if (numberOfLocations == 0) {
+            latitudeMin = latitudeMax = lat;
+            longitudeMin = longitudeMax = lon;
+            distanceProportion = Math.cos(Math.toRadians(Math.abs(lat)));
+        } else {
+            if (lat < latitudeMin) latitudeMin = lat;
+            if (lat > latitudeMax) latitudeMax = lat;
+            if (lon < longitudeMin) longitudeMin = lon;
+            if (lon > longitudeMax) longitudeMax = lon;
+        }
+        numberOfLocations++;
+        lastLatitude = lat;
+        lastLongitude = lon;
+
+        if ((size == 0) || isFarFrom(size - 1, lat, lon)) {
+            if (size == latitude.length) decimate();
+            latitude[size] = lat;
+            longitude[size] = lon;
+            size++;
+        }
+    }
+
+    private boolean isFarFrom(int index, double lat, double lon) {
+        return (Math.abs(lat - latitude[index]) >= step)
+                || (Math.abs(lon - longitude[index]) * distanceProportion >= step);
+    }
+
+    /**
+     * Increases the step and removes the points closer than the new step,
+     * until some places are free.
+     */
+    private void decimate() {
+        final double trackSize = Math.max(latitudeMax - latitudeMin, (longitudeMax - longitudeMin) * distanceProportion);
+        do {
+            step = Math.max(step * 2, trackSize / RESOLUTION);
+            if (step == 0) step = Double.MIN_VALUE;             // All the points are equal
+            int newSize = 1;
+            for (int i = 1; i < size; i++) {
+                if (isFarFrom(newSize - 1, latitude[i], longitude[i])) {
+                    latitude[newSize] = latitude[i];
+                    longitude[newSize] = longitude[i];
+                    newSize++;
+                }
+            }
+            size = newSize;
+        } while (size == latitude.length);
+    }
+
+    /**
+     * @return the number of points added to the polyline (that is the number of
+     *         Trackpoints of the Track, if the polyline is complete)
+     */
+    long getNumberOfLocations() {
+        return numberOfLocations;
+    }
+
+    /**
+     * @return the number of points stored (the last point added could be not stored)
+     */
+    int size() {
+        return size;
+    }
+
+    double getLatitude(int index) {
+        return latitude[index];
+    }
+
+    double getLongitude(int index) {
+        return longitude[index];
+    }
+
+    double getLastLatitude() {
+        return lastLatitude;
+    }
+
+    double getLastLongitude() {
+        return lastLongitude;
+    }
+
+    double getLatitudeMin() {
+        return latitudeMin;
+    }
+
+    double getLatitudeMax() {
+        return latitudeMax;
+    }
+
+    double getLongitudeMin() {
+        return longitudeMin;
+    }
+
+    double getLongitudeMax() {
+        return longitudeMax;
+    }
+}
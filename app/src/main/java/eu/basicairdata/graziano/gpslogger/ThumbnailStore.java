@@ -0,0 +1,456 @@
+/*
+ * ThumbnailStore - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The store of the Thumbnails of the Tracks.
+ * <br>
+ * The Thumbnails are stored as polylines into a single packed file: each point is a pair of
+ * 16 bit coordinates, normalized on the drawing area of the Thumbnail (0 = left/top,
+ * 65535 = right/bottom). The polylines are decimated by the Thumbnailer, so a Thumbnail
+ * takes a few KB, and it is drawn in about a millisecond.
+ * <br>
+ * The file is a sequence of records (Track id, length, points), appended at the end;
+ * a record with length 0 removes the Thumbnail of the Track. The index of the records is
+ * built when the file is opened, and the file is compacted when the removed and replaced
+ * records take more space than the valid ones.
+ * <br>
+ * The bitmaps drawn are kept into an LRU cache, so the tracklist can be scrolled
+ * without reading the file again. The file is opened, read and compacted only on
+ * a background thread (the loader), so the main thread never waits for the file:
+ * a bitmap not yet in the cache is drawn by the loader, and the UI is notified when ready.
+ */
+class ThumbnailStore {
+
+    static final int MAX_COORDINATE = 65535;            // The coordinate of the right/bottom side of the drawing area
+
+    private static final int MAGIC = 0x47505454;        // "GPTT"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;      // MAGIC + VERSION
+    private static final int RECORD_HEADER_SIZE = 12;   // Track id + length
+    private static final long COMPACT_MIN_SIZE = 1024 * 1024;    // The file is never compacted for less than 1 MB of removed records
+
+    private final File file;
+    private FileChannel fileChannel = null;
+    private long fileSize = 0;
+    private long removedSize = 0;                       // The size of the removed and replaced records
+    private final Map<Long, Record> index = new HashMap<>();    // By Track id
+
+    private final LruCache<Long, Bitmap> bitmapCache;   // The bitmaps drawn, by Track id
+
+    // The loader of the bitmaps
+    private final ThreadPoolExecutor loader = new ThreadPoolExecutor(1, 1,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "ThumbnailLoader");
+                }
+            });
+    private final Runnable onBitmapsLoaded;
+    private final Set<Long> bitmapsLoading = new HashSet<>();   // The ids of the Tracks queued on the loader. All the loading fields are guarded by it
+    private boolean isBitmapLoaded = false;             // True if a bitmap has been loaded since the last call of onBitmapsLoaded
+
+    // The drawing
+    private final int size;
+    private final int margin;
+    private final int sizeMinusMargins;
+    private final Paint drawPaint = new Paint();
+    private final Paint bgPaint = new Paint();
+    private final Paint endDotdrawPaint = new Paint();
+    private final Paint endDotBGPaint = new Paint();
+
+    /**
+     * The position of a Thumbnail into the file.
+     */
+    private static class Record {
+        final long position;                            // The position of the points
+        final int length;                               // The length of the points, in bytes
+
+        Record(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Creates the store, and starts to open its file on the loader.
+     *
+     * @param file the file of the store
+     * @param resources the resources, used to set the size and the colors of the Thumbnails
+     * @param onBitmapsLoaded the callback to call (on the loader) when the bitmaps requested are ready
+     */
+    ThumbnailStore(File file, Resources resources, Runnable onBitmapsLoaded) {
+        this.file = file;
+        this.onBitmapsLoaded = onBitmapsLoaded;
+
+        bitmapCache = new LruCache<Long, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 1024 / 16)) {   // In KB
+            @Override
+            protected int sizeOf(Long key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight() / 1024;
+            }
+        };
+
+        size = (int) (resources.getDimension(R.dimen.thumbSize));
+        margin = (int) Math.ceil(resources.getDimension(R.dimen.thumbLineWidth) * 3);
+        sizeMinusMargins = size - 2 * margin;
+
+        // Setup Paints
+        drawPaint.setColor(resources.getColor(R.color.colorThumbnailLineColor));
+        drawPaint.setAntiAlias(true);
+        drawPaint.setStrokeWidth(resources.getDimension(R.dimen.thumbLineWidth));
+        drawPaint.setStyle(Paint.Style.STROKE);
+        drawPaint.setStrokeJoin(Paint.Join.ROUND);
+        drawPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        bgPaint.setColor(Color.BLACK);
+        bgPaint.setAntiAlias(true);
+        bgPaint.setStrokeWidth(resources.getDimension(R.dimen.thumbLineWidth) * 3);
+        bgPaint.setStyle(Paint.Style.STROKE);
+        bgPaint.setStrokeJoin(Paint.Join.ROUND);
+        bgPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        endDotdrawPaint.setColor(resources.getColor(R.color.colorThumbnailLineColor));
+        endDotdrawPaint.setAntiAlias(true);
+        endDotdrawPaint.setStrokeWidth(resources.getDimension(R.dimen.thumbLineWidth) * 2.5f);
+        endDotdrawPaint.setStyle(Paint.Style.STROKE);
+        endDotdrawPaint.setStrokeJoin(Paint.Join.ROUND);
+        endDotdrawPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        endDotBGPaint.setColor(Color.BLACK);
+        endDotBGPaint.setAntiAlias(true);
+        endDotBGPaint.setStrokeWidth(resources.getDimension(R.dimen.thumbLineWidth) * 4.5f);
+        endDotBGPaint.setStyle(Paint.Style.STROKE);
+        endDotBGPaint.setStrokeJoin(Paint.Join.ROUND);
+        endDotBGPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        loader.allowCoreThreadTimeOut(true);
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                open();
+            }
+        });
+    }
+
+    // ----------------------------------------------------------------------  The file
+
+    /**
+     * Opens the file and builds the index. It is called by the loader when the store is created,
+     * and on the first use of the store, in case the loader has not yet opened it.
+     * It must not be called on the main thread.
+     */
+    synchronized void open() {
+        if (fileChannel != null) return;
+        try {
+            fileChannel = new RandomAccessFile(file, "rw").getChannel();
+            if (fileChannel.size() < FILE_HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                fileChannel.truncate(0);
+                write(header, 0);
+                fileSize = FILE_HEADER_SIZE;
+            } else readIndex();
+            if ((removedSize > COMPACT_MIN_SIZE) && (removedSize > fileSize - removedSize)) compact();
+            Log.w("myApp", "[#] ThumbnailStore.java - " + index.size() + " Thumbnails, " + fileSize + " bytes");
+        } catch (IOException e) {
+            Log.w("myApp", "[#] ThumbnailStore.java - Unable to open the store: " + e);
+        }
+    }
+
+    /**
+     * Reads the index of the records.
+     * A record truncated at the end of the file (for example by a crash) is discarded.
+     */
+    private void readIndex() throws IOException {
+        index.clear();
+        removedSize = 0;
+        long position = FILE_HEADER_SIZE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+                Log.w("myApp", "[#] ThumbnailStore.java - Invalid file, the Thumbnails will be created again");
+                position = FILE_HEADER_SIZE;
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                write(header, 0);
+            } else {
+                while (true) {
+                    long trackID = in.readLong();
+                    int length = in.readInt();
+                    if ((length < 0) || (position + RECORD_HEADER_SIZE + length > fileChannel.size())) break;
+                    int skipped = 0;
+                    while (skipped < length) {
+                        int n = in.skipBytes(length - skipped);
+                        if (n <= 0) throw new EOFException();
+                        skipped += n;
+                    }
+                    Record oldRecord = (length > 0) ? index.put(trackID, new Record(position + RECORD_HEADER_SIZE, length)) : index.remove(trackID);
+                    if (oldRecord != null) removedSize += RECORD_HEADER_SIZE + oldRecord.length;
+                    if (length == 0) removedSize += RECORD_HEADER_SIZE;
+                    position += RECORD_HEADER_SIZE + length;
+                }
+            }
+        } catch (EOFException e) {
+            // The end of the file
+        } finally {
+            in.close();
+        }
+        if (position < fileChannel.size()) fileChannel.truncate(position);
+        fileSize = position;
+    }
+
+    /**
+     * Rewrites the file with the valid records only.
+     */
+    private void compact() throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        FileChannel tmpChannel = new RandomAccessFile(tmpFile, "rw").getChannel();
+        try {
+            tmpChannel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) tmpChannel.write(header);
+            for (Map.Entry<Long, Record> entry : index.entrySet()) {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + entry.getValue().length);
+                record.putLong(entry.getKey()).putInt(entry.getValue().length);
+                read(record, entry.getValue().position);
+                record.flip();
+                while (record.hasRemaining()) tmpChannel.write(record);
+            }
+        } finally {
+            tmpChannel.close();
+        }
+        fileChannel.close();
+        if (!tmpFile.renameTo(file)) Log.w("myApp", "[#] ThumbnailStore.java - Unable to compact the file");
+        fileChannel = new RandomAccessFile(file, "rw").getChannel();
+        readIndex();
+        Log.w("myApp", "[#] ThumbnailStore.java - File compacted");
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) position += fileChannel.write(buffer, position);
+    }
+
+    private void read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = fileChannel.read(buffer, position);
+            if (n < 0) throw new EOFException();
+            position += n;
+        }
+    }
+
+    /**
+     * Appends a record to the file and updates the index.
+     *
+     * @param trackID the id of the Track
+     * @param points the points (null to remove the Thumbnail)
+     * @param numberOfPoints the number of points
+     */
+    private void append(long trackID, char[] points, int numberOfPoints) {
+        open();
+        if (fileChannel == null) return;
+        final int length = (points == null) ? 0 : numberOfPoints * 4;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putLong(trackID).putInt(length);
+        if (points != null) record.asCharBuffer().put(points, 0, numberOfPoints * 2);
+        record.position(0);
+        try {
+            write(record, fileSize);
+            Record oldRecord = (length > 0) ? index.put(trackID, new Record(fileSize + RECORD_HEADER_SIZE, length)) : index.remove(trackID);
+            if (oldRecord != null) removedSize += RECORD_HEADER_SIZE + oldRecord.length;
+            if (length == 0) removedSize += RECORD_HEADER_SIZE;
+            fileSize += RECORD_HEADER_SIZE + length;
+        } catch (IOException e) {
+            Log.w("myApp", "[#] ThumbnailStore.java - Unable to write the Thumbnail: " + e);
+        }
+    }
+
+    // ----------------------------------------------------------------------  The Thumbnails
+
+    /**
+     * @return true if the store contains the Thumbnail of the Track with the given id
+     */
+    synchronized boolean contains(long trackID) {
+        open();
+        return index.containsKey(trackID);
+    }
+
+    /**
+     * Stores the Thumbnail of a Track, replacing the previous one.
+     *
+     * @param trackID the id of the Track
+     * @param points the points of the polyline (x0, y0, x1, y1, ...), normalized from 0 to MAX_COORDINATE
+     * @param numberOfPoints the number of points
+     */
+    synchronized void put(long trackID, char[] points, int numberOfPoints) {
+        append(trackID, points, numberOfPoints);
+        bitmapCache.remove(trackID);
+    }
+
+    /**
+     * Removes the Thumbnail of a Track.
+     *
+     * @param trackID the id of the Track
+     */
+    synchronized void remove(long trackID) {
+        open();
+        if (index.containsKey(trackID)) append(trackID, null, 0);
+        bitmapCache.remove(trackID);
+    }
+
+    /**
+     * @return the points of a record, or null if not available
+     */
+    private char[] getPoints(Record record) {
+        ByteBuffer buffer = ByteBuffer.allocate(record.length);
+        try {
+            read(buffer, record.position);
+        } catch (IOException e) {
+            Log.w("myApp", "[#] ThumbnailStore.java - Unable to read the Thumbnail: " + e);
+            return null;
+        }
+        buffer.flip();
+        char[] points = new char[record.length / 2];
+        buffer.asCharBuffer().get(points);
+        return points;
+    }
+
+    /**
+     * Returns the bitmap of the Thumbnail of a Track, if it is into the cache.
+     * Otherwise it returns null, and the bitmap is drawn on the loader from the points stored:
+     * when the queued bitmaps are ready, the loader calls onBitmapsLoaded.
+     * It never waits for the file, so it can be called on the main thread.
+     *
+     * @param trackID the id of the Track
+     * @param onMissing the callback to call (on the loader) if the store doesn't contain the Thumbnail, or null
+     * @return the bitmap, or null if the bitmap is not into the cache
+     */
+    Bitmap getBitmap(final long trackID, final Runnable onMissing) {
+        Bitmap bitmap = bitmapCache.get(trackID);
+        if (bitmap != null) return bitmap;
+        synchronized (bitmapsLoading) {
+            if (!bitmapsLoading.add(trackID)) return null;     // Already queued
+        }
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean isLoaded = loadBitmap(trackID);
+                boolean isNotificationNeeded = false;
+                synchronized (bitmapsLoading) {
+                    bitmapsLoading.remove(trackID);
+                    if (isLoaded) isBitmapLoaded = true;
+                    if (isBitmapLoaded && bitmapsLoading.isEmpty()) {     // A single notification for the bitmaps queued together
+                        isBitmapLoaded = false;
+                        isNotificationNeeded = true;
+                    }
+                }
+                if (!isLoaded && (onMissing != null)) onMissing.run();
+                if (isNotificationNeeded) onBitmapsLoaded.run();
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Draws the bitmap of the Thumbnail of a Track from the points stored, and puts it into the cache.
+     * It is executed by the loader.
+     *
+     * @param trackID the id of the Track
+     * @return true if the bitmap has been drawn, false if the Thumbnail is not available
+     */
+    private boolean loadBitmap(long trackID) {
+        if (bitmapCache.get(trackID) != null) return true;
+        Record record;
+        char[] points;
+        synchronized (this) {
+            open();
+            record = index.get(trackID);
+            if (record == null) return false;
+            points = getPoints(record);
+        }
+        if (points == null) return false;
+        Bitmap bitmap = draw(points, points.length / 2);
+        if (bitmap == null) return false;
+        synchronized (this) {
+            // The Thumbnail could be replaced while drawing
+            if (index.get(trackID) == record) bitmapCache.put(trackID, bitmap);
+        }
+        return true;
+    }
+
+    /**
+     * Draws a Thumbnail.
+     *
+     * @param points the points of the polyline (x0, y0, x1, y1, ...), normalized from 0 to MAX_COORDINATE
+     * @param numberOfPoints the number of points
+     * @return the bitmap, or null if there are no points
+     */
+    Bitmap draw(char[] points, int numberOfPoints) {
+        if (numberOfPoints == 0) return null;
+        Path path = new Path();
+        float x = 0;
+        float y = 0;
+        for (int i = 0; i < numberOfPoints; i++) {
+            x = margin + (float) sizeMinusMargins * points[2 * i] / MAX_COORDINATE;
+            y = margin + (float) sizeMinusMargins * points[2 * i + 1] / MAX_COORDINATE;
+            if (i == 0) path.moveTo(x, y);
+            else path.lineTo(x, y);
+        }
+
+        Bitmap thumbBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas thumbCanvas = new Canvas(thumbBitmap);
+        synchronized (drawPaint) {                      // The Paints are shared
+            thumbCanvas.drawPath(path, bgPaint);
+            thumbCanvas.drawPoint(x, y, endDotBGPaint);
+            thumbCanvas.drawPath(path, drawPaint);
+            thumbCanvas.drawPoint(x, y, endDotdrawPaint);
+        }
+        return thumbBitmap;
+    }
+}
@@ -172,7 +172,7 @@ public class ToolbarActionMode implements ActionMode.Callback {
             menuItemEdit.setVisible(gpsApp.getNumberOfSelectedTracks() <= 1);
             menuItemShare.setVisible(gpsApp.isContextMenuShareVisible() && (gpsApp.getPrefExportGPX() || gpsApp.getPrefExportKML() || gpsApp.getPrefExportTXT()));
             menuItemExport.setVisible(gpsApp.getPrefExportGPX() || gpsApp.getPrefExportKML() || gpsApp.getPrefExportTXT());
-            menuItemDelete.setVisible(!gpsApp.getSelectedTracks().contains(gpsApp.getCurrentTrack()));
+            menuItemDelete.setVisible(!gpsApp.getTrackList().isSelected(gpsApp.getCurrentTrack().getId()));
 
             if (menuItemView.isVisible()) {
                 if (!gpsApp.getViewInApp().equals("")) {
@@ -25,6 +25,7 @@ import android.location.Location;
 
 import java.text.SimpleDateFormat;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
 
@@ -48,6 +49,11 @@ public class Track {
     public static final int TRACK_TYPE_FLIGHT   = 6;
     public static final int TRACK_TYPE_ND       = NOT_AVAILABLE;
 
+    // The groups of fields that can be changed since the last write of the Track into the DB
+    public static final int DIRTY_NONE          = 0;
+    public static final int DIRTY_STATISTICS    = 1;            // The statistics updated by each new Location or Placemark
+    public static final int DIRTY_DESCRIPTIVE   = 2;            // Name, description, start point, validmap, and type
+
     public static final int[] ACTIVITY_DRAWABLE_RESOURCE = {    // The indexes must match the Track Types previously defined:
             R.drawable.ic_tracktype_place_24dp,                 // Track.TRACK_TYPE_STEADY   = 0;
             R.drawable.ic_tracktype_walk_24dp,                  // Track.TRACK_TYPE_WALK     = 1;
@@ -131,6 +137,11 @@ public class Track {
 
     private int     type                        = TRACK_TYPE_ND;    // Saved in DB
 
+    // The groups of fields changed since the last write into the DB.
+    // It is atomic because the Track is updated by the AsyncUpdateThread (add)
+    // and by the UI thread (the edit of the properties)
+    private final AtomicInteger dirtyFields = new AtomicInteger(DIRTY_NONE);
+
     // True if the card view is selected
     private boolean isSelected = false;
 
@@ -145,19 +156,52 @@ public class Track {
      * @param location the location to be added to the Track
      */
     public void add(LocationExtended location) {
+        Location loc = location.getLocation();
+        add(loc.getLatitude(), loc.getLongitude(),
+                loc.hasAltitude() ? loc.getAltitude() : NOT_AVAILABLE,
+                loc.hasSpeed() ? loc.getSpeed() : NOT_AVAILABLE,
+                loc.hasAccuracy() ? loc.getAccuracy() : NOT_AVAILABLE,
+                loc.getTime());
+    }
+
+    /**
+     * Add a point of a TrackPointBuffer to the Track, and updates the Track statistics.
+     *
+     * @param buffer the buffer that contains the point
+     * @param index the index of the point into the buffer
+     */
+    public void add(TrackPointBuffer buffer, int index) {
+        add(buffer.latitude[index], buffer.longitude[index], buffer.altitude[index],
+                buffer.speed[index], buffer.accuracy[index], buffer.time[index]);
+    }
+
+    /**
+     * Add a point to the Track, and updates the Track statistics.
+     * The values not available must be set to NOT_AVAILABLE.
+     * The EGM96 altitude corrections of the start and of the end points are not evaluated here,
+     * but only when requested (see getEGMAltitudeCorrectionStart and getEGMAltitudeCorrectionEnd).
+     *
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     * @param altitude the raw altitude of the point
+     * @param speed the speed of the point
+     * @param accuracy the accuracy of the point
+     * @param time the time of the point
+     */
+    private void add(double latitude, double longitude, double altitude,
+                     float speed, float accuracy, long time) {
+        final double prevAltitudeStart = altitudeStart;
+        final int prevValidMap = validMap;
+
         if (numberOfLocations == 0) {
             // Init "Start" variables
-            latitudeStart = location.getLocation().getLatitude();
-            longitudeStart = location.getLocation().getLongitude();
-            if (location.getLocation().hasAltitude()) {
-                altitudeStart = location.getLocation().getAltitude();
-            } else {
-                altitudeStart = NOT_AVAILABLE;
-            }
-            egmAltitudeCorrectionStart = location.getAltitudeEGM96Correction();
-            speedStart = location.getLocation().hasSpeed() ? location.getLocation().getSpeed() : NOT_AVAILABLE;
-            accuracyStart = location.getLocation().hasAccuracy() ? location.getLocation().getAccuracy() : STANDARD_ACCURACY;
-            timeStart = location.getLocation().getTime();
+            latitudeStart = latitude;
+            longitudeStart = longitude;
+            altitudeStart = altitude;
+            egmAltitudeCorrectionStart = NOT_AVAILABLE;
+            speedStart = speed;
+            accuracyStart = accuracy != NOT_AVAILABLE ? accuracy : STANDARD_ACCURACY;
+            timeStart = time;
 
             latitudeLastStepDistance = latitudeStart;
             longitudeLastStepDistance = longitudeStart;
@@ -183,21 +227,15 @@ public class Track {
 
         timeLastFix = timeEnd;
 
-        latitudeEnd = location.getLocation().getLatitude();
-        longitudeEnd = location.getLocation().getLongitude();
-        if (location.getLocation().hasAltitude()) {
-            altitudeEnd = location.getLocation().getAltitude();
-        } else {
-            altitudeEnd = NOT_AVAILABLE;
-        }
-        egmAltitudeCorrectionEnd = location.getAltitudeEGM96Correction();
+        latitudeEnd = latitude;
+        longitudeEnd = longitude;
+        altitudeEnd = altitude;
+        egmAltitudeCorrectionEnd = NOT_AVAILABLE;
 
-        speedEnd = location.getLocation().hasSpeed() ? location.getLocation().getSpeed() : NOT_AVAILABLE;
-        accuracyEnd = location.getLocation().hasAccuracy() ? location.getLocation().getAccuracy() : STANDARD_ACCURACY;
-        timeEnd = location.getLocation().getTime();
+        speedEnd = speed;
+        accuracyEnd = accuracy != NOT_AVAILABLE ? accuracy : STANDARD_ACCURACY;
+        timeEnd = time;
 
-        if (egmAltitudeCorrectionEnd == NOT_AVAILABLE) getEGMAltitudeCorrectionEnd();
-        if (egmAltitudeCorrectionStart == NOT_AVAILABLE) getEGMAltitudeCorrectionStart();
 
         // ---------------------------------------------- Load the new value into antispikes filter
         if (altitudeEnd != NOT_AVAILABLE) altitudeFilter.load(timeEnd, altitudeEnd);
@@ -222,17 +260,7 @@ public class Track {
 
         // --------------------------- Spaces (Distances) increment if distance > sum of accuracies
 
-        // -- Temp locations for "DistanceTo"
-        Location LastStepDistanceLoc = new Location("TEMP");
-        LastStepDistanceLoc.setLatitude(latitudeLastStepDistance);
-        LastStepDistanceLoc.setLongitude(longitudeLastStepDistance);
-
-        Location EndLoc = new Location("TEMP");
-        EndLoc.setLatitude(latitudeEnd);
-        EndLoc.setLongitude(longitudeEnd);
-        // -----------------------------------
-
-        distanceInProgress = LastStepDistanceLoc.distanceTo(EndLoc);
+        distanceInProgress = Geodesic.distance(latitudeLastStepDistance, longitudeLastStepDistance, latitudeEnd, longitudeEnd);
         float DeltaDistancePlusAccuracy = distanceInProgress + accuracyEnd;
 
         if (DeltaDistancePlusAccuracy < distanceInProgress + accuracyEnd) {
@@ -297,6 +325,10 @@ public class Track {
         if (duration > 0) speedAverage = (distance + distanceInProgress) / (((float) duration) / 1000f);
         if (durationMoving > 0) speedAverageMoving = (distance + distanceInProgress) / (((float) durationMoving) / 1000f);
         numberOfLocations++;
+
+        markDirtyFields(DIRTY_STATISTICS);
+        if ((numberOfLocations == 1) || (altitudeStart != prevAltitudeStart) || (validMap != prevValidMap))
+            markDirtyFields(DIRTY_DESCRIPTIVE);
     }
 
     /**
@@ -428,14 +460,6 @@ public class Track {
 
         this.validMap = validMap;
         this.type = type;
-
-        EGM96 egm96 = EGM96.getInstance();
-        if (egm96 != null) {
-            if (egm96.isLoaded()) {
-                if (latitudeStart != NOT_AVAILABLE) egmAltitudeCorrectionStart = egm96.getEGMCorrection(latitudeStart, longitudeStart);
-                if (latitudeEnd != NOT_AVAILABLE) egmAltitudeCorrectionEnd = egm96.getEGMCorrection(latitudeEnd, longitudeEnd);
-            }
-        }
     }
 
     // ------------------------------------------------------------------------ Getters and Setters
@@ -454,6 +478,7 @@ public class Track {
 
     public void setName(String name) {
         this.name = name;
+        markDirtyFields(DIRTY_DESCRIPTIVE);
     }
 
     public String getDescription() {
@@ -462,6 +487,7 @@ public class Track {
 
     public void setDescription(String description) {
         this.description = description;
+        markDirtyFields(DIRTY_DESCRIPTIVE);
     }
 
     public double getLatitudeStart() {
@@ -640,6 +666,7 @@ public class Track {
 
     public void setType(int type){
         this.type = type;
+        markDirtyFields(DIRTY_DESCRIPTIVE);
     }
 
     public boolean isSelected() {
@@ -650,6 +677,38 @@ public class Track {
         isSelected = selected;
     }
 
+    /**
+     * @return the groups of fields (DIRTY_STATISTICS and/or DIRTY_DESCRIPTIVE)
+     * changed since the last write of the Track into the DB.
+     */
+    public int getDirtyFields() {
+        return dirtyFields.get();
+    }
+
+    /**
+     * Marks the given groups of fields as changed.
+     *
+     * @param fields the groups of fields changed (DIRTY_STATISTICS and/or DIRTY_DESCRIPTIVE)
+     */
+    private void markDirtyFields(int fields) {
+        int current;
+        do {
+            current = dirtyFields.get();
+        } while (!dirtyFields.compareAndSet(current, current | fields));
+    }
+
+    /**
+     * Marks the given groups of fields as written into the DB.
+     *
+     * @param fields the groups of fields written (DIRTY_STATISTICS and/or DIRTY_DESCRIPTIVE)
+     */
+    public void clearDirtyFields(int fields) {
+        int current;
+        do {
+            current = dirtyFields.get();
+        } while (!dirtyFields.compareAndSet(current, current & ~fields));
+    }
+
     // --------------------------------------------------------------------------------------------
 
     /**
@@ -666,11 +725,13 @@ public class Track {
      */
     public long addPlacemark(LocationExtended location) {
         this.numberOfPlacemarks++ ;
+        markDirtyFields(DIRTY_STATISTICS);
         // If the Track name has not yet been set, sets it now.
         // This means that this Placemark is the first item added to the track.
         if (name.equals("")) {
             SimpleDateFormat df2 = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US);
             name = df2.format(location.getLocation().getTime());
+            markDirtyFields(DIRTY_DESCRIPTIVE);
         }
         return numberOfPlacemarks;
     }
@@ -691,19 +752,12 @@ public class Track {
      * @return the estimated ascending altitude.
      */
     public double getEstimatedAltitudeUp(boolean egmCorrection){
-        // Retrieve EGM Corrections if available
-        if ((egmAltitudeCorrectionStart == NOT_AVAILABLE) || (egmAltitudeCorrectionEnd == NOT_AVAILABLE)) {
-            EGM96 egm96 = EGM96.getInstance();
-            if (egm96 != null) {
-                if (egm96.isLoaded()) {
-                    if (latitudeStart != NOT_AVAILABLE) egmAltitudeCorrectionStart = egm96.getEGMCorrection(latitudeStart, longitudeStart);
-                    if (latitudeEnd != NOT_AVAILABLE) egmAltitudeCorrectionEnd = egm96.getEGMCorrection(latitudeEnd, longitudeEnd);
-                }
-            }
-        }
         double egmcorr = 0;
-        if ((egmCorrection) && ((egmAltitudeCorrectionStart != NOT_AVAILABLE) && (egmAltitudeCorrectionEnd != NOT_AVAILABLE))) {
-            egmcorr = egmAltitudeCorrectionStart - egmAltitudeCorrectionEnd;
+        if (egmCorrection) {
+            // Retrieve EGM Corrections, only when needed
+            final double egmStart = getEGMAltitudeCorrectionStart();
+            final double egmEnd = getEGMAltitudeCorrectionEnd();
+            if ((egmStart != NOT_AVAILABLE) && (egmEnd != NOT_AVAILABLE)) egmcorr = egmStart - egmEnd;
         }
         double dresultUp = altitudeInProgress > 0 ? altitudeUp + altitudeInProgress : altitudeUp;
         dresultUp -= egmcorr < 0 ? egmcorr : 0;
@@ -728,19 +782,12 @@ public class Track {
      * @return the estimated descending altitude.
      */
     public double getEstimatedAltitudeDown(boolean egmCorrection){
-        // Retrieve EGM Corrections if available
-        if ((egmAltitudeCorrectionStart == NOT_AVAILABLE) || (egmAltitudeCorrectionEnd == NOT_AVAILABLE)) {
-            EGM96 egm96 = EGM96.getInstance();
-            if (egm96 != null) {
-                if (egm96.isLoaded()) {
-                    if (latitudeStart != NOT_AVAILABLE) egmAltitudeCorrectionStart = egm96.getEGMCorrection(latitudeStart, longitudeStart);
-                    if (latitudeEnd != NOT_AVAILABLE) egmAltitudeCorrectionEnd = egm96.getEGMCorrection(latitudeEnd, longitudeEnd);
-                }
-            }
-        }
         double egmcorr = 0;
-        if ((egmCorrection) && ((egmAltitudeCorrectionStart != NOT_AVAILABLE) && (egmAltitudeCorrectionEnd != NOT_AVAILABLE))) {
-            egmcorr = egmAltitudeCorrectionStart - egmAltitudeCorrectionEnd;
+        if (egmCorrection) {
+            // Retrieve EGM Corrections, only when needed
+            final double egmStart = getEGMAltitudeCorrectionStart();
+            final double egmEnd = getEGMAltitudeCorrectionEnd();
+            if ((egmStart != NOT_AVAILABLE) && (egmEnd != NOT_AVAILABLE)) egmcorr = egmStart - egmEnd;
         }
         double dresultUp = altitudeInProgress > 0 ? altitudeUp + altitudeInProgress : altitudeUp;
         dresultUp -= egmcorr < 0 ? egmcorr : 0;
@@ -777,13 +824,7 @@ public class Track {
         if (latitudeEnd != NOT_AVAILABLE) {
             if (((latitudeStart == latitudeEnd) && (longitudeStart == longitudeEnd)) || (distance == 0))
                 return NOT_AVAILABLE;
-            Location endLoc = new Location("TEMP");
-            endLoc.setLatitude(latitudeEnd);
-            endLoc.setLongitude(longitudeEnd);
-            Location startLoc = new Location("TEMP");
-            startLoc.setLatitude(latitudeStart);
-            startLoc.setLongitude(longitudeStart);
-            float bTo = startLoc.bearingTo(endLoc);
+            float bTo = Geodesic.initialBearing(latitudeStart, longitudeStart, latitudeEnd, longitudeEnd);
             if (bTo < 0) bTo += 360f;
             return bTo;
         }
@@ -33,24 +33,26 @@ import android.view.animation.AnimationUtils;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
-
 import org.greenrobot.eventbus.EventBus;
 
-import java.util.List;
-
 import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
 
 /**
  * The Adapter for the Card View of the Tracklist.
+ * <br>
+ * It shows a snapshot of the ids of the PagedTrackList, updated on the main thread by update(),
+ * and takes the Tracks from the PagedTrackList only when the cards are bound.
+ * The cards of the Tracks not yet loaded show a placeholder, until their page is loaded.
  */
 class TrackAdapter extends RecyclerView.Adapter<TrackAdapter.TrackHolder> {
 
     private static final Bitmap BMP_CURRENT_TRACK_RECORDING = BitmapFactory.decodeResource(GPSApplication.getInstance().getResources(), R.mipmap.ic_recording_48dp);
     private static final Bitmap BMP_CURRENT_TRACK_PAUSED = BitmapFactory.decodeResource(GPSApplication.getInstance().getResources(), R.mipmap.ic_paused_white_48dp);
 
-    private final List<Track> dataSet;
+    private static final int MAX_INCREMENTAL_CHANGES = PagedTrackList.PAGE_SIZE;     // Over this number of insertions and removals the whole list is refreshed
+
+    private final PagedTrackList trackList;
+    private long[] trackIDs = new long[0];              // The ids of the Tracks shown, the newest first
     boolean isLightTheme;
     private long startAnimationTime = 0;
     private long pointsCount = GPSApplication.getInstance().getCurrentTrack().getNumberOfLocations() + GPSApplication.getInstance().getCurrentTrack().getNumberOfPlacemarks();
@@ -81,9 +83,11 @@ class TrackAdapter extends RecyclerView.Adapter<TrackAdapter.TrackHolder> {
 
         @Override
         public void onClick(View v) {
-            if (GPSApplication.getInstance().getJobsPending() == 0) {
-                track.setSelected(!track.isSelected());
-                card.setSelected(track.isSelected());
+            if ((track != null) && (GPSApplication.getInstance().getJobsPending() == 0)) {
+                final boolean selected = !track.isSelected();
+                GPSApplication.getInstance().getTrackList().setSelected(track.getId(), selected);
+                track.setSelected(selected);
+                card.setSelected(selected);
                 GPSApplication.getInstance().setLastClickId(track.getId());
                 GPSApplication.getInstance().setLastClickState(track.isSelected());
                 //Log.w("myApp", "[#] TrackAdapter.java - " + (track.isSelected() ? "Selected" : "Deselected") + " id = " + GPSApplication.getInstance().getLastClickId());
@@ -94,7 +98,7 @@ class TrackAdapter extends RecyclerView.Adapter<TrackAdapter.TrackHolder> {
 
         @Override
         public boolean onLongClick(View view) {
-            if ((GPSApplication.getInstance().getJobsPending() == 0)
+            if ((track != null) && (GPSApplication.getInstance().getJobsPending() == 0)
                     && (GPSApplication.getInstance().getLastClickId() != track.getId())
                     && (GPSApplication.getInstance().getNumberOfSelectedTracks() > 0)) {
                 //Log.w("myApp", "[#] TrackAdapter.java - onLongClick");
@@ -162,8 +166,9 @@ class TrackAdapter extends RecyclerView.Adapter<TrackAdapter.TrackHolder> {
             if (tt != NOT_AVAILABLE) imageViewIcon.setImageResource(Track.ACTIVITY_DRAWABLE_RESOURCE[tt]);
             else imageViewIcon.setImageBitmap(null);
 
+            Bitmap liveThumbnail = GPSApplication.getInstance().getLiveThumbnail(trk.getId());
             if (GPSApplication.getInstance().isRecording()) {
-                imageViewThumbnail.setImageBitmap(BMP_CURRENT_TRACK_RECORDING);
+                imageViewThumbnail.setImageBitmap(liveThumbnail != null ? liveThumbnail : BMP_CURRENT_TRACK_RECORDING);
                 imageViewPulse.setVisibility(View.VISIBLE);
                 if ((pointsCount != trk.getNumberOfLocations()+trk.getNumberOfPlacemarks()) && (System.currentTimeMillis() - startAnimationTime >= 700L)) {
                     pointsCount = trk.getNumberOfLocations()+trk.getNumberOfPlacemarks();
@@ -173,10 +178,32 @@ class TrackAdapter extends RecyclerView.Adapter<TrackAdapter.TrackHolder> {
                 }
             } else {
                 imageViewPulse.setVisibility(View.INVISIBLE);
-                imageViewThumbnail.setImageBitmap(BMP_CURRENT_TRACK_PAUSED);
+                imageViewThumbnail.setImageBitmap(liveThumbnail != null ? liveThumbnail : BMP_CURRENT_TRACK_PAUSED);
             }
         }
 
+        /**
+         * Binds a placeholder card for a Track not yet loaded.
+         *
+         * @param id the id of the Track
+         */
+        void BindPlaceholder(long id) {
+            track = null;
+            card.setSelected(trackList.isSelected(id));
+            imageViewPulse.setVisibility(View.INVISIBLE);
+            textViewTrackName.setText("");
+            textViewTrackDescription.setText(GPSApplication.getInstance().getString(R.string.track_id) + " " + id);
+            textViewTrackLength.setText("");
+            textViewTrackDuration.setText("");
+            textViewTrackAltitudeGap.setText("");
+            textViewTrackMaxSpeed.setText("");
+            textViewTrackAverageSpeed.setText("");
+            textViewTrackGeopoints.setText("");
+            textViewTrackPlacemarks.setText("");
+            imageViewIcon.setImageBitmap(null);
+            imageViewThumbnail.setImageBitmap(null);
+        }
+
         /**
          * Binds a card using the given data.
          *
@@ -216,26 +243,78 @@ class TrackAdapter extends RecyclerView.Adapter<TrackAdapter.TrackHolder> {
             else imageViewIcon.setImageBitmap(null);
 
             if (GPSApplication.getInstance().getCurrentTrack().getId() == track.getId()) {
-                imageViewThumbnail.setImageBitmap (GPSApplication.getInstance().isRecording() ? BMP_CURRENT_TRACK_RECORDING : BMP_CURRENT_TRACK_PAUSED);
+                Bitmap liveThumbnail = GPSApplication.getInstance().getLiveThumbnail(track.getId());
+                if (liveThumbnail != null) imageViewThumbnail.setImageBitmap(liveThumbnail);
+                else imageViewThumbnail.setImageBitmap (GPSApplication.getInstance().isRecording() ? BMP_CURRENT_TRACK_RECORDING : BMP_CURRENT_TRACK_PAUSED);
             }
             else {
-                Glide.clear(imageViewThumbnail);
-                Glide
-                        .with(GPSApplication.getInstance().getApplicationContext())
-                        .load(GPSApplication.getInstance().getApplicationContext().getFilesDir().toString() + "/Thumbnails/" + track.getId() + ".png")
-                        .diskCacheStrategy(DiskCacheStrategy.NONE)
-                        //.skipMemoryCache(true)
-                        .error(null)
-                        .dontAnimate()
-                        .into(imageViewThumbnail);
+                // The bitmaps are cached by the ThumbnailStore; on a miss the card stays empty
+                // until the Thumbnail is drawn in background, and then the tracklist is refreshed
+                imageViewThumbnail.setImageBitmap(GPSApplication.getInstance().getThumbnail(track));
             }
         }
     }
 
-    TrackAdapter(List<Track> data) {
-        synchronized(data) {
-            this.dataSet = data;
+    TrackAdapter(PagedTrackList trackList) {
+        this.trackList = trackList;
+    }
+
+    /**
+     * Updates the ids of the Tracks shown with the ones of the PagedTrackList,
+     * notifying the insertions and the removals of the cards, and refreshes the cards shown.
+     * It must be called on the main thread.
+     */
+    void update() {
+        final long[] oldIDs = trackIDs;
+        final long[] newIDs = trackList.getIDs();
+        trackIDs = newIDs;
+        if ((oldIDs.length == 0) || (countChanges(oldIDs, newIDs) > MAX_INCREMENTAL_CHANGES)) {
+            notifyDataSetChanged();
+            return;
         }
+        // Both the lists are ordered by id, the newest first: a single merge pass finds the differences
+        int i = 0;
+        int j = 0;
+        while ((i < oldIDs.length) || (j < newIDs.length)) {
+            if ((j == newIDs.length) || ((i < oldIDs.length) && (oldIDs[i] > newIDs[j]))) {
+                notifyItemRemoved(j);
+                i++;
+            } else if ((i == oldIDs.length) || (newIDs[j] > oldIDs[i])) {
+                notifyItemInserted(j);
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        if (newIDs.length > 0) notifyItemRangeChanged(0, newIDs.length);
+    }
+
+    /**
+     * @return the number of insertions and removals between two lists of ids, ordered the newest first
+     */
+    private static int countChanges(long[] oldIDs, long[] newIDs) {
+        int changes = 0;
+        int i = 0;
+        int j = 0;
+        while ((i < oldIDs.length) || (j < newIDs.length)) {
+            if ((j == newIDs.length) || ((i < oldIDs.length) && (oldIDs[i] > newIDs[j]))) i++;
+            else if ((i == oldIDs.length) || (newIDs[j] > oldIDs[i])) j++;
+            else {
+                i++;
+                j++;
+                continue;
+            }
+            changes++;
+        }
+        return changes;
+    }
+
+    /**
+     * @return the id of the Track shown at the given position
+     */
+    long getTrackID(int position) {
+        return trackIDs[position];
     }
 
     @Override
@@ -245,11 +324,13 @@ class TrackAdapter extends RecyclerView.Adapter<TrackAdapter.TrackHolder> {
 
     @Override
     public void onBindViewHolder(TrackHolder holder, int listPosition) {
-        holder.BindTrack(dataSet.get(listPosition));
+        Track track = trackList.requestTrack(trackIDs[listPosition]);
+        if (track != null) holder.BindTrack(track);
+        else holder.BindPlaceholder(trackIDs[listPosition]);    // Not yet loaded (or just deleted, the card will be removed by update())
     }
 
     @Override
     public int getItemCount() {
-        return dataSet.size();
+        return trackIDs.length;
     }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+/*
+ * TrackPointBuffer - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
+
+/**
+ * A reusable block of points of a Track, stored as arrays of primitives
+ * (one array for each field).
+ * <br>
+ * It is filled directly from a TrackPointCursor, and it is used to process
+ * long Tracks without creating a Location and a LocationExtended for each point.
+ * The values not available are stored as NOT_AVAILABLE, as in the Database.
+ */
+class TrackPointBuffer {
+
+    final int capacity;
+    int size = 0;                                       // The number of points stored
+
+    final double[] latitude;
+    final double[] longitude;
+    final double[] altitude;
+    final float[] speed;
+    final float[] accuracy;
+    final float[] bearing;
+    final long[] time;
+    final int[] numberOfSatellites;
+    final int[] numberOfSatellitesUsedInFix;
+
+    /**
+     * Creates a void buffer.
+     *
+     * @param capacity the maximum number of points that the buffer can store
+     */
+    TrackPointBuffer(int capacity) {
+        this.capacity = capacity;
+        latitude = new double[capacity];
+        longitude = new double[capacity];
+        altitude = new double[capacity];
+        speed = new float[capacity];
+        accuracy = new float[capacity];
+        bearing = new float[capacity];
+        time = new long[capacity];
+        numberOfSatellites = new int[capacity];
+        numberOfSatellitesUsedInFix = new int[capacity];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Clears the buffer and fills it with the next points of the cursor.
+     *
+     * @param cursor the cursor to read
+     * @param maxPoints the maximum number of points to read (limited to the capacity)
+     * @return the number of points read. 0 means that the cursor has no more points.
+     */
+    int fill(TrackPointCursor cursor, int maxPoints) {
+        final int max = Math.min(maxPoints, capacity);
+        size = 0;
+        while ((size < max) && cursor.moveToNext()) {
+            latitude[size] = cursor.getLatitude();
+            longitude[size] = cursor.getLongitude();
+            altitude[size] = cursor.getAltitude();
+            speed[size] = cursor.getSpeed();
+            accuracy[size] = cursor.getAccuracy();
+            bearing[size] = cursor.getBearing();
+            time[size] = cursor.getTime();
+            numberOfSatellites[size] = cursor.getNumberOfSatellites();
+            numberOfSatellitesUsedInFix[size] = cursor.getNumberOfSatellitesUsedInFix();
+            size++;
+        }
+        return size;
+    }
+
+    boolean hasAltitude(int index) {
+        return altitude[index] != NOT_AVAILABLE;
+    }
+
+    boolean hasSpeed(int index) {
+        return speed[index] != NOT_AVAILABLE;
+    }
+
+    boolean hasAccuracy(int index) {
+        return accuracy[index] != NOT_AVAILABLE;
+    }
+
+    boolean hasBearing(int index) {
+        return bearing[index] != NOT_AVAILABLE;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * TrackPointCursor - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.location.Location;
+
+import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
+
+/**
+ * A forward-only cursor that streams the locations (or the placemarks) of a Track,
+ * ordered by number.
+ * <br>
+ * The points are read in pages of PAGE_SIZE rows, using the keyset continuation
+ * (nr > last number read) on the (track_id, nr) index, so the reading time and the
+ * memory used don't depend on the length of the Track.
+ * The values of the current point are exposed with primitive accessors,
+ * without creating any object for each point.
+ * <br>
+ * The cursor is created by the DatabaseHandler, and it must be closed after use.
+ */
+class TrackPointCursor {
+
+    static final int PAGE_SIZE = 1000;                  // The number of rows read with each query
+
+    // The indexes of the columns of the page query
+    static final int COLUMN_NUMBER                      = 0;
+    static final int COLUMN_LATITUDE                    = 1;
+    static final int COLUMN_LONGITUDE                   = 2;
+    static final int COLUMN_ALTITUDE                    = 3;
+    static final int COLUMN_SPEED                       = 4;
+    static final int COLUMN_ACCURACY                    = 5;
+    static final int COLUMN_BEARING                     = 6;
+    static final int COLUMN_TIME                        = 7;
+    static final int COLUMN_NUMBEROFSATELLITES          = 8;
+    static final int COLUMN_NUMBEROFSATELLITESUSEDINFIX = 9;
+    static final int COLUMN_NAME                        = 10;   // Placemarks only
+
+    private final SQLiteDatabase db;
+    private final String pageQuery;                     // The query of a page, with track_id and last number as arguments
+    private final String[] pageArgs = new String[2];
+    private final boolean hasName;
+
+    private Cursor cursor = null;                       // The cursor of the current page
+    private long lastNumber = -1;                       // The number of the last point read
+    private boolean isFinished = false;
+
+    /**
+     * Creates a cursor on the points of a Track.
+     *
+     * @param db the Database to read
+     * @param pageQuery the query that selects a page of points: it must select the columns
+     *                  in the order defined by the COLUMN_ constants, with 2 arguments
+     *                  (the ID of the Track and the number of the last point read),
+     *                  ordered by number and limited to PAGE_SIZE rows
+     * @param trackID the ID of the Track
+     * @param hasName true if the query selects also the name (placemarks)
+     */
+    TrackPointCursor(SQLiteDatabase db, String pageQuery, long trackID, boolean hasName) {
+        this.db = db;
+        this.pageQuery = pageQuery;
+        this.hasName = hasName;
+        pageArgs[0] = String.valueOf(trackID);
+    }
+
+    /**
+     * Creates a cursor on the points of a Track that follow the specified number.
+     *
+     * @param afterNumber the number of the point that precedes the first point to read
+     */
+    TrackPointCursor(SQLiteDatabase db, String pageQuery, long trackID, boolean hasName, long afterNumber) {
+        this(db, pageQuery, trackID, hasName);
+        lastNumber = afterNumber;
+    }
+
+    /**
+     * Moves the cursor to the next point of the Track,
+     * reading the next page from the Database when needed.
+     *
+     * @return false if there are no more points
+     */
+    boolean moveToNext() {
+        if (isFinished) return false;
+        if (cursor != null) {
+            if (cursor.moveToNext()) {
+                lastNumber = cursor.getLong(COLUMN_NUMBER);
+                return true;
+            }
+            // End of page
+            boolean isLastPage = cursor.getCount() < PAGE_SIZE;
+            cursor.close();
+            cursor = null;
+            if (isLastPage) {
+                isFinished = true;
+                return false;
+            }
+        }
+        // Next page
+        pageArgs[1] = String.valueOf(lastNumber);
+        cursor = db.rawQuery(pageQuery, pageArgs);
+        if ((cursor != null) && cursor.moveToFirst()) {
+            lastNumber = cursor.getLong(COLUMN_NUMBER);
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    /**
+     * Closes the cursor, releasing its resources.
+     */
+    void close() {
+        if (cursor != null) cursor.close();
+        cursor = null;
+        isFinished = true;
+    }
+
+    // ------------------------------------------------------------- Accessors to the current point
+
+    long getNumber() {
+        return lastNumber;
+    }
+
+    double getLatitude() {
+        return cursor.getDouble(COLUMN_LATITUDE);
+    }
+
+    double getLongitude() {
+        return cursor.getDouble(COLUMN_LONGITUDE);
+    }
+
+    /**
+     * @return the altitude, or NOT_AVAILABLE
+     */
+    double getAltitude() {
+        return cursor.getDouble(COLUMN_ALTITUDE);
+    }
+
+    /**
+     * @return the speed, or NOT_AVAILABLE
+     */
+    float getSpeed() {
+        return cursor.getFloat(COLUMN_SPEED);
+    }
+
+    /**
+     * @return the accuracy, or NOT_AVAILABLE
+     */
+    float getAccuracy() {
+        return cursor.getFloat(COLUMN_ACCURACY);
+    }
+
+    /**
+     * @return the bearing, or NOT_AVAILABLE
+     */
+    float getBearing() {
+        return cursor.getFloat(COLUMN_BEARING);
+    }
+
+    long getTime() {
+        return cursor.getLong(COLUMN_TIME);
+    }
+
+    int getNumberOfSatellites() {
+        return cursor.getInt(COLUMN_NUMBEROFSATELLITES);
+    }
+
+    int getNumberOfSatellitesUsedInFix() {
+        return cursor.getInt(COLUMN_NUMBEROFSATELLITESUSEDINFIX);
+    }
+
+    /**
+     * @return the name of the placemark, or an empty String for locations
+     */
+    String getName() {
+        return hasName ? cursor.getString(COLUMN_NAME) : "";
+    }
+
+    /**
+     * Creates a new LocationExtended with the data of the current point.
+     * To be used by the consumers that need the point as an object.
+     *
+     * @return the LocationExtended of the current point
+     */
+    LocationExtended getLocationExtended() {
+        Location lc = new Location("DB");
+        lc.setLatitude(getLatitude());
+        lc.setLongitude(getLongitude());
+
+        double lcdata_double = getAltitude();
+        if (lcdata_double != NOT_AVAILABLE) lc.setAltitude(lcdata_double);
+
+        float lcdata_float = getSpeed();
+        if (lcdata_float != NOT_AVAILABLE) lc.setSpeed(lcdata_float);
+
+        lcdata_float = getAccuracy();
+        if (lcdata_float != NOT_AVAILABLE) lc.setAccuracy(lcdata_float);
+
+        lcdata_float = getBearing();
+        if (lcdata_float != NOT_AVAILABLE) lc.setBearing(lcdata_float);
+
+        lc.setTime(getTime());
+
+        LocationExtended extdloc = new LocationExtended(lc);
+        extdloc.setNumberOfSatellites(getNumberOfSatellites());
+        extdloc.setNumberOfSatellitesUsedInFix(getNumberOfSatellitesUsedInFix());
+        if (hasName) extdloc.setDescription(getName());
+        return extdloc;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * TrackpointFormatter - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
+
+/**
+ * The lines of the Trackpoints of the exported files (KML, GPX, and TXT).
+ * <br>
+ * Each method appends to an ExportFormatter the line of a point of a TrackPointBuffer,
+ * new line included, without allocations.
+ */
+final class TrackpointFormatter {
+
+    static final String NEW_LINE = "\r\n";
+
+    private TrackpointFormatter() {}
+
+    /**
+     * Appends the altitude of a point, applying the manual and the EGM96 corrections.
+     *
+     * @param egmCorrection the EGM96 correction of the point, or NOT_AVAILABLE
+     * @param altitudeManualCorrection the manual correction of the altitude
+     */
+    private static void appendAltitude(ExportFormatter line, TrackPointBuffer points, int i,
+                                       double egmCorrection, double altitudeManualCorrection) {
+        line.appendDecimal(points.altitude[i] + altitudeManualCorrection - ((egmCorrection == NOT_AVAILABLE) ? 0 : egmCorrection), 3);
+    }
+
+    /**
+     * Appends the coordinates of a point, as written into a KML LineString.
+     *
+     * @param egmCorrection the EGM96 correction of the point, or NOT_AVAILABLE
+     * @param altitudeManualCorrection the manual correction of the altitude
+     */
+    static void appendKML(ExportFormatter line, TrackPointBuffer points, int i,
+                          double egmCorrection, double altitudeManualCorrection) {
+        line.append("     ").appendDecimal(points.longitude[i], 8).append(',').appendDecimal(points.latitude[i], 8).append(',');
+        if (points.hasAltitude(i)) appendAltitude(line, points, i, egmCorrection, altitudeManualCorrection);
+        else line.append('0');
+        line.append(NEW_LINE);
+    }
+
+    /**
+     * Appends a GPX trkpt.
+     *
+     * @param egmCorrection the EGM96 correction of the point, or NOT_AVAILABLE
+     * @param altitudeManualCorrection the manual correction of the altitude
+     * @param isGPX10 true for GPX 1.0 (with the speed), false for GPX 1.1
+     */
+    static void appendGPX(ExportFormatter line, TrackPointBuffer points, int i,
+                          double egmCorrection, double altitudeManualCorrection, boolean isGPX10) {
+        line.append("  <trkpt lat=\"").appendDecimal(points.latitude[i], 8).append("\" lon=\"").appendDecimal(points.longitude[i], 8).append("\">");
+        if (points.hasAltitude(i)) {
+            line.append("<ele>");     // Elevation
+            appendAltitude(line, points, i, egmCorrection, altitudeManualCorrection);
+            line.append("</ele>");
+        }
+        line.append("<time>");     // Time
+        line.appendDateTime(points.time[i], 'T', (points.time[i] % 1000L) != 0L).append('Z');
+        line.append("</time>");
+        if (isGPX10) {
+            if (points.hasSpeed(i)) {
+                line.append("<speed>");     // Speed
+                line.appendDecimal(points.speed[i], 3);
+                line.append("</speed>");
+            }
+        }
+        if (points.numberOfSatellitesUsedInFix[i] > 0) {                  // GPX standards requires sats used for FIX.
+            line.append("<sat>");                                         // and NOT the number of satellites in view!!!
+            line.append(points.numberOfSatellitesUsedInFix[i]);
+            line.append("</sat>");
+        }
+        /*
+        if (!isGPX10) {                                                   // GPX 1.1 doesn't support speed tags. Let's switch to Garmin extensions :(
+            if (points.hasSpeed(i)) {
+                line.append("<extensions><gpxtpx:TrackPointExtension><gpxtpx:speed>");     // Speed (as Garmin extension)
+                line.appendDecimal(points.speed[i], 3);
+                line.append("</gpxtpx:speed></gpxtpx:TrackPointExtension></extensions>");
+            }
+        } */
+        line.append("</trkpt>").append(NEW_LINE);
+    }
+
+    /**
+     * Appends a Trackpoint line of the TXT file.
+     *
+     * @param egmCorrection the EGM96 correction of the point, or NOT_AVAILABLE
+     * @param altitudeManualCorrection the manual correction of the altitude
+     * @param nameAndDescription the "name,desc" fields, for the first Trackpoint of the Track; null for the others
+     */
+    static void appendTXT(ExportFormatter line, TrackPointBuffer points, int i,
+                          double egmCorrection, double altitudeManualCorrection, String nameAndDescription) {
+        //type,time,latitude,longitude,altitude (m),geoid_height (m),speed (m/s),sat_used,sat_inview,name,desc
+        line.append("T,").appendDateTime(points.time[i], ' ', (points.time[i] % 1000L) != 0L)
+                .append(',').appendDecimal(points.latitude[i], 8).append(',').appendDecimal(points.longitude[i], 8).append(',');
+        if (points.hasAccuracy(i))
+            line.appendDecimal(points.accuracy[i], 0);
+        line.append(',');
+        if (points.hasAltitude(i))
+            appendAltitude(line, points, i, egmCorrection, altitudeManualCorrection);
+        line.append(',');
+        if (egmCorrection != NOT_AVAILABLE)
+            line.appendDecimal(egmCorrection, 3);
+        line.append(',');
+        if (points.hasSpeed(i))
+            line.appendDecimal(points.speed[i], 3);
+        line.append(',');
+        if (points.hasBearing(i))
+            line.appendDecimal(points.bearing[i], 0);
+        line.append(',');
+        if (points.numberOfSatellitesUsedInFix[i] > 0)
+            line.append(points.numberOfSatellitesUsedInFix[i]);
+        line.append(',');
+        if (points.numberOfSatellites[i] > 0)
+            line.append(points.numberOfSatellites[i]);
+        line.append(',');
+        if (nameAndDescription != null) line.append(nameAndDescription);
+        else line.append(',');
+        line.append(NEW_LINE);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * AsyncTODOQueueTest - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the order, the coalescing of the UPDATEFIX, and the overflow of the AsyncTODOQueue.
+ */
+public class AsyncTODOQueueTest {
+
+    private static AsyncTODO newAsyncTODO(int taskType) {
+        AsyncTODO ast = new AsyncTODO();
+        ast.taskType = taskType;
+        return ast;
+    }
+
+    @Test
+    public void updateFix_IsCoalescedWhileRecording() throws InterruptedException {
+        AsyncTODOQueue queue = new AsyncTODOQueue(16);
+        AsyncTODO location1 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        AsyncTODO updateFix1 = newAsyncTODO(GPSApplication.TASK_UPDATEFIX);
+        AsyncTODO location2 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        AsyncTODO updateFix2 = newAsyncTODO(GPSApplication.TASK_UPDATEFIX);
+
+        assertNull(queue.add(location1));
+        assertNull(queue.add(updateFix1));
+        assertNull(queue.add(location2));
+        assertSame(updateFix1, queue.add(updateFix2));      // The latest fix wins
+        assertEquals(3, queue.getDepth());
+        assertEquals(1, queue.getCoalescedUpdateFixes());
+
+        assertSame(location1, queue.take());
+        assertSame(location2, queue.take());
+        assertSame(updateFix2, queue.take());
+        assertEquals(0, queue.getDepth());
+    }
+
+    @Test
+    public void updateFix_IsTakenAfterTheTasksEnqueuedBeforeIt() throws InterruptedException {
+        AsyncTODOQueue queue = new AsyncTODOQueue(16);
+        AsyncTODO location1 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        AsyncTODO location2 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        AsyncTODO updateFix = newAsyncTODO(GPSApplication.TASK_UPDATEFIX);
+        AsyncTODO placemark = newAsyncTODO(GPSApplication.TASK_ADDPLACEMARK);
+
+        queue.add(location1);
+        queue.add(location2);
+        queue.add(updateFix);
+        queue.add(placemark);
+
+        assertSame(location1, queue.take());
+        assertSame(location2, queue.take());
+        assertSame(updateFix, queue.take());
+        assertSame(placemark, queue.take());
+        assertNull(queue.poll(0));
+    }
+
+    @Test
+    public void add_SpillsIntoTheOverflowWhenFull() throws InterruptedException {
+        AsyncTODOQueue queue = new AsyncTODOQueue(2);
+        AsyncTODO location1 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        AsyncTODO location2 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        AsyncTODO updateFix = newAsyncTODO(GPSApplication.TASK_UPDATEFIX);
+        AsyncTODO location3 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        AsyncTODO location4 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        queue.add(location1);
+        queue.add(location2);
+        assertNull(queue.add(updateFix));
+        assertNull(queue.add(location3));                   // It doesn't wait
+        assertNull(queue.add(location4));
+        assertEquals(5, queue.getDepth());
+        assertEquals(2, queue.getOverflowedAdds());
+        assertEquals(2, queue.getMaxOverflow());
+
+        assertSame(location1, queue.take());                // Nothing is lost, and the order is kept
+        AsyncTODO location5 = newAsyncTODO(GPSApplication.TASK_ADDLOCATION);
+        queue.add(location5);                               // Behind the overflow, even if the ring buffer has a free place
+        assertSame(location2, queue.take());
+        assertSame(updateFix, queue.take());
+        assertSame(location3, queue.take());
+        assertSame(location4, queue.take());
+        assertSame(location5, queue.take());
+        assertEquals(0, queue.getDepth());
+        assertNull(queue.poll(0));
+    }
+}
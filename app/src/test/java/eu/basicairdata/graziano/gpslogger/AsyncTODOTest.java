@@ -0,0 +1,92 @@
+/*
+ * AsyncTODOTest - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the recycling of the AsyncTODOs on the fix ingestion path (pool and queue).
+ */
+public class AsyncTODOTest {
+
+    private static final int POOL_SIZE = 32;
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void pool_ReusesTheRecycledAsyncTODOs() {
+        AsyncTODO.Pool pool = new AsyncTODO.Pool(POOL_SIZE);
+        AsyncTODO ast = pool.obtain(GPSApplication.TASK_DELETETRACKS, null, new long[] { 1, 2 });
+        pool.recycle(ast);
+        assertNull(ast.trackIDs);
+
+        AsyncTODO reused = pool.obtain(GPSApplication.TASK_UPDATEFIX, null, null);
+        assertSame(ast, reused);
+        assertEquals(GPSApplication.TASK_UPDATEFIX, reused.taskType);
+    }
+
+    @Test
+    public void ingestion_SteadyStateDoesNotAllocate() throws InterruptedException {
+        final com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+        assumeTrue(threadMXBean != null);
+        final long threadID = Thread.currentThread().getId();
+        AsyncTODO.Pool pool = new AsyncTODO.Pool(POOL_SIZE);
+        AsyncTODOQueue queue = new AsyncTODOQueue(POOL_SIZE);
+
+        runIngestionCycles(pool, queue);                            // Warm up (pool filled, code compiled)
+        final long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadID);
+        runIngestionCycles(pool, queue);
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadID) - allocatedBefore;
+
+        // A single AsyncTODO per cycle would take at least 16 bytes * ITERATIONS
+        assertTrue("Allocated " + allocated + " bytes in " + ITERATIONS + " cycles", allocated < ITERATIONS);
+    }
+
+    /**
+     * Simulates the path of the fixes while recording: the producer obtains the AsyncTODOs
+     * and enqueues them, the consumer takes and recycles them, with up to POOL_SIZE tasks in flight.
+     */
+    private static void runIngestionCycles(AsyncTODO.Pool pool, AsyncTODOQueue queue) throws InterruptedException {
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (queue.getDepth() == POOL_SIZE) pool.recycle(queue.take());
+            final int taskType = (i % 2 == 0) ? GPSApplication.TASK_ADDLOCATION : GPSApplication.TASK_UPDATEFIX;
+            AsyncTODO replaced = queue.add(pool.obtain(taskType, null, null));
+            if (replaced != null) pool.recycle(replaced);
+        }
+        while (queue.getDepth() > 0) pool.recycle(queue.take());
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadAllocatedMemorySupported()) return null;
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        return threadMXBean;
+    }
+}
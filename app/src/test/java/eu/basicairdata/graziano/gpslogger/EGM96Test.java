@@ -0,0 +1,159 @@
+/*
+ * EGM96Test - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the EGM96 corrections on a synthetic grid: the per-point corrections against
+ * a plain bilinear interpolation, and the batch corrections against the per-point ones.
+ * It also measures the throughput of both the APIs.
+ */
+public class EGM96Test {
+
+    private static final int ROWS = 721;
+    private static final int COLUMNS = 1440;
+
+    private static final EGM96 egm96 = EGM96.getInstance();
+
+    /**
+     * @return the height (in cm) of the synthetic grid at the given row (0 = North Pole) and column (0 = Greenwich)
+     */
+    private static short height(int row, int column) {
+        return (short) ((row * 37 + column * 101) % 4001 - 2000);
+    }
+
+    @BeforeClass
+    public static void loadSyntheticGrid() {
+        short[] grid = new short[ROWS * COLUMNS];
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) grid[row * COLUMNS + column] = height(row, column);
+        }
+        egm96.setGrid(ShortBuffer.wrap(grid));
+    }
+
+    /**
+     * The bilinear interpolation of the synthetic grid, with the columns wrapped around the antimeridian.
+     */
+    private static double expectedCorrection(double latitude, double longitude) {
+        final double colatitude = 90.0 - latitude;
+        final double lon = (longitude < 0) ? longitude + 360.0 : longitude;
+        final int row = (int) (colatitude / 0.25);
+        final int column = (int) (lon / 0.25);
+        final double fRow = colatitude / 0.25 - row;
+        final double fColumn = lon / 0.25 - column;
+        final int nextRow = Math.min(row + 1, ROWS - 1);        // The South Pole row has weight 0
+        final double h1 = height(row, column % COLUMNS) * (1 - fRow) + height(nextRow, column % COLUMNS) * fRow;
+        final double h2 = height(row, (column + 1) % COLUMNS) * (1 - fRow) + height(nextRow, (column + 1) % COLUMNS) * fRow;
+        return (h1 * (1 - fColumn) + h2 * fColumn) / 100;
+    }
+
+    // The points of the checks: nodes, cell edges, cell interiors, the antimeridian, the Greenwich meridian and the poles
+    private static final double[][] POINTS = {
+            {0, 0}, {45.25, 7.5}, {45.3, 7.6}, {45.37, 7.61}, {45.37, 7.74},
+            {-33.125, 151.2}, {10.1, -75.0}, {10.24999, -0.00001},
+            {0, 180}, {0, -180}, {12.3, 179.99}, {12.3, -179.99}, {-12.3, 180}, {-12.3, -180},
+            {5.0, 359.9}, {5.0, 360}, {5.0, -0.1},
+            {90, 0}, {90, 123.4}, {90, -180}, {89.9, 45}, {89.75, -45.3},
+            {-90, 0}, {-90, 123.4}, {-90, 180}, {-89.9, 45}, {-89.75, -45.3}
+    };
+
+    @Test
+    public void correction_MatchesTheBilinearInterpolation() {
+        for (double[] point : POINTS) {
+            assertEquals("(" + point[0] + ", " + point[1] + ")",
+                    expectedCorrection(point[0], point[1]), egm96.getEGMCorrection(point[0], point[1]), 1E-9);
+        }
+    }
+
+    @Test
+    public void correction_IsContinuousAcrossTheAntimeridian() {
+        for (double latitude = -90; latitude <= 90; latitude += 7.3) {
+            assertEquals(egm96.getEGMCorrection(latitude, 180), egm96.getEGMCorrection(latitude, -180), 0);
+            assertEquals(egm96.getEGMCorrection(latitude, 0), egm96.getEGMCorrection(latitude, 360), 0);
+        }
+    }
+
+    @Test
+    public void corrections_MatchThePerPointCorrections() {
+        // The checks points, followed by a Track that crosses some cells (and the antimeridian)
+        // with many consecutive points into the same cell, and by a point out of range
+        final int trackSize = 500;
+        final int count = POINTS.length + trackSize + 1;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        int p = 0;
+        for (double[] point : POINTS) {
+            latitudes[p] = point[0];
+            longitudes[p++] = point[1];
+        }
+        for (int i = 0; i < trackSize; i++) {
+            latitudes[p] = 44.9 + i * 0.001;
+            longitudes[p++] = 179.8 + i * 0.001 - ((179.8 + i * 0.001 >= 180) ? 360 : 0);
+        }
+        latitudes[p] = 95;
+        longitudes[p] = 0;
+
+        double[] corrections = new double[count];
+        egm96.getEGMCorrections(latitudes, longitudes, corrections, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals("(" + latitudes[i] + ", " + longitudes[i] + ")",
+                    egm96.getEGMCorrection(latitudes[i], longitudes[i]), corrections[i], 0);
+        }
+        assertEquals(EGM96.EGM96_VALUE_INVALID, corrections[count - 1], 0);
+    }
+
+    @Test
+    public void corrections_Throughput() {
+        // A Track of 1 million points, about 1 m apart
+        final int count = 1000000;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = 45.0 + i * 0.00001;
+            longitudes[i] = 7.0 + i * 0.000007;
+        }
+        double[] corrections = new double[count];
+        double[] perPointCorrections = new double[count];
+
+        long perPointTime = Long.MAX_VALUE;
+        long batchTime = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {                 // The first runs warm up the JIT
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) perPointCorrections[i] = egm96.getEGMCorrection(latitudes[i], longitudes[i]);
+            perPointTime = Math.min(perPointTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            egm96.getEGMCorrections(latitudes, longitudes, corrections, count);
+            batchTime = Math.min(batchTime, System.nanoTime() - start);
+        }
+        for (int i = 0; i < count; i++) assertEquals(perPointCorrections[i], corrections[i], 0);
+
+        System.out.println("EGM96 per-point corrections: " + (long) (count * 1E9 / Math.max(1, perPointTime)) + " points/s");
+        System.out.println("EGM96 batch corrections:     " + (long) (count * 1E9 / Math.max(1, batchTime)) + " points/s");
+    }
+}
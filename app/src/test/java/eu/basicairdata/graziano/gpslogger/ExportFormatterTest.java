@@ -0,0 +1,165 @@
+/*
+ * ExportFormatterTest - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.graziano.gpslogger;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that ExportFormatter writes the same output of
+ * String.format(Locale.US, "%.Nf") and of the SimpleDateFormat (GMT) used before.
+ */
+public class ExportFormatterTest {
+
+    private static final int RANDOM_VALUES = 50000;
+    private static final long SEED = 20261018L;
+
+    private static String formatDecimal(double value, int decimals) {
+        return new ExportFormatter(32).appendDecimal(value, decimals).toString();
+    }
+
+    private static String formatDateTime(long time, char separator, boolean withMillis) {
+        return new ExportFormatter(32).appendDateTime(time, separator, withMillis).toString();
+    }
+
+    private static void assertDecimal(double value, int decimals) {
+        assertEquals("value = " + value + ", decimals = " + decimals,
+                String.format(Locale.US, "%." + decimals + "f", value), formatDecimal(value, decimals));
+    }
+
+    private static void assertDateTime(long time, char separator, boolean withMillis) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'" + separator + "'HH:mm:ss" + (withMillis ? ".SSS" : ""), Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        assertEquals("time = " + time, dateFormat.format(time), formatDateTime(time, separator, withMillis));
+    }
+
+    @Test
+    public void appendDecimal_RandomCoordinates() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            assertDecimal(random.nextDouble() * 180 - 90, 8);       // Latitude
+            assertDecimal(random.nextDouble() * 360 - 180, 8);      // Longitude
+        }
+    }
+
+    @Test
+    public void appendDecimal_RandomMeasures() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            assertDecimal(random.nextDouble() * 10000 - 500, 3);    // Altitude
+            assertDecimal(random.nextFloat() * 100, 3);             // Speed (float, as into the DB)
+            assertDecimal(random.nextFloat() * 360, 0);             // Bearing
+            assertDecimal(random.nextFloat() * 50, 0);              // Accuracy
+        }
+    }
+
+    @Test
+    public void appendDecimal_AllTheDecimals() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            assertDecimal((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(14)), random.nextInt(ExportFormatter.MAX_DECIMALS + 1));
+        }
+    }
+
+    @Test
+    public void appendDecimal_RoundingTies() {
+        for (int decimals = 0; decimals <= ExportFormatter.MAX_DECIMALS; decimals++) {
+            for (int i = -2000; i <= 2000; i++) {
+                assertDecimal((i + 0.5) / Math.pow(10, decimals), decimals);
+                assertDecimal(i / Math.pow(10, decimals + 1), decimals);
+            }
+        }
+        assertDecimal(0.125, 2);
+        assertDecimal(2.675, 2);
+        assertDecimal(1.0005, 3);
+        assertDecimal(45.123456785, 8);
+        assertDecimal(0.5, 0);
+        assertDecimal(1.5, 0);
+        assertDecimal(2.5, 0);
+        assertDecimal(-0.5, 0);
+    }
+
+    @Test
+    public void appendDecimal_SpecialValues() {
+        double[] values = { 0.0, -0.0, -0.0000000001, 0.0000000001, 1e14, -1e14, 1e15, 1e20, -1e300,
+                Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                GPSApplication.NOT_AVAILABLE };
+        for (double value : values) {
+            for (int decimals = 0; decimals <= ExportFormatter.MAX_DECIMALS; decimals++) assertDecimal(value, decimals);
+        }
+    }
+
+    @Test
+    public void append_Long() {
+        long[] values = { 0, 1, -1, 9, 10, 99, 100, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+        for (long value : values) assertEquals(String.valueOf(value), new ExportFormatter(1).append(value).toString());
+    }
+
+    @Test
+    public void appendDateTime_RandomTimes() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            final long time = (long) (random.nextDouble() * 4102444800000L);   // 1970 - 2100
+            assertDateTime(time, 'T', true);
+            assertDateTime(time, ' ', (time % 1000L) != 0L);
+        }
+    }
+
+    @Test
+    public void appendDateTime_EdgeTimes() {
+        long[] times = {
+                0L,                     // 1970-01-01
+                951782400000L,          // 2000-02-29 (leap year)
+                951868799999L,          // 2000-02-29 23:59:59.999
+                4107456000000L,         // 2100-02-28
+                4107542400000L,         // 2100-03-01 (not a leap year)
+                253402300799999L,       // 9999-12-31 23:59:59.999, the last time of the fast path
+                253402300800000L,       // 10000-01-01, on the slow path
+                -1L,                    // Before the epoch, on the slow path
+                -86400000L };
+        for (long time : times) {
+            assertDateTime(time, 'T', true);
+            assertDateTime(time, 'T', false);
+            assertDateTime(time, ' ', true);
+        }
+    }
+
+    @Test
+    public void buffer_Grows() {
+        ExportFormatter formatter = new ExportFormatter(1);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            formatter.appendDecimal(i * 1.25, 2).append(',');
+            expected.append(String.format(Locale.US, "%.2f", i * 1.25)).append(',');
+        }
+        assertEquals(expected.toString(), formatter.toString());
+        formatter.clear();
+        assertEquals("", formatter.toString());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * GeodesicTest - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.graziano.gpslogger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks Geodesic against the reference values of the WGS84 ellipsoid.
+ */
+public class GeodesicTest {
+
+    // The example of Vincenty's paper: Flinders Peak -> Buninyong
+    private static final double FLINDERS_PEAK_LAT = -(37 + 57 / 60.0 + 3.72030 / 3600.0);
+    private static final double FLINDERS_PEAK_LON = 144 + 25 / 60.0 + 29.52440 / 3600.0;
+    private static final double BUNINYONG_LAT = -(37 + 39 / 60.0 + 10.15610 / 3600.0);
+    private static final double BUNINYONG_LON = 143 + 55 / 60.0 + 35.38390 / 3600.0;
+
+    @Test
+    public void distance_VincentyExample() {
+        assertEquals(54972.271, Geodesic.distance(FLINDERS_PEAK_LAT, FLINDERS_PEAK_LON, BUNINYONG_LAT, BUNINYONG_LON), 0.01);
+    }
+
+    @Test
+    public void initialBearing_VincentyExample() {
+        // 306d 52' 05.37" = -53d 07' 54.63"
+        assertEquals(-(53 + 7 / 60.0 + 54.63 / 3600.0),
+                Geodesic.initialBearing(FLINDERS_PEAK_LAT, FLINDERS_PEAK_LON, BUNINYONG_LAT, BUNINYONG_LON), 0.0001);
+    }
+
+    @Test
+    public void distance_OneDegreeAlongTheEquator() {
+        assertEquals(111319.491, Geodesic.distance(0, 0, 0, 1), 0.01);
+        assertEquals(90.0, Geodesic.initialBearing(0, 0, 0, 1), 0.0001);
+    }
+
+    @Test
+    public void distance_OneDegreeAlongTheMeridian() {
+        assertEquals(110574.389, Geodesic.distance(0, 0, 1, 0), 0.01);
+        assertEquals(0.0, Geodesic.initialBearing(0, 0, 1, 0), 0.0001);
+    }
+
+    @Test
+    public void distance_SamePoint() {
+        assertEquals(0.0, Geodesic.distance(45.0, 7.0, 45.0, 7.0), 0.0);
+    }
+
+    @Test
+    public void distance_FewMeters() {
+        // The arcs of 0.00005 degrees: a * dLon along the equator, M * dLat along the meridian
+        // and N * cos(lat) * dLon along the parallel, at 45 degrees
+        assertEquals(5.565975, Geodesic.distance(0, 0, 0, 0.00005), 0.001);
+        assertEquals(5.556589, Geodesic.distance(44.999975, 7.0, 45.000025, 7.0), 0.001);
+        assertEquals(3.942342, Geodesic.distance(45.0, 7.0, 45.0, 7.00005), 0.001);
+    }
+
+    @Test
+    public void distance_IsSymmetric() {
+        // The distances are floats: the tolerance is proportional to the value (2 ulps)
+        final float distance = Geodesic.distance(41.9, 12.5, 48.85, 2.35);
+        assertEquals(distance, Geodesic.distance(48.85, 2.35, 41.9, 12.5), 2 * Math.ulp(distance));
+        final float smallDistance = Geodesic.distance(45.0, 7.0, 45.00002, 7.00003);
+        assertEquals(smallDistance, Geodesic.distance(45.00002, 7.00003, 45.0, 7.0), 2 * Math.ulp(smallDistance));
+    }
+}
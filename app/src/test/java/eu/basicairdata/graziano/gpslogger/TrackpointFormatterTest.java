@@ -0,0 +1,142 @@
+/*
+ * TrackpointFormatterTest - Java Class for Android
+ * Created by BasicAirData on 18/10/2026
+ * This file is part of BasicAirData GPS Logger
+ *
+ * Copyright (C) 2011 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.graziano.gpslogger;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static eu.basicairdata.graziano.gpslogger.GPSApplication.NOT_AVAILABLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the Trackpoints written by TrackpointFormatter against golden files
+ * (in the test resources), created with the String.format and SimpleDateFormat
+ * formatting that the Exporter used before ExportFormatter.
+ */
+public class TrackpointFormatterTest {
+
+    private static final double ALTITUDE_MANUAL_CORRECTION = 1.5;
+    private static final String NAME_AND_DESCRIPTION = "Track,GPS Logger: Track - Test";
+
+    // The points of the golden files: values with rounding, negative zeroes,
+    // fields not available, times with and without millis, leap day
+    private static final double[] LATITUDE = { 45.12345678, -33.8688197, 0.000000005, 89.99999999, 41.890251 };
+    private static final double[] LONGITUDE = { 7.12345678, 151.2092955, -0.000000005, -179.99999999, 12.492373 };
+    private static final double[] ALTITUDE = { 250.5, NOT_AVAILABLE, -12.3456, 8848.86, 21.0625 };
+    private static final float[] SPEED = { 1.5f, NOT_AVAILABLE, 0f, 33.333f, 2.675f };
+    private static final float[] ACCURACY = { 4f, NOT_AVAILABLE, 3.5f, 2.5f, 12.49f };
+    private static final float[] BEARING = { 90f, NOT_AVAILABLE, 359.6f, 0.4f, 180.5f };
+    private static final long[] TIME = { 1609459200000L, 1609459201250L, 1609459202999L, 1709251199000L, 1709251200001L };
+    private static final int[] NUMBER_OF_SATELLITES = { 12, 0, 5, 20, 9 };
+    private static final int[] NUMBER_OF_SATELLITES_USED_IN_FIX = { 8, 0, 0, 14, 6 };
+    private static final double[] EGM_CORRECTION = { 47.25, NOT_AVAILABLE, -10.5, NOT_AVAILABLE, 48.123 };
+
+    private static final int KML = 0;
+    private static final int GPX_1_0 = 1;
+    private static final int GPX_1_1 = 2;
+    private static final int TXT = 3;
+
+    private static TrackPointBuffer newTrackPointBuffer() {
+        TrackPointBuffer points = new TrackPointBuffer(LATITUDE.length);
+        for (int i = 0; i < LATITUDE.length; i++) {
+            points.latitude[i] = LATITUDE[i];
+            points.longitude[i] = LONGITUDE[i];
+            points.altitude[i] = ALTITUDE[i];
+            points.speed[i] = SPEED[i];
+            points.accuracy[i] = ACCURACY[i];
+            points.bearing[i] = BEARING[i];
+            points.time[i] = TIME[i];
+            points.numberOfSatellites[i] = NUMBER_OF_SATELLITES[i];
+            points.numberOfSatellitesUsedInFix[i] = NUMBER_OF_SATELLITES_USED_IN_FIX[i];
+        }
+        points.size = LATITUDE.length;
+        return points;
+    }
+
+    private static List<String> readGoldenFile(String name) throws IOException {
+        InputStream inputStream = TrackpointFormatterTest.class.getClassLoader().getResourceAsStream(name);
+        assertNotNull("Missing golden file " + name, inputStream);
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) lines.add(line);
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static void assertGoldenFile(String name, int format) throws IOException {
+        final List<String> expected = readGoldenFile(name);
+        final TrackPointBuffer points = newTrackPointBuffer();
+        final ExportFormatter line = new ExportFormatter(16);    // It grows
+        assertEquals(name, expected.size(), points.size);
+        for (int i = 0; i < points.size; i++) {
+            line.clear();
+            switch (format) {
+                case KML:
+                    TrackpointFormatter.appendKML(line, points, i, EGM_CORRECTION[i], ALTITUDE_MANUAL_CORRECTION);
+                    break;
+                case GPX_1_0:
+                case GPX_1_1:
+                    TrackpointFormatter.appendGPX(line, points, i, EGM_CORRECTION[i], ALTITUDE_MANUAL_CORRECTION, format == GPX_1_0);
+                    break;
+                case TXT:
+                    TrackpointFormatter.appendTXT(line, points, i, EGM_CORRECTION[i], ALTITUDE_MANUAL_CORRECTION, i == 0 ? NAME_AND_DESCRIPTION : null);
+                    break;
+            }
+            final String formatted = line.toString();
+            assertTrue(name + " line " + (i + 1), formatted.endsWith(TrackpointFormatter.NEW_LINE));
+            assertEquals(name + " line " + (i + 1), expected.get(i), formatted.substring(0, formatted.length() - TrackpointFormatter.NEW_LINE.length()));
+        }
+    }
+
+    @Test
+    public void appendKML_MatchesTheGoldenFile() throws IOException {
+        assertGoldenFile("trackpoints.kml", KML);
+    }
+
+    @Test
+    public void appendGPX_1_0_MatchesTheGoldenFile() throws IOException {
+        assertGoldenFile("trackpoints_gpx10.gpx", GPX_1_0);
+    }
+
+    @Test
+    public void appendGPX_1_1_MatchesTheGoldenFile() throws IOException {
+        assertGoldenFile("trackpoints_gpx11.gpx", GPX_1_1);
+    }
+
+    @Test
+    public void appendTXT_MatchesTheGoldenFile() throws IOException {
+        assertGoldenFile("trackpoints.txt", TXT);
+    }
+}